@@ -0,0 +1,138 @@
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks the alarm check made on every tick as the number of alarms
+ * grows, with nothing due and with alarms firing as the day goes by, and the
+ * cost of loading a full set of alarms.
+ */
+public class AlarmBenchmarks
+{
+	public static void register( BenchmarkRunner runner )
+	{
+		
+		addIdle( runner, 100 );
+		addIdle( runner, 10000 );
+		addIdle( runner, 100000 );
+		
+		addFiring( runner, 10000 );
+		addFiring( runner, 100000 );
+		
+		final List<AlarmRule> rules = spreadOverDay( 100000 );
+		final AlarmEngine engine = new AlarmEngine( new Counter() );
+		final long now = System.currentTimeMillis();
+		
+		runner.add( "AlarmEngine.setRules.100000", new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				engine.setRules( rules, now );
+				return engine;
+			}
+		} );
+		
+		// looking at every alarm on every tick, for comparison
+		final long[] due = new long[100000];
+		for ( int i = 0; i < due.length; i++ )
+			due[i] = rules.get( i ).next( now, ZoneId.systemDefault() );
+		
+		runner.add( "AlarmScan.check.idle.100000", new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				int fired = 0;
+				for ( int i = 0; i < due.length; i++ )
+				{
+					if ( due[i] <= now )
+						fired++;
+				}
+				return fired == 0 ? null : due;
+			}
+		} );
+		
+		return;
+	}
+	
+	/**
+	 * One tick with nothing due, the usual case.
+	 */
+	private static void addIdle( BenchmarkRunner runner, int count )
+	{
+		
+		final AlarmEngine engine = new AlarmEngine( new Counter() );
+		final long now = System.currentTimeMillis();
+		engine.setRules( spreadOverDay( count ), now );
+		
+		runner.add( "AlarmEngine.check.idle." + count, new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				// hashing an engine whose lock has been inflated is slow, so
+				// nothing is handed back; the volatile read keeps the call
+				engine.check( now );
+				return null;
+			}
+		} );
+		
+		return;
+	}
+	
+	/**
+	 * One tick a second of simulated time, with the alarms spread evenly over
+	 * the day, so each one fires and is rescheduled once a simulated day.
+	 */
+	private static void addFiring( BenchmarkRunner runner, int count )
+	{
+		
+		final AlarmEngine engine = new AlarmEngine( new Counter() );
+		final long[] now = { System.currentTimeMillis() };
+		engine.setRules( spreadOverDay( count ), now[0] );
+		
+		runner.add( "AlarmEngine.check.firing." + count, new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				engine.check( now[0] += 1000 );
+				return null;
+			}
+		} );
+		
+		return;
+	}
+	
+	private static List<AlarmRule> spreadOverDay( int count )
+	{
+		
+		long nanosPerDay = 24L * 60 * 60 * 1000000000L;
+		List<AlarmRule> rules = new ArrayList<AlarmRule>( count );
+		for ( int i = 0; i < count; i++ )
+		{
+			LocalTime time = LocalTime.ofNanoOfDay( nanosPerDay / count * i );
+			rules.add( AlarmRule.parse( time + "::daily::Alarm%" + i ) );
+		}
+		
+		return rules;
+	}
+	
+	private static class Counter implements AlarmEngine.AlarmListener
+	{
+		
+		private long fired;
+		
+		public void fired( AlarmRule rule, long dueMillis )
+		{
+			
+			fired++;
+		}
+	}
+}
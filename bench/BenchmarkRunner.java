@@ -0,0 +1,152 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A small, dependency free benchmark harness for the clock's hot paths.
+ * 
+ * Each benchmark is warmed up, then timed in batches on the calling thread.
+ * Alongside throughput it reports how many bytes the benchmark allocates per
+ * operation and the resulting allocation rate, read from the JVM's per-thread
+ * allocation counter, so garbage per tick is a number that can be tracked.
+ * 
+ * Usage: java -cp bin BenchmarkRunner [name-regex] [seconds-per-benchmark]
+ */
+public class BenchmarkRunner
+{
+	public final static long DEFAULT_WARMUP_MILLIS = 2000;
+	public final static long DEFAULT_MEASURE_MILLIS = 3000;
+	
+	/**
+	 * One operation of a benchmark. The result is consumed so the work cannot
+	 * be optimised away.
+	 */
+	public interface Task
+	{
+		Object run() throws Exception;
+	}
+	
+	private final List<String> names = new ArrayList<String>();
+	private final List<Task> tasks = new ArrayList<Task>();
+	private final com.sun.management.ThreadMXBean threads;
+	
+	private long warmupMillis = DEFAULT_WARMUP_MILLIS;
+	private long measureMillis = DEFAULT_MEASURE_MILLIS;
+	
+	// written by every operation so results stay observable
+	private volatile int sink;
+	
+	public BenchmarkRunner()
+	{
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		threads.setThreadAllocatedMemoryEnabled( true );
+	}
+	
+	public void setDurations( long warmupMillis, long measureMillis )
+	{
+		
+		this.warmupMillis = warmupMillis;
+		this.measureMillis = measureMillis;
+	}
+	
+	public void add( String name, Task task )
+	{
+		
+		names.add( name );
+		tasks.add( task );
+	}
+	
+	/**
+	 * Runs every benchmark whose name matches the filter and prints one line
+	 * of results for each.
+	 */
+	public void runAll( Pattern filter ) throws Exception
+	{
+		
+		System.out.println( String.format( "%-40s %14s %12s %12s %12s", "Benchmark", "ops/s",
+				"ns/op", "B/op", "alloc MB/s" ) );
+		
+		for ( int i = 0; i < names.size(); i++ )
+		{
+			if ( filter.matcher( names.get( i ) ).find() )
+				run( names.get( i ), tasks.get( i ) );
+		}
+		
+		return;
+	}
+	
+	private void run( String name, Task task ) throws Exception
+	{
+		
+		long tid = Thread.currentThread().getId();
+		
+		/*
+		 * Warm up, and find a batch size that takes roughly 10ms so the clock
+		 * is only read between batches.
+		 */
+		long batch = 1;
+		long end = System.nanoTime() + warmupMillis * 1000000L;
+		while ( System.nanoTime() < end )
+		{
+			long start = System.nanoTime();
+			runBatch( task, batch );
+			if ( System.nanoTime() - start < 10000000L )
+				batch *= 2;
+		}
+		
+		long ops = 0;
+		long allocatedBefore = threads.getThreadAllocatedBytes( tid );
+		long start = System.nanoTime();
+		end = start + measureMillis * 1000000L;
+		long now;
+		do
+		{
+			runBatch( task, batch );
+			ops += batch;
+		} while ( ( now = System.nanoTime() ) < end );
+		long allocated = threads.getThreadAllocatedBytes( tid ) - allocatedBefore;
+		
+		double seconds = ( now - start ) / 1e9;
+		System.out.println( String.format( "%-40s %14.1f %12.1f %12.1f %12.1f", name,
+				ops / seconds, ( now - start ) / (double) ops, allocated / (double) ops,
+				allocated / seconds / ( 1024 * 1024 ) ) );
+		
+		return;
+	}
+	
+	private void runBatch( Task task, long batch ) throws Exception
+	{
+		
+		int hash = 0;
+		for ( long i = 0; i < batch; i++ )
+		{
+			Object result = task.run();
+			if ( result != null )
+				hash += System.identityHashCode( result );
+		}
+		sink += hash;
+		
+		return;
+	}
+	
+	public static void main( String[] args ) throws Exception
+	{
+		
+		Pattern filter = Pattern.compile( args.length > 0 ? args[0] : "" );
+		
+		BenchmarkRunner runner = new BenchmarkRunner();
+		if ( args.length > 1 )
+		{
+			long millis = (long) ( Double.parseDouble( args[1] ) * 1000 );
+			runner.setDurations( millis / 2, millis );
+		}
+		
+		SettingsBenchmarks.register( runner );
+		AlarmBenchmarks.register( runner );
+		TickBenchmarks.register( runner );
+		WallboardBenchmarks.register( runner );
+		
+		runner.runAll( filter );
+	}
+}
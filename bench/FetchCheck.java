@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Polls a stand-in settings host through the clock's
+ * {@link NetSettingsFetcher}, as the clock's tick does, while the host hangs
+ * one request for longer than the read timeout.
+ * 
+ * The stand-in is a plain web server: it answers with an ETag, and with a 304
+ * when the ETag it gave is sent back. It ignores long poll requests. The
+ * check reports how long the calls to
+ * {@link NetSettingsFetcher#requestFetch(String)} took (they must never wait
+ * for the network), how many polls were dropped while the hung one was in
+ * flight, how the hang ended, and how many polls were answered with a 304
+ * instead of a body to read. Exits with status 1 if a poll took longer than
+ * 100ms to hand off, or the hung request did not fail on the
+ * read timeout.
+ * 
+ * java -cp bin FetchCheck [polls] [poll-interval-ms] [hang-ms]
+ */
+public class FetchCheck
+{
+	private final static String ETAG = "\"v1\"";
+	private final static byte[] BODY = "title::Fetch%Check\n".getBytes();
+	
+	// the request the stand-in hangs, counting from 1
+	private final static int HUNG_REQUEST = 3;
+	
+	private final static int CONNECT_TIMEOUT = 1000;
+	private final static int READ_TIMEOUT = 2000;
+	
+	// the longest a poll may take to hand off, in ms
+	private final static long HAND_OFF = 100;
+	
+	/**
+	 * A settings host that hangs one request.
+	 */
+	private static class StandInHandler implements HttpHandler
+	{
+		
+		private final long hangMillis;
+		
+		private final AtomicLong requests = new AtomicLong();
+		private final AtomicLong notModified = new AtomicLong();
+		
+		public StandInHandler( long hangMillis )
+		{
+			this.hangMillis = hangMillis;
+		}
+		
+		public void handle( HttpExchange exchange ) throws IOException
+		{
+			
+			try
+			{
+				if ( requests.incrementAndGet() == HUNG_REQUEST )
+					LockSupport.parkNanos( hangMillis * 1000000 );
+				
+				if ( ETAG.equals( exchange.getRequestHeaders().getFirst( "If-None-Match" ) ) )
+				{
+					notModified.incrementAndGet();
+					exchange.sendResponseHeaders( 304, -1 );
+					return;
+				}
+				
+				exchange.getResponseHeaders().add( "ETag", ETAG );
+				exchange.sendResponseHeaders( 200, BODY.length );
+				OutputStream out = exchange.getResponseBody();
+				out.write( BODY );
+				out.close();
+			} finally
+			{
+				exchange.close();
+			}
+		}
+	}
+	
+	public static void main( String[] args ) throws Exception
+	{
+		
+		int polls = args.length > 0 ? Integer.parseInt( args[0] ) : 40;
+		long interval = args.length > 1 ? Long.parseLong( args[1] ) : 100;
+		long hang = args.length > 2 ? Long.parseLong( args[2] ) : 4000;
+		
+		StandInHandler handler = new StandInHandler( hang );
+		HttpServer server = HttpServer.create(
+				new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+		server.createContext( "/clock_settings", handler );
+		server.setExecutor( Executors.newCachedThreadPool() );
+		server.start();
+		String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/clock_settings";
+		
+		final AtomicLong read = new AtomicLong();
+		final AtomicLong failed = new AtomicLong();
+		NetSettingsFetcher fetcher = new NetSettingsFetcher( new NetSettingsFetcher.FetchListener()
+		{
+			
+			public boolean fetched( InputStream body ) throws IOException
+			{
+				
+				byte[] buffer = new byte[4096];
+				while ( body.read( buffer ) != -1 )
+					continue;
+				read.incrementAndGet();
+				return true;
+			}
+			
+			public void failed( Exception e )
+			{
+				
+				failed.incrementAndGet();
+				System.out.println( "failed: " + e );
+			}
+		} );
+		fetcher.setTimeouts( CONNECT_TIMEOUT, READ_TIMEOUT );
+		fetcher.setLongPollWait( 0 );
+		
+		System.out.println( polls + " polls " + interval + "ms apart, request " + HUNG_REQUEST +
+				" hung for " + hang + "ms, read timeout " + READ_TIMEOUT + "ms" );
+		
+		long worst = 0;
+		long dropped = 0;
+		for ( int i = 0; i < polls; i++ )
+		{
+			long start = System.nanoTime();
+			if ( !fetcher.requestFetch( url ) )
+				dropped++;
+			worst = Math.max( worst, System.nanoTime() - start );
+			Thread.sleep( interval );
+		}
+		
+		while ( fetcher.isFetching() )
+			Thread.sleep( 10 );
+		server.stop( 0 );
+		
+		System.out.println( String.format( "requestFetch  worst %.3f ms", worst / 1e6 ) );
+		System.out.println( "polls         " + ( polls - dropped ) + " sent, " + dropped +
+				" dropped while one was in flight" );
+		System.out.println( "host          " + handler.requests.get() + " requests, " +
+				handler.notModified.get() + " answered 304" );
+		System.out.println( "fetcher       " + read.get() + " bodies read, " + failed.get() +
+				" failed" );
+		
+		if ( worst > TimeUnit.MILLISECONDS.toNanos( HAND_OFF ) || failed.get() != 1 )
+			System.exit( 1 );
+		System.exit( 0 );
+	}
+}
@@ -0,0 +1,176 @@
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Records the clock's flight recorder events ({@link ClockEvents}) while
+ * driving the code that emits them, and reads the recording back: once with
+ * the settings in clock.jfc, where fast ticks, repaints and resizes are left
+ * out, and once with every threshold at zero, where all of them must be
+ * there. Exits with status 1 if the second recording is missing a tick,
+ * resize or fetch event, or a fetched body has the wrong size.
+ * 
+ * The settings are fetched from a local {@link SettingsServer} and from a
+ * port nobody listens on, so there is a fetch event with a body (whose bytes
+ * must be the size of the file) and one with an error. The time line is
+ * resized and painted headless, and empty tick events are committed the way
+ * the clock's tick does.
+ * 
+ * Needs a JDK with the flight recorder (11 or later, or 8u262 or later):
+ * java -Djava.awt.headless=true -cp bin FlightRecorderCheck [clock.jfc] [ticks]
+ */
+public class FlightRecorderCheck
+{
+	private final static String SETTINGS = "title::Recorded%Clock\nrefresh-interval::1000\n";
+	private final static int RESIZES = 20;
+	
+	// fetches with a body whose size was not that of the file
+	private static int wrongSizes;
+	
+	private static Map<String, Integer> record( Map<String, String> settings, int ticks )
+			throws Exception
+	{
+		
+		Recording recording = new Recording( settings );
+		recording.start();
+		
+		// one fetch with a body, one that fails
+		Path file = Files.createTempFile( "clock_settings", ".txt" );
+		Files.write( file, SETTINGS.getBytes() );
+		SettingsServer server = new SettingsServer( file, 0 );
+		server.start();
+		NetSettingsFetcher fetcher = new NetSettingsFetcher( new NetSettingsFetcher.FetchListener()
+		{
+			
+			public boolean fetched( InputStream body ) throws IOException
+			{
+				
+				new SettingsParser().parse( body, new ClockSettings() );
+				return true;
+			}
+			
+			public void failed( Exception e )
+			{
+				
+				return;
+			}
+		} );
+		fetcher.setLongPollWait( 0 );
+		fetch( fetcher, "http://localhost:" + server.getPort() + SettingsServer.PATH );
+		fetch( fetcher, "http://localhost:1" + SettingsServer.PATH );
+		server.stop();
+		Files.delete( file );
+		
+		// resizes and paints of the time line
+		ClockFace face = new ClockFace();
+		face.setFont( new Font( "Arial", Font.BOLD, 100 ) );
+		JPanel area = new JPanel();
+		ClockResizer resizer = new ClockResizer( area, face, new JLabel( " " ) );
+		BufferedImage image = new BufferedImage( 1800, 600, BufferedImage.TYPE_INT_RGB );
+		for ( int i = 0; i < RESIZES; i++ )
+		{
+			area.setSize( 1000 + i * 40, 700 );
+			resizer.fit();
+			face.setSize( 1800, 600 );
+			Graphics g = image.getGraphics();
+			face.paint( g );
+			g.dispose();
+		}
+		
+		for ( int i = 0; i < ticks; i++ )
+		{
+			ClockEvents.Tick event = new ClockEvents.Tick();
+			event.begin();
+			event.end();
+			if ( event.shouldCommit() )
+				event.commit();
+		}
+		
+		recording.stop();
+		Path dump = Files.createTempFile( "clock", ".jfr" );
+		recording.dump( dump );
+		recording.close();
+		
+		Map<String, Integer> counts = new TreeMap<String, Integer>();
+		for ( RecordedEvent event : RecordingFile.readAllEvents( dump ) )
+		{
+			String name = event.getEventType().getName();
+			if ( !name.startsWith( "bigclock." ) )
+				continue;
+			
+			Integer count = counts.get( name );
+			counts.put( name, count == null ? 1 : count + 1 );
+			if ( !name.equals( "bigclock.SettingsFetch" ) )
+				continue;
+			
+			if ( event.getString( "error" ) == null &&
+					event.getLong( "bytes" ) != SETTINGS.getBytes().length )
+				wrongSizes++;
+			System.out.println( "  fetch " + event.getString( "url" ) + ": status " +
+					event.getInt( "status" ) + ", " + event.getLong( "bytes" ) + " bytes" +
+					( event.getString( "error" ) == null ? "" : ", " + event.getString( "error" ) ) );
+		}
+		Files.delete( dump );
+		return counts;
+	}
+	
+	private static void fetch( NetSettingsFetcher fetcher, String url ) throws InterruptedException
+	{
+		
+		fetcher.requestFetch( url );
+		while ( fetcher.isFetching() )
+			Thread.sleep( 10 );
+		return;
+	}
+	
+	private static int count( Map<String, Integer> counts, String name )
+	{
+		
+		Integer count = counts.get( name );
+		return count == null ? 0 : count;
+	}
+	
+	public static void main( String[] args ) throws Exception
+	{
+		
+		Path jfc = Paths.get( args.length > 0 ? args[0] : "clock.jfc" );
+		int ticks = args.length > 1 ? Integer.parseInt( args[1] ) : 100;
+		
+		Map<String, String> settings = Configuration.create( jfc ).getSettings();
+		System.out.println( "expecting " + SETTINGS.getBytes().length + " bytes from the server" );
+		
+		System.out.println( jfc + ":" );
+		System.out.println( "  " + record( settings, ticks ) );
+		
+		Map<String, String> zero = new HashMap<String, String>( settings );
+		for ( Map.Entry<String, String> setting : zero.entrySet() )
+		{
+			if ( setting.getKey().endsWith( "#threshold" ) )
+				setting.setValue( "0 ms" );
+		}
+		System.out.println( "zero thresholds:" );
+		Map<String, Integer> counts = record( zero, ticks );
+		System.out.println( "  " + counts );
+		
+		boolean complete = count( counts, "bigclock.Tick" ) == ticks &&
+				count( counts, "bigclock.Resize" ) == RESIZES &&
+				count( counts, "bigclock.SettingsFetch" ) == 2;
+		System.exit( complete && wrongSizes == 0 ? 0 : 1 );
+	}
+}
@@ -0,0 +1,332 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates a fleet of clocks polling a settings server, to size the host
+ * that serves the settings file.
+ * 
+ * Every simulated clock is a real {@link NetSettingsFetcher} whose bodies are
+ * parsed with {@link SettingsParser}, as in the clock, just without Swing.
+ * Clocks start spread over one query interval and then poll every interval,
+ * give or take the jitter; a poll that finds the clock's previous fetch still
+ * running is dropped, as the clock's tick would drop it. The fetches of all
+ * clocks share one pool of worker threads instead of a thread per clock.
+ * 
+ * Without a URL a local {@link SettingsServer} is started as a stand-in, and
+ * its file is changed halfway through so some polls fetch a full body.
+ * 
+ * java -cp bin LoadSimulator [clocks] [query-interval] [jitter] [seconds] [url]
+ */
+public class LoadSimulator
+{
+	private final static int WORKERS = 64;
+	private final static long REPORT_INTERVAL = 10;
+	
+	private final String url;
+	private final long intervalMillis;
+	private final double jitter;
+	
+	private final ScheduledExecutorService scheduler;
+	private final ExecutorService workers;
+	private final Random random = new Random( 42 );
+	
+	private final AtomicLong polls = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong bodies = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong parseErrors = new AtomicLong();
+	
+	private final LatencyRecorder latency = new LatencyRecorder();
+	private final LatencyRecorder queueDelay = new LatencyRecorder();
+	
+	public LoadSimulator( String url, int intervalSeconds, double jitter )
+	{
+		this.url = url;
+		this.intervalMillis = intervalSeconds * 1000L;
+		this.jitter = jitter;
+		
+		scheduler = Executors.newScheduledThreadPool( 2, new DaemonThreadFactory( "sim-scheduler" ) );
+		workers = Executors.newFixedThreadPool( WORKERS, new DaemonThreadFactory( "sim-worker" ) );
+	}
+	
+	/**
+	 * Starts the clocks, spread evenly over one query interval.
+	 */
+	public void start( int clocks )
+	{
+		
+		for ( int i = 0; i < clocks; i++ )
+		{
+			SimulatedClock clock = new SimulatedClock();
+			scheduler.schedule( clock, intervalMillis * i / clocks, TimeUnit.MILLISECONDS );
+		}
+		
+		return;
+	}
+	
+	public void stop()
+	{
+		
+		scheduler.shutdownNow();
+		workers.shutdownNow();
+		return;
+	}
+	
+	/**
+	 * Prints what happened since the last report.
+	 */
+	public void report( String label, double seconds )
+	{
+		
+		long[] times = latency.drain();
+		long[] waits = queueDelay.drain();
+		
+		System.out.println( String.format(
+				"%-8s %8.1f req/s  polls %8d  dropped %6d  bodies %6d  failed %6d  parse errors %4d",
+				label, times.length / seconds, polls.getAndSet( 0 ), dropped.getAndSet( 0 ),
+				bodies.getAndSet( 0 ), failures.getAndSet( 0 ), parseErrors.getAndSet( 0 ) ) );
+		System.out.println( String.format(
+				"         latency ms  p50 %7.2f  p90 %7.2f  p99 %7.2f  p99.9 %7.2f  max %7.2f" +
+						"  (queued p99 %.2f)",
+				percentile( times, 50 ), percentile( times, 90 ), percentile( times, 99 ),
+				percentile( times, 99.9 ), percentile( times, 100 ), percentile( waits, 99 ) ) );
+		
+		completed.addAndGet( times.length );
+		return;
+	}
+	
+	public long getCompleted()
+	{
+		
+		return this.completed.get();
+	}
+	
+	private long nextDelay()
+	{
+		
+		double factor;
+		synchronized ( random )
+		{
+			factor = 1 + jitter * ( 2 * random.nextDouble() - 1 );
+		}
+		
+		return Math.max( 1, (long) ( intervalMillis * factor ) );
+	}
+	
+	/**
+	 * @return The given percentile of sorted nanosecond times, in ms.
+	 */
+	private static double percentile( long[] sorted, double percent )
+	{
+		
+		if ( sorted.length == 0 )
+			return 0;
+		
+		int index = (int) Math.ceil( percent / 100 * sorted.length ) - 1;
+		return sorted[Math.max( 0, Math.min( sorted.length - 1, index ) )] / 1e6;
+	}
+	
+	public static void main( String[] args ) throws Exception
+	{
+		
+		int clocks = args.length > 0 ? Integer.parseInt( args[0] ) : 10000;
+		int interval = args.length > 1 ? Integer.parseInt( args[1] ) : 60;
+		double jitter = args.length > 2 ? Double.parseDouble( args[2] ) : 0.2;
+		int seconds = args.length > 3 ? Integer.parseInt( args[3] ) : 120;
+		String url = args.length > 4 ? args[4] : null;
+		
+		// let the workers keep their connections to the server open
+		if ( System.getProperty( "http.maxConnections" ) == null )
+			System.setProperty( "http.maxConnections", String.valueOf( WORKERS ) );
+		
+		SettingsServer server = null;
+		Path file = null;
+		if ( url == null )
+		{
+			file = Files.createTempFile( "clock_settings", ".txt" );
+			Files.write( file, SettingsBenchmarks.generateSettings( 1024 ).getBytes() );
+			server = new SettingsServer( file, 0 );
+			server.start();
+			url = "http://localhost:" + server.getPort() + SettingsServer.PATH;
+		}
+		
+		System.out.println( clocks + " clocks polling " + url + " every " + interval + "s (+/- " +
+				Math.round( jitter * 100 ) + "%) for " + seconds + "s, " + WORKERS + " workers" );
+		
+		LoadSimulator simulator = new LoadSimulator( url, interval, jitter );
+		long start = System.nanoTime();
+		simulator.start( clocks );
+		
+		long elapsed = 0;
+		boolean changed = false;
+		while ( elapsed < seconds )
+		{
+			long step = Math.min( REPORT_INTERVAL, seconds - elapsed );
+			Thread.sleep( step * 1000 );
+			elapsed += step;
+			
+			if ( file != null && !changed && elapsed >= seconds / 2 )
+			{
+				// every clock should fetch this once
+				Files.write( file, SettingsBenchmarks.generateSettings( 2048 ).getBytes() );
+				changed = true;
+			}
+			
+			simulator.report( elapsed + "s", step );
+		}
+		
+		double total = ( System.nanoTime() - start ) / 1e9;
+		System.out.println( String.format( "total    %8.1f req/s over %.0fs",
+				simulator.getCompleted() / total, total ) );
+		if ( server != null )
+			System.out.println( "server   " + server.getRequests() + " requests" );
+		
+		simulator.stop();
+		if ( server != null )
+			server.stop();
+		if ( file != null )
+			Files.deleteIfExists( file );
+		System.exit( 0 );
+	}
+	
+	/**
+	 * One clock: polls on its own schedule and records how each fetch went.
+	 */
+	private class SimulatedClock implements Runnable, NetSettingsFetcher.FetchListener, Executor
+	{
+		
+		private final NetSettingsFetcher fetcher;
+		private volatile boolean failed;
+		
+		public SimulatedClock()
+		{
+			fetcher = new NetSettingsFetcher( this, this );
+			
+			// the clock's interval polling is what is being measured
+			fetcher.setLongPollWait( 0 );
+		}
+		
+		/**
+		 * The clock's tick reaching the query interval.
+		 */
+		public void run()
+		{
+			
+			polls.incrementAndGet();
+			if ( !fetcher.requestFetch( url ) )
+				dropped.incrementAndGet();
+			
+			scheduler.schedule( this, nextDelay(), TimeUnit.MILLISECONDS );
+		}
+		
+		/**
+		 * Runs the fetcher's task on the shared workers, timing it.
+		 */
+		public void execute( final Runnable task )
+		{
+			
+			final long queued = System.nanoTime();
+			workers.execute( new Runnable()
+			{
+				
+				public void run()
+				{
+					
+					long started = System.nanoTime();
+					failed = false;
+					task.run();
+					
+					queueDelay.record( started - queued );
+					latency.record( System.nanoTime() - started );
+					if ( failed )
+						failures.incrementAndGet();
+				}
+			} );
+		}
+		
+		public boolean fetched( InputStream body ) throws IOException
+		{
+			
+			// the same work the clock does with a body
+			SettingsParser parser = new SettingsParser();
+			parser.parse( body, new ClockSettings() );
+			
+			bodies.incrementAndGet();
+			if ( parser.hasErrors() )
+				parseErrors.incrementAndGet();
+			return true;
+		}
+		
+		public void failed( Exception e )
+		{
+			
+			failed = true;
+		}
+	}
+	
+	/**
+	 * Collects nanosecond times between reports.
+	 */
+	private static class LatencyRecorder
+	{
+		
+		private long[] times = new long[1024];
+		private int count;
+		
+		public synchronized void record( long nanos )
+		{
+			
+			if ( count == times.length )
+				times = Arrays.copyOf( times, count * 2 );
+			times[count++] = nanos;
+		}
+		
+		/**
+		 * @return The times recorded since the last call, sorted.
+		 */
+		public long[] drain()
+		{
+			
+			long[] drained;
+			synchronized ( this )
+			{
+				drained = Arrays.copyOf( times, count );
+				count = 0;
+			}
+			
+			Arrays.sort( drained );
+			return drained;
+		}
+	}
+	
+	private static class DaemonThreadFactory implements ThreadFactory
+	{
+		
+		private final String name;
+		
+		public DaemonThreadFactory( String name )
+		{
+			this.name = name;
+		}
+		
+		public Thread newThread( Runnable r )
+		{
+			
+			Thread thread = new Thread( r, name );
+			thread.setDaemon( true );
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long polls a local {@link SettingsServer} through the clock's
+ * {@link NetSettingsFetcher} and checks each part of the protocol in turn:
+ * <ul>
+ * <li>after the first body the client is parked on the server;</li>
+ * <li>a change to the served file is pushed to the parked client;</li>
+ * <li>a wait that runs out is answered with a 304 and the client parks again
+ * without fetching a body, and waits longer than {@link SettingsServer#MAX_WAIT}
+ * are cut down to it;</li>
+ * <li>asking for another URL cuts the held poll short, long before its wait
+ * would run out, and the next poll goes to the new URL;</li>
+ * <li>stopping the polling ends the held poll.</li>
+ * </ul>
+ * Each step reports how long it took. Exits with status 1 if any step fails.
+ *
+ * java -cp bin LongPollCheck [wait-seconds]
+ */
+public class LongPollCheck
+{
+	// how long a step may take when nothing has to run out
+	private final static long PROMPT = 3000;
+	
+	private volatile String lastBody;
+	private volatile int bodies;
+	private int failures;
+	
+	private synchronized void fetched( String body )
+	{
+		
+		lastBody = body;
+		bodies++;
+		notifyAll();
+		return;
+	}
+	
+	/**
+	 * Waits until the fetcher has handed out the given number of bodies.
+	 *
+	 * @return The time waited in ms, or -1 if it timed out.
+	 */
+	private synchronized long awaitBodies( int count, long timeoutMillis )
+			throws InterruptedException
+	{
+		
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos( timeoutMillis );
+		while ( bodies < count )
+		{
+			long left = deadline - System.nanoTime();
+			if ( left <= 0 )
+				return -1;
+			TimeUnit.NANOSECONDS.timedWait( this, left );
+		}
+		return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+	}
+	
+	/**
+	 * Waits until the server has the given number of clients parked.
+	 *
+	 * @return The time waited in ms, or -1 if it timed out.
+	 */
+	private static long awaitParked( SettingsServer server, int count, long timeoutMillis )
+			throws InterruptedException
+	{
+		
+		long start = System.nanoTime();
+		while ( server.getParkedCount() != count )
+		{
+			if ( System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos( timeoutMillis ) )
+				return -1;
+			Thread.sleep( 5 );
+		}
+		return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+	}
+	
+	private void report( String step, boolean passed, String detail )
+	{
+		
+		if ( !passed )
+			failures++;
+		System.out.println( String.format( "%-8s %s  %s", step, passed ? "ok  " : "FAIL", detail ) );
+		return;
+	}
+	
+	private static SettingsServer serve( Path file, String settings ) throws IOException
+	{
+		
+		Files.write( file, settings.getBytes() );
+		SettingsServer server = new SettingsServer( file, 0 );
+		server.start();
+		return server;
+	}
+	
+	private static String url( SettingsServer server )
+	{
+		
+		return "http://localhost:" + server.getPort() + SettingsServer.PATH;
+	}
+	
+	/**
+	 * @return The wait the server says it applied when asked for a longer one
+	 *         than it allows.
+	 */
+	private static String appliedWait( SettingsServer server ) throws IOException
+	{
+		
+		HttpURLConnection http = (HttpURLConnection) new URL( url( server ) ).openConnection();
+		http.setRequestProperty( "Prefer", "wait=" + ( SettingsServer.MAX_WAIT * 10 ) );
+		http.getResponseCode();
+		String applied = http.getHeaderField( "Preference-Applied" );
+		http.disconnect();
+		return applied;
+	}
+	
+	public static void main( String[] args ) throws Exception
+	{
+		
+		int wait = args.length > 0 ? Integer.parseInt( args[0] ) : 4;
+		
+		final LongPollCheck check = new LongPollCheck();
+		Path firstFile = Files.createTempFile( "clock_settings", ".txt" );
+		Path secondFile = Files.createTempFile( "clock_settings", ".txt" );
+		SettingsServer first = serve( firstFile, "title::First\n" );
+		SettingsServer second = serve( secondFile, "title::Second\n" );
+		
+		NetSettingsFetcher fetcher = new NetSettingsFetcher( new NetSettingsFetcher.FetchListener()
+		{
+			
+			public boolean fetched( InputStream body ) throws IOException
+			{
+				
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				for ( int n; ( n = body.read( buffer ) ) != -1; )
+					out.write( buffer, 0, n );
+				check.fetched( out.toString() );
+				return true;
+			}
+			
+			public void failed( Exception e )
+			{
+				
+				System.out.println( "failed: " + e );
+			}
+		} );
+		fetcher.setLongPollWait( wait );
+		System.out.println( "waits of " + wait + "s, steps without a wait may take " + PROMPT +
+				"ms" );
+		
+		// park: the first body, then a poll held with its ETag
+		fetcher.requestFetch( url( first ) );
+		long took = check.awaitBodies( 1, PROMPT );
+		long parked = took < 0 ? -1 : awaitParked( first, 1, PROMPT );
+		check.report( "park", parked >= 0 && fetcher.isFetching(), "first body after " + took +
+				"ms, parked after " + parked + "ms more" );
+		
+		// push: a change reaches the parked client, which parks again
+		Files.write( firstFile, "title::First%changed\n".getBytes() );
+		took = check.awaitBodies( 2, PROMPT );
+		parked = took < 0 ? -1 : awaitParked( first, 1, PROMPT );
+		check.report( "push", took >= 0 && check.lastBody.contains( "changed" ) && parked >= 0 &&
+				first.getPushes() == 1, "change pushed after " + took + "ms, " +
+				first.getPushes() + " pushes" );
+		
+		// expiry: the wait runs out with a 304 and the client parks again
+		long requests = first.getRequests();
+		Thread.sleep( TimeUnit.SECONDS.toMillis( wait ) + 500 );
+		long expired = first.getRequests() - requests;
+		parked = awaitParked( first, 1, PROMPT );
+		String applied = appliedWait( first );
+		check.report( "expiry", expired == 1 && check.bodies == 2 && parked >= 0 &&
+				( "wait=" + SettingsServer.MAX_WAIT ).equals( applied ), expired +
+				" polls after the wait ran out, " + ( check.bodies - 2 ) +
+				" bodies, longer waits cut to " + applied );
+		
+		// switch: the held poll is cut short and the new URL polled
+		fetcher.requestFetch( url( second ) );
+		took = check.awaitBodies( 3, TimeUnit.SECONDS.toMillis( wait ) / 2 );
+		parked = took < 0 ? -1 : awaitParked( second, 1, PROMPT );
+		check.report( "switch", took >= 0 && check.lastBody.contains( "Second" ) && parked >= 0,
+				"new URL's body after " + took + "ms, parked there after " + parked + "ms more" );
+		
+		// stop: the held poll ends and nothing follows it
+		long start = System.nanoTime();
+		fetcher.stopPolling();
+		while ( fetcher.isFetching() &&
+				System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos( PROMPT ) )
+			Thread.sleep( 5 );
+		requests = second.getRequests();
+		Thread.sleep( 500 );
+		check.report( "stop", !fetcher.isFetching() && second.getRequests() == requests,
+				"fetcher idle after " + TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start -
+						TimeUnit.MILLISECONDS.toNanos( 500 ) ) + "ms" );
+		
+		first.stop();
+		second.stop();
+		Files.delete( firstFile );
+		Files.delete( secondFile );
+		System.exit( check.failures > 0 ? 1 : 0 );
+	}
+}
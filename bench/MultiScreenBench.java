@@ -0,0 +1,253 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of one process driving a clock window on each of N
+ * screens with that of N processes driving one window each, as separate
+ * clocks started per screen would.
+ * 
+ * Every process runs the clock's per-window work headless for the same time:
+ * a {@link TickScheduler} on a {@link TimerWheel}, one {@link TickFormatter}
+ * per tick, a {@link ClockFace} per window painted into an image, and a
+ * {@link NetSettingsFetcher} long polling a local {@link SettingsServer}. In
+ * one process the wheel, the formatter and the fetcher are shared by the
+ * windows, as in the clock. At the end each process reports its heap (used
+ * after a GC, and committed), its resident set (from /proc, so Linux only),
+ * its live threads and the CPU it used in all and while running. For the N
+ * processes these are summed.
+ * 
+ * java -Djava.awt.headless=true -cp bin MultiScreenBench [windows] [seconds]
+ */
+public class MultiScreenBench
+{
+	private final static String CHILD = "--child";
+	private final static String SETTINGS = "title::Screen%Bench\nquery-interval::10\n";
+	private final static int FONT_SIZE = 150;
+	
+	// what a process reports, in the order it prints them
+	private final static String[] FIELDS = { "heap used", "committed", "RSS", "threads",
+			"CPU total", "CPU run" };
+	
+	/**
+	 * Runs the windows' work in this process and prints what it cost.
+	 */
+	private static void child( int windows, int seconds, final String url ) throws Exception
+	{
+		
+		long cpuStart = cpuNanos();
+		
+		final ClockFace[] faces = new ClockFace[windows];
+		final BufferedImage[] images = new BufferedImage[windows];
+		for ( int i = 0; i < windows; i++ )
+		{
+			ClockFace face = new ClockFace();
+			face.setFont( new Font( "Arial", Font.BOLD, FONT_SIZE ) );
+			face.setBackground( Color.BLACK );
+			face.setForeground( Color.GREEN );
+			Dimension size = face.getPreferredSize();
+			face.setSize( size );
+			faces[i] = face;
+			images[i] = new BufferedImage( size.width, size.height,
+					BufferedImage.TYPE_INT_RGB );
+		}
+		
+		final NetSettingsFetcher fetcher = new NetSettingsFetcher(
+				new NetSettingsFetcher.FetchListener()
+				{
+					
+					public boolean fetched( InputStream body ) throws IOException
+					{
+						
+						new SettingsParser().parse( body, new ClockSettings() );
+						return true;
+					}
+					
+					public void failed( Exception e )
+					{
+						
+						System.out.println( "Error: " + e.getMessage() );
+					}
+				} );
+		
+		final TickFormatter formatter = new TickFormatter();
+		TimerWheel wheel = new TimerWheel();
+		wheel.start();
+		TickScheduler scheduler = new TickScheduler( new TickScheduler.TickListener()
+		{
+			
+			public void tick( long epochMillis, long latenessMillis )
+			{
+				
+				formatter.format( epochMillis );
+				for ( int i = 0; i < faces.length; i++ )
+				{
+					faces[i].setTime( formatter.getTimeChars() );
+					Graphics g = images[i].getGraphics();
+					faces[i].paint( g );
+					g.dispose();
+				}
+			}
+		} );
+		scheduler.start( wheel );
+		wheel.schedule( "net-poll", 10, TimeUnit.SECONDS, new Runnable()
+		{
+			
+			public void run()
+			{
+				
+				fetcher.requestFetch( url );
+			}
+		} );
+		fetcher.requestFetch( url );
+		
+		long cpuRunStart = cpuNanos();
+		Thread.sleep( TimeUnit.SECONDS.toMillis( seconds ) );
+		long cpuRun = cpuNanos() - cpuRunStart;
+		
+		System.gc();
+		long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		long heapCommitted = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()
+				.getCommitted();
+		int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+		
+		System.out.println( heapUsed + " " + heapCommitted + " " + residentBytes() + " " +
+				threads + " " + ( cpuNanos() - cpuStart ) + " " + cpuRun );
+		System.exit( 0 );
+	}
+	
+	private static long cpuNanos()
+	{
+		
+		return ( (com.sun.management.OperatingSystemMXBean) ManagementFactory
+				.getOperatingSystemMXBean() ).getProcessCpuTime();
+	}
+	
+	/**
+	 * @return The resident set of this process, or 0 where /proc has none.
+	 */
+	private static long residentBytes() throws IOException
+	{
+		
+		Path status = Paths.get( "/proc/self/status" );
+		if ( !Files.exists( status ) )
+			return 0;
+		
+		for ( String line : Files.readAllLines( status ) )
+		{
+			if ( line.startsWith( "VmRSS:" ) )
+				return Long.parseLong( line.replaceAll( "[^0-9]", "" ) ) * 1024;
+		}
+		return 0;
+	}
+	
+	private static Process launch( int windows, int seconds, String url ) throws IOException
+	{
+		
+		String java = System.getProperty( "java.home" ) + File.separator + "bin" +
+				File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder( java, "-Djava.awt.headless=true", "-cp",
+				System.getProperty( "java.class.path" ), MultiScreenBench.class.getName(), CHILD,
+				String.valueOf( windows ), String.valueOf( seconds ), url );
+		builder.redirectErrorStream( true );
+		return builder.start();
+	}
+	
+	/**
+	 * @return What the process reported, in the order of {@link #FIELDS}.
+	 */
+	private static long[] result( Process process ) throws IOException, InterruptedException
+	{
+		
+		BufferedReader in = new BufferedReader(
+				new InputStreamReader( process.getInputStream() ) );
+		String last = null;
+		for ( String line; ( line = in.readLine() ) != null; )
+		{
+			if ( !line.matches( "[0-9 ]+" ) )
+				System.out.println( "  " + line );
+			last = line;
+		}
+		process.waitFor();
+		
+		String[] values = last.trim().split( " " );
+		long[] result = new long[values.length];
+		for ( int i = 0; i < values.length; i++ )
+			result[i] = Long.parseLong( values[i] );
+		return result;
+	}
+	
+	/**
+	 * Runs processes side by side and adds up what they cost.
+	 */
+	private static long[] run( int processes, int windows, int seconds, String url )
+			throws IOException, InterruptedException
+	{
+		
+		List<Process> running = new ArrayList<Process>();
+		for ( int i = 0; i < processes; i++ )
+			running.add( launch( windows, seconds, url ) );
+		
+		long[] total = new long[FIELDS.length];
+		for ( Process process : running )
+		{
+			long[] result = result( process );
+			for ( int i = 0; i < total.length; i++ )
+				total[i] += result[i];
+		}
+		return total;
+	}
+	
+	private static void print( String label, long[] cost, int seconds )
+	{
+		
+		System.out.println( String.format(
+				"%-24s %7.1f MB %7.1f MB %7.1f MB %7d %8.2f s %6.2f%%", label, cost[0] / 1e6,
+				cost[1] / 1e6, cost[2] / 1e6, cost[3], cost[4] / 1e9,
+				100.0 * cost[5] / TimeUnit.SECONDS.toNanos( seconds ) ) );
+		return;
+	}
+	
+	public static void main( String[] args ) throws Exception
+	{
+		
+		if ( args.length > 0 && args[0].equals( CHILD ) )
+		{
+			child( Integer.parseInt( args[1] ), Integer.parseInt( args[2] ), args[3] );
+			return;
+		}
+		
+		int windows = args.length > 0 ? Integer.parseInt( args[0] ) : 4;
+		int seconds = args.length > 1 ? Integer.parseInt( args[1] ) : 30;
+		
+		Path file = Files.createTempFile( "clock_settings", ".txt" );
+		Files.write( file, SETTINGS.getBytes() );
+		SettingsServer server = new SettingsServer( file, 0 );
+		server.start();
+		String url = "http://localhost:" + server.getPort() + SettingsServer.PATH;
+		
+		System.out.println( windows + " windows, " + seconds + "s, " + FONT_SIZE + "pt faces" );
+		System.out.println( String.format( "%-24s %10s %10s %10s %7s %10s %7s", "", FIELDS[0],
+				FIELDS[1], FIELDS[2], FIELDS[3], FIELDS[4], FIELDS[5] ) );
+		print( "1 process, " + windows + " windows", run( 1, windows, seconds, url ), seconds );
+		print( windows + " processes, 1 window", run( windows, 1, seconds, url ), seconds );
+		
+		server.stop();
+		Files.delete( file );
+		System.exit( 0 );
+	}
+}
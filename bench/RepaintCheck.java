@@ -0,0 +1,64 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.time.ZoneOffset;
+
+/**
+ * Ticks a {@link ClockFace} through consecutive seconds and reports how much
+ * of the time line it asked to have repainted, next to the whole line that a
+ * label repaints for every new text.
+ * 
+ * The face is painted once first, as on screen, so its glyphs are built and
+ * each tick repaints only the span of cells that changed. Exits with status 1
+ * if nothing was repainted or a tick repainted as much as the whole line on
+ * average.
+ * 
+ * Runs headless: java -Djava.awt.headless=true -cp bin RepaintCheck [ticks] [font-size]
+ */
+public class RepaintCheck
+{
+	public static void main( String[] args ) throws Exception
+	{
+		
+		int ticks = args.length > 0 ? Integer.parseInt( args[0] ) : 600;
+		int size = args.length > 1 ? Integer.parseInt( args[1] ) : 300;
+		
+		ClockFace face = new ClockFace();
+		face.setFont( new Font( "Arial", Font.BOLD, size ) );
+		face.setBackground( Color.BLACK );
+		face.setForeground( Color.GREEN );
+		
+		Dimension line = face.getPreferredSize();
+		face.setSize( line );
+		BufferedImage image = new BufferedImage( line.width, line.height,
+				BufferedImage.TYPE_INT_RGB );
+		Graphics g = image.getGraphics();
+		face.paint( g );
+		
+		TickFormatter formatter = new TickFormatter( ZoneOffset.UTC );
+		long now = 1700000000000L;
+		for ( int i = 0; i < ticks; i++ )
+		{
+			formatter.format( now += 1000 );
+			face.setTime( formatter.getTimeChars() );
+		}
+		face.paint( g );
+		g.dispose();
+		
+		long full = (long) line.width * line.height;
+		long count = face.getRepaintCount();
+		long average = count == 0 ? 0 : face.getRepaintedArea() / count;
+		
+		System.out.println( ticks + " ticks at " + size + "pt, line " + line.width + "x" +
+				line.height );
+		System.out.println( String.format(
+				"repainted %d times, %d px on average, %.1f%% of the %d px line", count, average,
+				100.0 * average / full, full ) );
+		
+		if ( count == 0 || average >= full )
+			System.exit( 1 );
+		return;
+	}
+}
@@ -0,0 +1,81 @@
+import java.awt.Dimension;
+import java.awt.Font;
+import java.util.Random;
+
+import javax.swing.BoxLayout;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/**
+ * Replays a storm of resize events (a window edge being dragged, then a
+ * display hot-plug) against the clock's resize handling and reports how many
+ * fonts were derived and how many relayouts it caused, next to what the old
+ * per-event handler would have done.
+ * 
+ * Runs headless: java -Djava.awt.headless=true -cp bin ResizeStorm [events]
+ */
+public class ResizeStorm
+{
+	public static void main( String[] args ) throws Exception
+	{
+		
+		final int events = args.length > 0 ? Integer.parseInt( args[0] ) : 500;
+		
+		final JPanel area = new JPanel();
+		final ClockFace timeFace = new ClockFace();
+		final JLabel dateLabel = new JLabel( "Wednesday, Sep 28, 2000" );
+		area.setLayout( new BoxLayout( area, BoxLayout.Y_AXIS ) );
+		area.add( timeFace );
+		area.add( dateLabel );
+		
+		final ClockResizer resizer = new ClockResizer( area, timeFace, dateLabel );
+		area.addComponentListener( resizer );
+		
+		final Random random = new Random( 42 );
+		final int[] oldHandler = new int[1];
+		
+		for ( int i = 0; i < events; i++ )
+		{
+			final int step = i;
+			SwingUtilities.invokeAndWait( new Runnable()
+			{
+				
+				public void run()
+				{
+					
+					// a drag, with one jump to another display in the middle
+					int width = step == events / 2 ? 3840 : 640 + step * 2 + random.nextInt( 5 );
+					int height = width * 9 / 16;
+					area.setSize( new Dimension( width, height ) );
+					
+					// what the old handler did for every event
+					new Font( "Arial", Font.BOLD, width / 5 );
+					new Font( "Arial", Font.BOLD, width / 14 );
+					oldHandler[0]++;
+				}
+			} );
+			Thread.sleep( 2 );
+		}
+		
+		// let the debounce timer fire
+		Thread.sleep( ClockResizer.DEBOUNCE_DELAY * 3 );
+		SwingUtilities.invokeAndWait( new Runnable()
+		{
+			
+			public void run()
+			{
+				
+				System.out.println( "resize events:       " + resizer.getResizeEvents() );
+				System.out.println( "font derivations:    " + resizer.getFontDerivations() +
+						" (old handler: " + oldHandler[0] * 2 + ")" );
+				System.out.println( "relayouts:           " + resizer.getRelayouts() +
+						" (old handler: " + oldHandler[0] + ")" );
+				System.out.println( "final sizes:         " + timeFace.getFont().getSize() + " / " +
+						dateLabel.getFont().getSize() );
+			}
+		} );
+		
+		System.exit( 0 );
+	}
+}
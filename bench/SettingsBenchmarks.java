@@ -0,0 +1,120 @@
+import java.io.ByteArrayInputStream;
+
+/**
+ * Benchmarks for the settings helpers, serialization and parsing.
+ */
+public class SettingsBenchmarks
+{
+	public final static String SPACED_TITLE =
+			"Operations Floor Wall Clock - Building 4 North - Maintained By Facilities";
+	
+	public static void register( BenchmarkRunner runner )
+	{
+		
+		final String despaced = SettingsHelper.despace( SPACED_TITLE );
+		final String blanked = " background-color :: ( 12 , 34 , 56 ) ";
+		final ClockSettings settings = new ClockSettings.Builder().setTitle( SPACED_TITLE ).build();
+		
+		runner.add( "SettingsHelper.respace", new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				return SettingsHelper.respace( despaced );
+			}
+		} );
+		
+		runner.add( "SettingsHelper.despace", new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				return SettingsHelper.despace( SPACED_TITLE );
+			}
+		} );
+		
+		runner.add( "SettingsHelper.removeWhiteSpaces", new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				return SettingsHelper.removeWhiteSpaces( blanked );
+			}
+		} );
+		
+		runner.add( "SettingsHelper.verifyColor", new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				return SettingsHelper.verifyColor( "12, 34, 256" );
+			}
+		} );
+		
+		runner.add( "ClockSettings.toString", new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				return settings.toString();
+			}
+		} );
+		
+		addParse( runner, "1KB", 1024 );
+		addParse( runner, "100KB", 100 * 1024 );
+		addParse( runner, "10MB", 10 * 1024 * 1024 );
+		
+		return;
+	}
+	
+	private static void addParse( BenchmarkRunner runner, String label, int size )
+	{
+		
+		final byte[] input = generateSettings( size ).getBytes();
+		final SettingsParser parser = new SettingsParser();
+		
+		runner.add( "SettingsParser.parse." + label, new BenchmarkRunner.Task()
+		{
+			
+			public Object run() throws Exception
+			{
+				
+				return parser.parse( new ByteArrayInputStream( input ), new ClockSettings() );
+			}
+		} );
+		
+		return;
+	}
+	
+	/**
+	 * Builds a settings file of roughly the given size the way our tooling
+	 * generates them: blocks of comments around every setting, with long
+	 * titles.
+	 */
+	public static String generateSettings( int size )
+	{
+		
+		StringBuilder out = new StringBuilder( size + 1024 );
+		String settings = new ClockSettings().toString();
+		int block = 0;
+		
+		while ( out.length() < size )
+		{
+			out.append( "# ---------------------------------------------------------------\n" );
+			out.append( "# Generated block " ).append( block ).append( " - do not edit by hand\n" );
+			out.append( "# ---------------------------------------------------------------\n" );
+			out.append( settings ).append( '\n' );
+			out.append( "title :: " ).append( SettingsHelper.despace( SPACED_TITLE ) )
+					.append( '%' ).append( block ).append( '\n' );
+			out.append( "  font-color :: ( " ).append( block % 256 ).append( ", 200, 100 )\n\n" );
+			block++;
+		}
+		
+		return out.toString();
+	}
+}
@@ -0,0 +1,187 @@
+import java.awt.Color;
+import java.io.StringReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Races settings updates against readers, the way the clock publishes
+ * {@link ClockSettings} snapshots, to check that no reader ever sees a
+ * half-applied set and that the windows end up showing the latest one.
+ * 
+ * Each writer stamps a number into several fields of a new snapshot (the
+ * title, the background color and the query interval) and publishes it with
+ * getAndSet, as updateSettings does. Half of the writers copy the current
+ * snapshot with a {@link ClockSettings.Builder}, as the menu listeners do;
+ * the rest parse the fields on top of it with {@link SettingsParser}, as a
+ * settings file reload does. Every update queues a task on one "window"
+ * thread that applies whatever snapshot is latest, as the clock queues them
+ * on the event dispatch thread. Readers check the stamps of the current
+ * snapshot the whole time.
+ * 
+ * java -cp bin SettingsRaceCheck [writers] [readers] [seconds]
+ */
+public class SettingsRaceCheck
+{
+	private final AtomicReference<ClockSettings> active =
+			new AtomicReference<ClockSettings>( stamp( new ClockSettings(), 0 ) );
+	private final ExecutorService window = Executors.newSingleThreadExecutor();
+	
+	private final AtomicLong stamps = new AtomicLong();
+	private final AtomicLong reads = new AtomicLong();
+	private final AtomicLong shows = new AtomicLong();
+	private final AtomicLong torn = new AtomicLong();
+	
+	private volatile boolean running = true;
+	
+	// what the window shows; only touched on the window thread
+	private ClockSettings shown;
+	
+	/**
+	 * @return A copy of the settings with all stamped fields set from n.
+	 */
+	private static ClockSettings stamp( ClockSettings base, long n )
+	{
+		
+		return new ClockSettings.Builder( base ).setTitle( "Clock-" + n )
+				.setBackgroundColor( color( n ) ).setQueryInterval( (int) ( n % 100000 ) + 1 )
+				.build();
+	}
+	
+	/**
+	 * @return The same as {@link #stamp(ClockSettings, long)}, through the
+	 *         settings parser.
+	 */
+	private static ClockSettings parseStamp( ClockSettings base, long n ) throws Exception
+	{
+		
+		Color color = color( n );
+		String text = "title::Clock-" + n + "\nbackground-color::(" + color.getRed() + "," +
+				color.getGreen() + "," + color.getBlue() + ")\nquery-interval::" +
+				( n % 100000 + 1 ) + "\n";
+		return new SettingsParser().parse( new StringReader( text ), base );
+	}
+	
+	private static Color color( long n )
+	{
+		
+		return new Color( (int) ( n & 0xffffff ) );
+	}
+	
+	/**
+	 * @return true if every stamped field comes from the same number.
+	 */
+	private static boolean whole( ClockSettings settings )
+	{
+		
+		long n = Long.parseLong( settings.getTitle().substring( "Clock-".length() ) );
+		return settings.getBackgroundColor().equals( color( n ) ) &&
+				settings.getQueryInterval() == n % 100000 + 1;
+	}
+	
+	private void publish( ClockSettings next )
+	{
+		
+		ClockSettings previous = active.getAndSet( next );
+		if ( previous.getTitle().equals( next.getTitle() ) )
+			return;
+		
+		window.execute( new Runnable()
+		{
+			
+			public void run()
+			{
+				
+				ClockSettings latest = active.get();
+				if ( !whole( latest ) )
+					torn.incrementAndGet();
+				shown = latest;
+				shows.incrementAndGet();
+			}
+		} );
+		return;
+	}
+	
+	private Thread writer( final boolean parse )
+	{
+		
+		return new Thread( new Runnable()
+		{
+			
+			public void run()
+			{
+				
+				try
+				{
+					while ( running )
+					{
+						long n = stamps.incrementAndGet();
+						ClockSettings base = active.get();
+						publish( parse ? parseStamp( base, n ) : stamp( base, n ) );
+					}
+				} catch ( Exception e )
+				{
+					System.out.println( "Error: " + e.getMessage() );
+				}
+			}
+		}, parse ? "parse-writer" : "builder-writer" );
+	}
+	
+	private Thread reader()
+	{
+		
+		return new Thread( new Runnable()
+		{
+			
+			public void run()
+			{
+				
+				while ( running )
+				{
+					if ( !whole( active.get() ) )
+						torn.incrementAndGet();
+					reads.incrementAndGet();
+				}
+			}
+		}, "reader" );
+	}
+	
+	public static void main( String[] args ) throws Exception
+	{
+		
+		int writers = args.length > 0 ? Integer.parseInt( args[0] ) : 4;
+		int readers = args.length > 1 ? Integer.parseInt( args[1] ) : 2;
+		int seconds = args.length > 2 ? Integer.parseInt( args[2] ) : 5;
+		
+		SettingsRaceCheck check = new SettingsRaceCheck();
+		Thread[] threads = new Thread[writers + readers];
+		for ( int i = 0; i < writers; i++ )
+			threads[i] = check.writer( i % 2 == 1 );
+		for ( int i = 0; i < readers; i++ )
+			threads[writers + i] = check.reader();
+		
+		for ( Thread thread : threads )
+			thread.start();
+		Thread.sleep( TimeUnit.SECONDS.toMillis( seconds ) );
+		check.running = false;
+		for ( Thread thread : threads )
+			thread.join();
+		
+		// let the window apply what is still queued
+		check.window.shutdown();
+		check.window.awaitTermination( 1, TimeUnit.MINUTES );
+		
+		boolean latest = check.shown == check.active.get();
+		System.out.println( writers + " writers, " + readers + " readers, " + seconds + "s" );
+		System.out.println( "published " + check.stamps.get() + " snapshots, window applied " +
+				check.shows.get() + ", readers checked " + check.reads.get() );
+		System.out.println( "torn snapshots " + check.torn.get() + ", window shows the latest " +
+				latest );
+		
+		if ( check.torn.get() > 0 || !latest )
+			System.exit( 1 );
+		return;
+	}
+}
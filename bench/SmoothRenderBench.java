@@ -0,0 +1,96 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Runs the smooth display mode's frame loop at 30, 60 and 120 frames per
+ * second and reports the distribution of frame intervals and render times,
+ * the CPU the loop used and the bytes it allocated per frame.
+ * 
+ * The frames are drawn by the clock's own {@link SmoothClockRenderer} and
+ * paced by its {@link FramePacer}, into an offscreen image instead of a
+ * window's buffer strategy, so it runs headless; on screen the copies are
+ * usually accelerated and cheaper still.
+ * 
+ * java -Djava.awt.headless=true -cp bin SmoothRenderBench [seconds-per-rate] [width] [height]
+ */
+public class SmoothRenderBench
+{
+	private final static int[] RATES = { 30, 60, 120 };
+	
+	public static void main( String[] args )
+	{
+		
+		int seconds = args.length > 0 ? Integer.parseInt( args[0] ) : 10;
+		int width = args.length > 1 ? Integer.parseInt( args[1] ) : 1920;
+		int height = args.length > 2 ? Integer.parseInt( args[2] ) : 1080;
+		
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		threads.setThreadAllocatedMemoryEnabled( true );
+		long tid = Thread.currentThread().getId();
+		
+		BufferedImage target = new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+		SmoothClockRenderer renderer = new SmoothClockRenderer();
+		renderer.setColors( new Color( 45, 54, 45 ), new Color( 155, 172, 134 ) );
+		
+		System.out.println( width + "x" + height + ", " + seconds + "s per rate" );
+		System.out.println( String.format( "%4s %8s  %-36s  %-36s %6s %8s", "fps", "frames",
+				"frame interval", "render time", "CPU %", "B/frame" ) );
+		
+		// warm up, so the first rate is not charged for compiling the loop
+		run( renderer, target, 120, 2, null );
+		
+		for ( int rate : RATES )
+		{
+			FrameHistogram renderTimes = new FrameHistogram();
+			
+			long cpuBefore = threads.getCurrentThreadCpuTime();
+			long allocatedBefore = threads.getThreadAllocatedBytes( tid );
+			long start = System.nanoTime();
+			
+			FramePacer pacer = run( renderer, target, rate, seconds, renderTimes );
+			
+			long wall = System.nanoTime() - start;
+			long cpu = threads.getCurrentThreadCpuTime() - cpuBefore;
+			long allocated = threads.getThreadAllocatedBytes( tid ) - allocatedBefore;
+			long frames = renderTimes.getCount();
+			
+			System.out.println( String.format( "%4d %8d  %-36s  %-36s %6.1f %8.1f", rate, frames,
+					pacer.getIntervals(), renderTimes, 100.0 * cpu / wall,
+					frames == 0 ? 0 : allocated / (double) frames ) );
+		}
+		
+		return;
+	}
+	
+	private static FramePacer run( SmoothClockRenderer renderer, BufferedImage target, int rate,
+			int seconds, FrameHistogram renderTimes )
+	{
+		
+		FramePacer pacer = new FramePacer( rate );
+		long end = System.nanoTime() + seconds * 1000000000L;
+		
+		while ( System.nanoTime() < end )
+		{
+			if ( !pacer.awaitFrame() )
+				continue;
+			
+			long started = System.nanoTime();
+			Graphics2D g = target.createGraphics();
+			try
+			{
+				renderer.render( g, target.getWidth(), target.getHeight(),
+						System.currentTimeMillis(), null );
+			} finally
+			{
+				g.dispose();
+			}
+			if ( renderTimes != null )
+				renderTimes.record( System.nanoTime() - started );
+		}
+		
+		return pacer;
+	}
+}
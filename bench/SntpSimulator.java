@@ -0,0 +1,295 @@
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the clock's {@link SntpClient} against a stand-in time server on the
+ * loopback interface, to see how close the filtered and smoothed offset gets
+ * to the truth when the network is slow, uneven and drops packets.
+ * 
+ * The stand-in is a few lines of SNTP server whose clock is ahead of this
+ * computer's by a set offset. Every query is held on the way there and on
+ * the way back: a fixed delay that differs between the two ways (which no
+ * client can see, and which biases every answer by half the difference),
+ * plus random queueing delay with the given mean, drawn separately for each
+ * way. Some queries are dropped outright.
+ * 
+ * It reports the error of the raw answers, of the answer the filter picked
+ * and of the smoothed offset, and then lets the {@link CorrectedClock} slew
+ * towards it for a while, checking the shown time never runs backwards and
+ * catches up no faster than the slew rate allows.
+ * 
+ * java -cp bin SntpSimulator [offset-ms] [jitter-ms] [rounds] [slew-seconds]
+ */
+public class SntpSimulator
+{
+	// the fixed one-way delays, and the share of queries lost
+	private final static long DELAY_THERE = TimeUnit.MICROSECONDS.toNanos( 1000 );
+	private final static long DELAY_BACK = TimeUnit.MICROSECONDS.toNanos( 3000 );
+	private final static double LOSS = 0.05;
+	
+	private final static long NTP_EPOCH_OFFSET = 2208988800L;
+	
+	/**
+	 * A time server whose clock is ahead by a set amount, with a slow and
+	 * uneven network in front of it.
+	 */
+	private static class StandInServer implements Runnable
+	{
+		
+		private final DatagramSocket socket;
+		private final long offset;
+		private final double jitterNanos;
+		private final Random random = new Random( 42 );
+		
+		private volatile long answered;
+		private volatile long dropped;
+		
+		/**
+		 * @param offset
+		 *            The server's epoch nanos minus {@link System#nanoTime()}.
+		 */
+		public StandInServer( long offset, double jitterMillis ) throws SocketException
+		{
+			this.socket = new DatagramSocket( 0, InetAddress.getLoopbackAddress() );
+			this.offset = offset;
+			this.jitterNanos = jitterMillis * 1e6;
+		}
+		
+		public InetSocketAddress getAddress()
+		{
+			
+			return new InetSocketAddress( InetAddress.getLoopbackAddress(), socket.getLocalPort() );
+		}
+		
+		public void start()
+		{
+			
+			Thread thread = new Thread( this, "sntp-stand-in" );
+			thread.setDaemon( true );
+			thread.start();
+			return;
+		}
+		
+		public void stop()
+		{
+			
+			socket.close();
+			return;
+		}
+		
+		public void run()
+		{
+			
+			byte[] buffer = new byte[48];
+			DatagramPacket packet = new DatagramPacket( buffer, buffer.length );
+			while ( !socket.isClosed() )
+			{
+				try
+				{
+					packet.setLength( buffer.length );
+					socket.receive( packet );
+					if ( random.nextDouble() < LOSS )
+					{
+						dropped++;
+						continue;
+					}
+					
+					// on the way here
+					hold( DELAY_THERE );
+					long received = System.nanoTime() + offset;
+					
+					byte[] answer = new byte[48];
+					answer[0] = 0x24; // no leap warning, version 4, server
+					answer[1] = 2; // stratum
+					System.arraycopy( buffer, 40, answer, 24, 8 );
+					writeLong( answer, 32, toTimestamp( received ) );
+					writeLong( answer, 40, toTimestamp( System.nanoTime() + offset ) );
+					
+					// on the way back
+					hold( DELAY_BACK );
+					socket.send( new DatagramPacket( answer, answer.length,
+							packet.getSocketAddress() ) );
+					answered++;
+				} catch ( Exception e )
+				{
+					if ( !socket.isClosed() )
+						System.out.println( "Error: " + e.getMessage() );
+				}
+			}
+		}
+		
+		private void hold( long fixed )
+		{
+			
+			long queued = (long) ( -Math.log( 1 - random.nextDouble() ) * jitterNanos );
+			long until = System.nanoTime() + fixed + queued;
+			while ( System.nanoTime() < until )
+				LockSupport.parkNanos( until - System.nanoTime() );
+			return;
+		}
+	}
+	
+	private static long toTimestamp( long epochNanos )
+	{
+		
+		long seconds = Math.floorDiv( epochNanos, 1000000000L );
+		long nanos = Math.floorMod( epochNanos, 1000000000L );
+		return ( ( seconds + NTP_EPOCH_OFFSET ) << 32 ) | ( ( nanos << 32 ) / 1000000000L );
+	}
+	
+	private static void writeLong( byte[] buffer, int at, long value )
+	{
+		
+		for ( int i = 7; i >= 0; i-- )
+		{
+			buffer[at + i] = (byte) value;
+			value >>>= 8;
+		}
+		return;
+	}
+	
+	private static String summary( String label, double[] errors, int count )
+	{
+		
+		double[] sorted = Arrays.copyOf( errors, count );
+		for ( int i = 0; i < count; i++ )
+			sorted[i] = Math.abs( sorted[i] );
+		Arrays.sort( sorted );
+		
+		double sum = 0;
+		for ( int i = 0; i < count; i++ )
+			sum += sorted[i];
+		
+		return String.format( "%-9s |error| ms  mean %7.3f  p50 %7.3f  p90 %7.3f  max %7.3f",
+				label, count == 0 ? 0 : sum / count, percentile( sorted, count, 50 ),
+				percentile( sorted, count, 90 ), percentile( sorted, count, 100 ) );
+	}
+	
+	private static double percentile( double[] sorted, int count, double percent )
+	{
+		
+		if ( count == 0 )
+			return 0;
+		
+		int index = (int) Math.ceil( percent / 100 * count ) - 1;
+		return sorted[Math.max( 0, Math.min( count - 1, index ) )];
+	}
+	
+	public static void main( String[] args ) throws Exception
+	{
+		
+		long offsetMillis = args.length > 0 ? Long.parseLong( args[0] ) : 250;
+		double jitter = args.length > 1 ? Double.parseDouble( args[1] ) : 5;
+		int rounds = args.length > 2 ? Integer.parseInt( args[2] ) : 64;
+		int slewSeconds = args.length > 3 ? Integer.parseInt( args[3] ) : 5;
+		
+		// the truth, in the terms the client measures in
+		long truth = CorrectedClock.systemOffsetNanos() + offsetMillis * 1000000;
+		
+		StandInServer server = new StandInServer( truth, jitter );
+		server.start();
+		String address = "localhost:" + server.getAddress().getPort();
+		
+		System.out.println( "server " + offsetMillis + "ms ahead, one-way delays " +
+				DELAY_THERE / 1e6 + "/" + DELAY_BACK / 1e6 + "ms + " + jitter +
+				"ms mean queueing each way, " + Math.round( LOSS * 100 ) + "% lost, " + rounds +
+				" rounds" );
+		
+		// the raw answers, straight from the client
+		SntpClient probe = new SntpClient( new CorrectedClock() );
+		probe.setTimeout( 500 );
+		double[] raw = new double[rounds];
+		int rawCount = 0;
+		for ( int i = 0; i < rounds; i++ )
+		{
+			try
+			{
+				raw[rawCount++] = ( probe.query( server.getAddress() ).offset - truth ) / 1e6;
+			} catch ( Exception e )
+			{
+				rawCount--;
+			}
+		}
+		
+		// the same through the filter and smoothing, one sync a round
+		CorrectedClock clock = new CorrectedClock();
+		SntpClient client = new SntpClient( clock, new Executor()
+		{
+			
+			public void execute( Runnable command )
+			{
+				
+				command.run();
+			}
+		} );
+		client.setTimeout( 500 );
+		ClockMetrics metrics = new ClockMetrics( new TimerWheel() );
+		client.setMetrics( metrics );
+		
+		double[] picked = new double[rounds];
+		double[] smoothed = new double[rounds];
+		int count = 0;
+		for ( int i = 0; i < rounds; i++ )
+		{
+			long failures = metrics.getTimeSyncFailureCount();
+			client.requestSync( address );
+			if ( metrics.getTimeSyncFailureCount() != failures )
+				continue;
+			
+			picked[count] = ( client.getSelected().offset - truth ) / 1e6;
+			smoothed[count] = ( client.getOffset() - truth ) / 1e6;
+			count++;
+		}
+		
+		System.out.println( summary( "raw", raw, rawCount ) + "  (" + rawCount + " answers)" );
+		System.out.println( summary( "filtered", picked, count ) );
+		System.out.println( summary( "smoothed", smoothed, count ) + "  (" + count + " syncs, " +
+				metrics.getTimeSyncFailureCount() + " failed)" );
+		System.out.println( "server    answered " + server.answered + ", dropped " + server.dropped );
+		System.out.println( String.format( "expected bias from the uneven fixed delays %.3f ms",
+				( DELAY_THERE - DELAY_BACK ) / 2e6 ) );
+		
+		// let the clock slew towards the smoothed offset once a second, as the
+		// clock does, reading it as often as the smooth display at 120 fps
+		long start = System.nanoTime();
+		long startRemaining = clock.getSlewRemainingMillis();
+		long previousShown = clock.currentTimeMillis();
+		long lastSlew = start;
+		long backwards = 0;
+		while ( System.nanoTime() - start < TimeUnit.SECONDS.toNanos( slewSeconds ) )
+		{
+			Thread.sleep( 8 );
+			if ( System.nanoTime() - lastSlew >= TimeUnit.SECONDS.toNanos( 1 ) )
+			{
+				lastSlew = System.nanoTime();
+				clock.slew();
+			}
+			
+			long shown = clock.currentTimeMillis();
+			if ( shown < previousShown )
+				backwards++;
+			previousShown = shown;
+		}
+		
+		double elapsed = ( System.nanoTime() - start ) / 1e9;
+		long remaining = clock.getSlewRemainingMillis();
+		System.out.println( String.format(
+				"slew      %dms to go, %dms after %.1fs (%.1fms/s, at most %.1fms/s), " +
+						"went backwards %d times",
+				startRemaining, remaining, elapsed, Math.abs( startRemaining - remaining ) / elapsed,
+				CorrectedClock.MAX_SLEW_RATE * 1000, backwards ) );
+		System.out.println( String.format( "          about %.0fs until caught up",
+				Math.abs( remaining ) / 1000.0 / CorrectedClock.MAX_SLEW_RATE ) );
+		
+		server.stop();
+		return;
+	}
+}
@@ -0,0 +1,95 @@
+import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Benchmarks for the work done on every clock tick.
+ */
+public class TickBenchmarks
+{
+	private final static long YEAR_SECONDS = 365L * 24 * 60 * 60;
+	
+	public static void register( BenchmarkRunner runner )
+	{
+		
+		final TickFormatter formatter = new TickFormatter();
+		final long[] now = { System.currentTimeMillis() };
+		
+		runner.add( "TickFormatter.format", new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				// one call per displayed second
+				formatter.format( now[0] += 1000 );
+				return formatter.getTimeChars();
+			}
+		} );
+		
+		runner.add( "TickFormatter.format+getTimeText", new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				formatter.format( now[0] += 1000 );
+				return formatter.getTimeText();
+			}
+		} );
+		
+		final SimpleDateFormat timeFormatter = new SimpleDateFormat( TickFormatter.TIME_PATTERN );
+		final SimpleDateFormat dateFormatter = new SimpleDateFormat( TickFormatter.DATE_PATTERN );
+		
+		// the per-tick formatting the clock used to do, for comparison
+		runner.add( "Tick.calendarAndSimpleDateFormat", new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				Calendar calendar = Calendar.getInstance();
+				timeFormatter.format( calendar.getTime() );
+				return dateFormatter.format( calendar.getTime() );
+			}
+		} );
+		
+		/*
+		 * A zone with half hour daylight saving, one lookup per displayed
+		 * second, going round the coming year so the benchmark does not run
+		 * into years TimeZone has no rules for.
+		 */
+		final ZoneTimeSource source = new ZoneTimeSource( ZoneId.of( "Australia/Lord_Howe" ) );
+		final TimeZone zone = TimeZone.getTimeZone( "Australia/Lord_Howe" );
+		final long start = System.currentTimeMillis();
+		final long[] seconds = { 0, 0 };
+		final long[] offsets = { 0 };
+		
+		runner.add( "ZoneTimeSource.getOffset+updateDay", new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				long time = start + seconds[0]++ % YEAR_SECONDS * 1000;
+				offsets[0] += source.getOffset( time );
+				source.updateDay( time );
+				return null;
+			}
+		} );
+		
+		runner.add( "TimeZone.getOffset", new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				offsets[0] += zone.getOffset( start + seconds[1]++ % YEAR_SECONDS * 1000 );
+				return null;
+			}
+		} );
+		
+		return;
+	}
+}
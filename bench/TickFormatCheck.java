@@ -0,0 +1,85 @@
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Checks the clock's {@link TickFormatter} against {@link SimpleDateFormat},
+ * which the clock used to format each tick with, for every second of a year
+ * in zones with half-hour and quarter-hour offsets and daylight saving
+ * changes of thirty minutes as well as an hour.
+ * 
+ * Prints the first few mismatches of each zone and the count; it exits with
+ * status 1 if there were any.
+ * 
+ * java -cp bin TickFormatCheck [year] [zone...]
+ */
+public class TickFormatCheck
+{
+	private final static String[] ZONES = { "America/New_York", "Europe/London",
+			"Australia/Lord_Howe", "Asia/Kolkata", "Asia/Kathmandu", "Pacific/Chatham",
+			"America/Sao_Paulo", "UTC" };
+	
+	// mismatches printed per zone
+	private final static int SHOWN = 3;
+	
+	public static void main( String[] args ) throws Exception
+	{
+		
+		int year = args.length > 0 ? Integer.parseInt( args[0] ) : 2024;
+		String[] zones = ZONES;
+		if ( args.length > 1 )
+		{
+			zones = new String[args.length - 1];
+			System.arraycopy( args, 1, zones, 0, zones.length );
+		}
+		
+		long total = 0;
+		for ( String id : zones )
+		{
+			TimeZone zone = TimeZone.getTimeZone( ZoneId.of( id ) );
+			TickFormatter formatter = new TickFormatter( zone.toZoneId() );
+			SimpleDateFormat time = new SimpleDateFormat( TickFormatter.TIME_PATTERN );
+			SimpleDateFormat date = new SimpleDateFormat( TickFormatter.DATE_PATTERN );
+			time.setTimeZone( zone );
+			date.setTimeZone( zone );
+			
+			// the year in UTC, with a day either side for the zone's offset
+			long start = LocalDate.of( year, 1, 1 ).minusDays( 1 ).atStartOfDay( ZoneOffset.UTC )
+					.toInstant().toEpochMilli();
+			long end = LocalDate.of( year + 1, 1, 2 ).atStartOfDay( ZoneOffset.UTC ).toInstant()
+					.toEpochMilli();
+			
+			Date instant = new Date();
+			long seconds = 0;
+			long mismatches = 0;
+			for ( long millis = start; millis < end; millis += 1000 )
+			{
+				formatter.format( millis );
+				instant.setTime( millis );
+				seconds++;
+				
+				String expectedTime = time.format( instant );
+				String expectedDate = date.format( instant );
+				if ( formatter.getTimeText().equals( expectedTime ) &&
+						formatter.getDateText().equals( expectedDate ) )
+					continue;
+				
+				if ( mismatches++ < SHOWN )
+					System.out.println( "  " + id + " at " + millis + ": " +
+							formatter.getTimeText() + ", " + formatter.getDateText() +
+							" instead of " + expectedTime + ", " + expectedDate );
+			}
+			
+			System.out.println( String.format( "%-22s %9d seconds, %d mismatches", id, seconds,
+					mismatches ) );
+			total += mismatches;
+		}
+		
+		if ( total > 0 )
+			System.exit( 1 );
+		return;
+	}
+}
@@ -0,0 +1,284 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the clock's {@link TickScheduler} on a {@link TimerWheel} behind a
+ * {@link TickVisibility}, as the clock does, with two stand-in windows that
+ * count the time and date line updates shown on them. One thread plays the
+ * event dispatch thread: ticks are handed to it, and the windows are hidden
+ * and restored on it.
+ * 
+ * The windows go through these phases:
+ * <ul>
+ * <li>both on screen: each tick updates both;</li>
+ * <li>one hidden: it gets no updates, the other one every tick;</li>
+ * <li>both hidden: nothing ticks, neither gets an update, and the tick job is
+ * off the wheel;</li>
+ * <li>one restored: it is refreshed exactly once straight away, date line
+ * included, then updated every tick; the ticks start again about a second
+ * apart, without a burst for the ones missed;</li>
+ * <li>the other restored: it too is refreshed straight away, date line
+ * included.</li>
+ * </ul>
+ * Exits with status 1 if any phase does not hold.
+ * 
+ * java -cp bin TickSuspendCheck [run-seconds] [hidden-seconds]
+ */
+public class TickSuspendCheck
+{
+	/**
+	 * A window that counts what is shown on it.
+	 */
+	private static class CountingDisplay implements TickVisibility.Display
+	{
+		
+		private final AtomicLong times = new AtomicLong();
+		private final AtomicLong dateLines = new AtomicLong();
+		
+		public void show( boolean dateLineChanged )
+		{
+			
+			times.incrementAndGet();
+			if ( dateLineChanged )
+				dateLines.incrementAndGet();
+			return;
+		}
+	}
+	
+	private final ExecutorService dispatch = Executors.newSingleThreadExecutor();
+	private final TimerWheel wheel = new TimerWheel();
+	
+	private final CountingDisplay first = new CountingDisplay();
+	private final CountingDisplay second = new CountingDisplay();
+	private TickVisibility.Window firstWindow;
+	private TickVisibility.Window secondWindow;
+	private TickVisibility visibility;
+	private TickScheduler scheduler;
+	
+	private final AtomicLong ticks = new AtomicLong();
+	private final AtomicLong last = new AtomicLong();
+	private final AtomicLong shortest = new AtomicLong( Long.MAX_VALUE );
+	
+	private int failures;
+	
+	/**
+	 * Shows a tick on both windows, as the clock's tick listener does.
+	 */
+	private void show()
+	{
+		
+		firstWindow.tick( false );
+		secondWindow.tick( false );
+		return;
+	}
+	
+	/**
+	 * Runs a task on the stand-in event dispatch thread and waits for it.
+	 */
+	private void onDispatch( Runnable task ) throws Exception
+	{
+		
+		dispatch.submit( task ).get();
+		return;
+	}
+	
+	private void setOnScreen( final TickVisibility.Window window, final boolean visible )
+			throws Exception
+	{
+		
+		onDispatch( new Runnable()
+		{
+			
+			public void run()
+			{
+				
+				window.setOnScreen( visible );
+			}
+		} );
+		return;
+	}
+	
+	private void start() throws Exception
+	{
+		
+		wheel.start();
+		scheduler = new TickScheduler( new TickScheduler.TickListener()
+		{
+			
+			public void tick( long epochMillis, long latenessMillis )
+			{
+				
+				long now = System.nanoTime();
+				long previous = last.getAndSet( now );
+				if ( previous != 0 )
+					shortest.set( Math.min( shortest.get(), now - previous ) );
+				ticks.incrementAndGet();
+				
+				dispatch.execute( new Runnable()
+				{
+					
+					public void run()
+					{
+						
+						show();
+					}
+				} );
+			}
+		} );
+		
+		onDispatch( new Runnable()
+		{
+			
+			public void run()
+			{
+				
+				visibility = new TickVisibility( new Runnable()
+				{
+					
+					public void run()
+					{
+						
+						show();
+					}
+				} );
+				firstWindow = visibility.add( first );
+				secondWindow = visibility.add( second );
+				firstWindow.setOnScreen( true );
+				secondWindow.setOnScreen( true );
+			}
+		} );
+		
+		scheduler.start( wheel );
+		onDispatch( new Runnable()
+		{
+			
+			public void run()
+			{
+				
+				visibility.attach( scheduler, wheel );
+			}
+		} );
+		return;
+	}
+	
+	/**
+	 * Waits, then lets the updates queued so far be shown.
+	 */
+	private void run( long millis ) throws Exception
+	{
+		
+		Thread.sleep( millis );
+		onDispatch( new Runnable()
+		{
+			
+			public void run()
+			{
+				
+				return;
+			}
+		} );
+		return;
+	}
+	
+	/**
+	 * @return The updates shown so far: times and date lines of the first
+	 *         window, then of the second.
+	 */
+	private long[] counts()
+	{
+		
+		return new long[] { first.times.get(), first.dateLines.get(), second.times.get(),
+				second.dateLines.get() };
+	}
+	
+	private void report( String phase, boolean passed, long tickCount, long[] before )
+	{
+		
+		if ( !passed )
+			failures++;
+		long[] now = counts();
+		System.out.println( String.format(
+				"%-15s %s %2d ticks, updates %2d (%d date) and %2d (%d date)", phase,
+				passed ? "ok  " : "FAIL", tickCount, now[0] - before[0], now[1] - before[1],
+				now[2] - before[2], now[3] - before[3] ) );
+		return;
+	}
+	
+	public static void main( String[] args ) throws Exception
+	{
+		
+		int running = args.length > 0 ? Integer.parseInt( args[0] ) : 3;
+		int hidden = args.length > 1 ? Integer.parseInt( args[1] ) : 5;
+		
+		// a little past the last boundary of each phase
+		long runMillis = TimeUnit.SECONDS.toMillis( running ) + 100;
+		
+		TickSuspendCheck check = new TickSuspendCheck();
+		check.start();
+		
+		// both on screen
+		long[] before = check.counts();
+		long ticks = check.ticks.get();
+		check.run( runMillis );
+		long during = check.ticks.get() - ticks;
+		long[] after = check.counts();
+		check.report( "both on screen", during >= running && after[0] - before[0] >= during &&
+				after[2] - before[2] == after[0] - before[0], during, before );
+		
+		// one hidden
+		check.setOnScreen( check.secondWindow, false );
+		before = check.counts();
+		ticks = check.ticks.get();
+		check.run( runMillis );
+		during = check.ticks.get() - ticks;
+		after = check.counts();
+		check.report( "one hidden", during >= running && after[0] - before[0] == during &&
+				after[2] == before[2], during, before );
+		
+		// both hidden
+		check.setOnScreen( check.firstWindow, false );
+		before = check.counts();
+		ticks = check.ticks.get();
+		check.run( TimeUnit.SECONDS.toMillis( hidden ) );
+		during = check.ticks.get() - ticks;
+		after = check.counts();
+		boolean onWheel = false;
+		for ( TimerWheel.ScheduledJob job : check.wheel.getJobs() )
+			onWheel |= job.getName().equals( "tick" );
+		check.report( "both hidden", during == 0 && !onWheel && after[0] == before[0] &&
+				after[2] == before[2] && check.visibility.isSuspended(), during, before );
+		
+		// one restored: one refresh straight away, then every tick
+		check.last.set( 0 );
+		check.shortest.set( Long.MAX_VALUE );
+		before = check.counts();
+		ticks = check.ticks.get();
+		check.setOnScreen( check.firstWindow, true );
+		after = check.counts();
+		check.report( "one restored", after[0] - before[0] == 1 && after[1] - before[1] == 1 &&
+				after[2] == before[2] && !check.visibility.isSuspended(), 0, before );
+		
+		before = after;
+		check.run( runMillis );
+		during = check.ticks.get() - ticks;
+		after = check.counts();
+		check.report( "then ticking", during >= running - 1 && after[0] - before[0] == during &&
+				after[2] == before[2] &&
+				check.shortest.get() >= TimeUnit.MILLISECONDS.toNanos( 900 ), during, before );
+		System.out.println( String.format( "%-20s ticks at least %.0fms apart", "",
+				check.shortest.get() / 1e6 ) );
+		
+		// the other restored
+		before = check.counts();
+		check.setOnScreen( check.secondWindow, true );
+		check.report( "other restored", check.counts()[2] - before[2] == 1 &&
+				check.counts()[3] - before[3] == 1, 0, before );
+		
+		check.scheduler.stop();
+		check.wheel.stop();
+		check.dispatch.shutdown();
+		System.exit( check.failures > 0 ? 1 : 0 );
+	}
+}
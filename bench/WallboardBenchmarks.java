@@ -0,0 +1,76 @@
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Benchmarks the cost of one wallboard tick as the number of zones grows.
+ * The panel benchmarks include pushing the results into the cells' components
+ * (run headless, so nothing is actually painted).
+ */
+public class WallboardBenchmarks
+{
+	public static void register( BenchmarkRunner runner )
+	{
+		
+		addTick( runner, 1 );
+		addTick( runner, 50 );
+		addTick( runner, 500 );
+		
+		return;
+	}
+	
+	private static void addTick( BenchmarkRunner runner, int count )
+	{
+		
+		final ZoneTickEngine engine = new ZoneTickEngine( zones( count ) );
+		final long[] now = { System.currentTimeMillis() };
+		
+		runner.add( "ZoneTickEngine.tick." + count, new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				engine.tick( now[0] += 1000 );
+				return engine;
+			}
+		} );
+		
+		final WallboardPanel panel = new WallboardPanel( zones( count ), 0 );
+		
+		runner.add( "WallboardPanel.tick." + count, new BenchmarkRunner.Task()
+		{
+			
+			public Object run()
+			{
+				
+				panel.tick( now[0] += 1000 );
+				return panel;
+			}
+		} );
+		
+		return;
+	}
+	
+	/**
+	 * Picks the given number of region/city zone IDs, in a fixed order,
+	 * repeating the list if there are not enough.
+	 */
+	public static List<String> zones( int count )
+	{
+		
+		List<String> available = new ArrayList<String>();
+		for ( String id : new TreeSet<String>( ZoneId.getAvailableZoneIds() ) )
+		{
+			if ( id.indexOf( '/' ) > 0 && !id.startsWith( "Etc/" ) && !id.startsWith( "SystemV/" ) )
+				available.add( id );
+		}
+		
+		List<String> zones = new ArrayList<String>( count );
+		for ( int i = 0; i < count; i++ )
+			zones.add( available.get( i * 7 % available.size() ) );
+		
+		return zones;
+	}
+}
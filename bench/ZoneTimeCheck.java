@@ -0,0 +1,196 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Random;
+
+/**
+ * Checks {@link ZoneTimeSource} against the zone's {@link ZoneRules} where
+ * caching the offset and the day could go wrong: around every transition of
+ * a span of years, around local midnights, and at random instants.
+ * 
+ * At each instant the offset, whether the local day changed since the last
+ * instant, and the cached bounds ({@link ZoneTimeSource#getNextTransition()}
+ * and {@link ZoneTimeSource#getDayEnd()}) are compared with what the rules
+ * say. Around each transition it steps minute by minute over a day and a bit
+ * either side, and millisecond by millisecond over a few ms either side.
+ * 
+ * It then ticks a fresh source once a second for a year in each zone and
+ * reports how often the rules were consulted
+ * ({@link ZoneTimeSource#getLookups()}). Exits with status 1 on any mismatch.
+ * 
+ * java -cp bin ZoneTimeCheck [from-year] [to-year] [zone...]
+ */
+public class ZoneTimeCheck
+{
+	private final static String[] ZONES = { "Australia/Lord_Howe", "Asia/Kathmandu",
+			"Asia/Kolkata", "America/St_Johns", "Pacific/Apia", "Pacific/Kiritimati",
+			"Africa/Casablanca", "America/Sao_Paulo", "Europe/Amsterdam", "Antarctica/Troll",
+			"Europe/Dublin", "America/Havana", "Asia/Gaza", "Pacific/Chatham", "Europe/London",
+			"America/New_York", "Australia/Eucla", "Asia/Tehran", "UTC" };
+	
+	private final static long MINUTE = 60 * 1000;
+	private final static long DAY = 24 * 60 * MINUTE;
+	
+	// how far around each transition to step, by minute and by millisecond
+	private final static long SPAN = DAY + 2 * 60 * MINUTE;
+	private final static long EDGE = 3;
+	
+	private final static int MIDNIGHTS = 400;
+	private final static int RANDOM = 200000;
+	
+	// mismatches printed per zone
+	private final static int SHOWN = 3;
+	
+	private final ZoneId zone;
+	private final ZoneRules rules;
+	private final ZoneTimeSource source;
+	
+	private LocalDate lastDay;
+	private long checked;
+	private long mismatches;
+	
+	public ZoneTimeCheck( ZoneId zone )
+	{
+		this.zone = zone;
+		this.rules = zone.getRules();
+		this.source = new ZoneTimeSource( zone );
+	}
+	
+	private void check( long epochMillis )
+	{
+		
+		Instant instant = Instant.ofEpochMilli( epochMillis );
+		ZoneOffset zoneOffset = rules.getOffset( instant );
+		int offset = zoneOffset.getTotalSeconds() * 1000;
+		LocalDate day = instant.atZone( zone ).toLocalDate();
+		ZoneOffsetTransition next = rules.nextTransition( instant );
+		long nextTransition = next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000;
+		
+		// the next midnight at this offset; a transition can come first, and
+		// can even take the clock back across the last one
+		long midnight = day.plusDays( 1 ).atStartOfDay().toEpochSecond( zoneOffset ) * 1000;
+		
+		int gotOffset = source.getOffset( epochMillis );
+		boolean gotChanged = source.updateDay( epochMillis );
+		boolean changed = !day.equals( lastDay );
+		lastDay = day;
+		checked++;
+		
+		long dayEnd = source.getDayEnd();
+		if ( gotOffset == offset && gotChanged == changed &&
+				source.getNextTransition() == nextTransition &&
+				dayEnd == Math.min( midnight, nextTransition ) )
+			return;
+		
+		if ( mismatches++ < SHOWN )
+			System.out.println( "  " + zone + " at " + instant + ": offset " + gotOffset + " (" +
+					offset + "), day changed " + gotChanged + " (" + changed +
+					"), next transition " + source.getNextTransition() + " (" + nextTransition +
+					"), day end " + dayEnd );
+		return;
+	}
+	
+	/**
+	 * Checks around every transition from the start of one year to the end of
+	 * another.
+	 */
+	private void transitions( long from, long to )
+	{
+		
+		ZoneOffsetTransition transition = rules.nextTransition( Instant.ofEpochMilli( from ) );
+		while ( transition != null && transition.toEpochSecond() * 1000 < to )
+		{
+			long at = transition.toEpochSecond() * 1000;
+			for ( long millis = at - SPAN; millis <= at + SPAN; millis += MINUTE )
+				check( millis );
+			for ( long millis = at - EDGE; millis <= at + EDGE; millis++ )
+				check( millis );
+			transition = rules.nextTransition( transition.getInstant() );
+		}
+		return;
+	}
+	
+	/**
+	 * Checks a few ms either side of each local midnight of a run of days.
+	 */
+	private void midnights( LocalDate first )
+	{
+		
+		for ( int i = 0; i < MIDNIGHTS; i++ )
+		{
+			long midnight = first.plusDays( i ).atStartOfDay( zone ).toInstant().toEpochMilli();
+			for ( long millis = midnight - EDGE; millis <= midnight + EDGE; millis++ )
+				check( millis );
+		}
+		return;
+	}
+	
+	private void random( long from, long to, Random random )
+	{
+		
+		for ( int i = 0; i < RANDOM; i++ )
+			check( from + (long) ( random.nextDouble() * ( to - from ) ) );
+		return;
+	}
+	
+	/**
+	 * @return How many times a fresh source consults the rules when ticked
+	 *         once a second through a year.
+	 */
+	private static int lookupsPerYear( ZoneId zone, int year )
+	{
+		
+		ZoneTimeSource fresh = new ZoneTimeSource( zone );
+		long from = LocalDate.of( year, 1, 1 ).atStartOfDay( ZoneOffset.UTC ).toInstant()
+				.toEpochMilli();
+		long to = LocalDate.of( year + 1, 1, 1 ).atStartOfDay( ZoneOffset.UTC ).toInstant()
+				.toEpochMilli();
+		for ( long millis = from; millis < to; millis += 1000 )
+		{
+			fresh.getOffset( millis );
+			fresh.updateDay( millis );
+		}
+		return fresh.getLookups();
+	}
+	
+	public static void main( String[] args ) throws Exception
+	{
+		
+		int fromYear = args.length > 0 ? Integer.parseInt( args[0] ) : 1900;
+		int toYear = args.length > 1 ? Integer.parseInt( args[1] ) : 2040;
+		String[] zones = ZONES;
+		if ( args.length > 2 )
+		{
+			zones = new String[args.length - 2];
+			System.arraycopy( args, 2, zones, 0, zones.length );
+		}
+		
+		long from = LocalDate.of( fromYear, 1, 1 ).atStartOfDay( ZoneOffset.UTC ).toInstant()
+				.toEpochMilli();
+		long to = LocalDate.of( toYear + 1, 1, 1 ).atStartOfDay( ZoneOffset.UTC ).toInstant()
+				.toEpochMilli();
+		Random random = new Random( 42 );
+		
+		long total = 0;
+		for ( String id : zones )
+		{
+			ZoneId zone = ZoneId.of( id );
+			ZoneTimeCheck check = new ZoneTimeCheck( zone );
+			check.transitions( from, to );
+			check.midnights( LocalDate.of( toYear, 1, 1 ).minusDays( MIDNIGHTS ) );
+			check.random( from, to, random );
+			
+			System.out.println( String.format( "%-22s %9d instants, %d mismatches, %d lookups in %d",
+					id, check.checked, check.mismatches, lookupsPerYear( zone, toYear ),
+					toYear ) );
+			total += check.mismatches;
+		}
+		
+		if ( total > 0 )
+			System.exit( 1 );
+		return;
+	}
+}
@@ -0,0 +1,315 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires alarms when they fall due, whether or not the clock is being shown.
+ * 
+ * Each rule has exactly one occurrence queued at a time, in a priority queue
+ * ordered by when it is due, so adding a rule is O(log n) and a rule that
+ * repeats forever is never expanded past its next occurrence. Once an
+ * occurrence fires the rule is asked for its next one, which goes back in the
+ * queue.
+ * 
+ * The time the head of the queue is due is kept in a volatile field, so the
+ * check made on every tick is one read and one comparison, whatever the
+ * number of alarms, and takes no lock until something is due.
+ * 
+ * Once started on a {@link TimerWheel} the engine checks itself, with a job
+ * whose deadline is the head of the queue, so alarms fire while the tick is
+ * stopped (the windows are hidden or minimized). The job wakes at least every
+ * {@link #MAX_WAIT} so a wall clock that is set forward is noticed. If an
+ * alarm fell due while nothing checked (the machine was asleep) it fires once
+ * on the next check, and further occurrences it missed are skipped rather than
+ * fired in a burst.
+ */
+public class AlarmEngine
+{
+	
+	/**
+	 * Told about alarms as they fire, on the thread calling
+	 * {@link AlarmEngine#check(long)}, so it must not block.
+	 */
+	public interface AlarmListener
+	{
+		void fired( AlarmRule rule, long dueMillis );
+	}
+	
+	private static class Occurrence implements Comparable<Occurrence>
+	{
+		
+		private final AlarmRule rule;
+		private long due;
+		
+		public Occurrence( AlarmRule rule, long due )
+		{
+			this.rule = rule;
+			this.due = due;
+		}
+		
+		public int compareTo( Occurrence other )
+		{
+			
+			return Long.compare( due, other.due );
+		}
+	}
+	
+	/**
+	 * The longest the engine's job waits between checks, in ms.
+	 */
+	public final static long MAX_WAIT = 60 * 1000;
+	
+	private final AlarmListener listener;
+	
+	// the engine's own job, if started
+	private TimerWheel wheel;
+	private CorrectedClock clock;
+	private TimerWheel.ScheduledJob job;
+	
+	// guarded by this
+	private PriorityQueue<Occurrence> queue = new PriorityQueue<Occurrence>();
+	private ZoneId zone = ZoneId.systemDefault();
+	
+	// when the head of the queue is due, read without locking
+	private volatile long nextDue = AlarmRule.NEVER;
+	private volatile long firedCount;
+	
+	public AlarmEngine( AlarmListener listener )
+	{
+		this.listener = listener;
+	}
+	
+	/**
+	 * Starts checking for due alarms on the given wheel, on its thread, as
+	 * well as on every call to {@link #check(long)}.
+	 * 
+	 * @param clock
+	 *            Where the current time is read from.
+	 */
+	public synchronized void start( TimerWheel wheel, CorrectedClock clock )
+	{
+		
+		this.wheel = wheel;
+		this.clock = clock;
+		reschedule();
+		return;
+	}
+	
+	public synchronized void stop()
+	{
+		
+		if ( job != null )
+			job.cancel();
+		job = null;
+		wheel = null;
+		return;
+	}
+	
+	/**
+	 * Replaces all alarms. The queue is built in one pass (O(n)) rather than
+	 * by adding the rules one at a time.
+	 * 
+	 * @param now
+	 *            The current time in epoch millis; alarms are due after it.
+	 */
+	public synchronized void setRules( Collection<AlarmRule> rules, long now )
+	{
+		
+		zone = ZoneId.systemDefault();
+		List<Occurrence> pending = new ArrayList<Occurrence>( rules.size() );
+		for ( AlarmRule rule : rules )
+		{
+			long due = rule.next( now, zone );
+			if ( due != AlarmRule.NEVER )
+				pending.add( new Occurrence( rule, due ) );
+		}
+		
+		queue = new PriorityQueue<Occurrence>( pending );
+		updateNextDue();
+		reschedule();
+		return;
+	}
+	
+	/**
+	 * Adds one alarm, in O(log n).
+	 */
+	public synchronized void add( AlarmRule rule, long now )
+	{
+		
+		long due = rule.next( now, zone );
+		if ( due == AlarmRule.NEVER )
+			return;
+		
+		queue.add( new Occurrence( rule, due ) );
+		updateNextDue();
+		reschedule();
+		return;
+	}
+	
+	/**
+	 * Fires the alarms that are due. Called on every tick.
+	 */
+	public void check( long now )
+	{
+		
+		if ( now < nextDue )
+			return;
+		
+		synchronized ( this )
+		{
+			// the day's occurrences are worked out in the zone now in effect
+			ZoneId current = ZoneId.systemDefault();
+			if ( !current.equals( zone ) )
+			{
+				zone = current;
+				List<AlarmRule> rules = getRules();
+				setRules( rules, now - 1 );
+			}
+			
+			Occurrence head;
+			while ( ( head = queue.peek() ) != null && head.due <= now )
+			{
+				queue.poll();
+				firedCount++;
+				listener.fired( head.rule, head.due );
+				
+				// the next occurrence after now, not after the one just fired
+				long due = head.rule.next( now, zone );
+				if ( due != AlarmRule.NEVER )
+				{
+					head.due = due;
+					queue.add( head );
+				}
+			}
+			
+			updateNextDue();
+		}
+		
+		return;
+	}
+	
+	/**
+	 * @return The number of alarms that are still to fire.
+	 */
+	public synchronized int size()
+	{
+		
+		return queue.size();
+	}
+	
+	/**
+	 * @return When the next alarm is due, in epoch millis, or
+	 *         {@link AlarmRule#NEVER}.
+	 */
+	public long getNextDue()
+	{
+		
+		return this.nextDue;
+	}
+	
+	public long getFiredCount()
+	{
+		
+		return this.firedCount;
+	}
+	
+	/**
+	 * @return The alarms still to fire, in no particular order.
+	 */
+	public synchronized List<AlarmRule> getRules()
+	{
+		
+		List<AlarmRule> rules = new ArrayList<AlarmRule>( queue.size() );
+		for ( Occurrence occurrence : queue )
+			rules.add( occurrence.rule );
+		return rules;
+	}
+	
+	/**
+	 * Reads rules in the clock_alarms format: one {@link AlarmRule} per line,
+	 * blanks dropped. Empty lines and lines starting with '#' are skipped. A
+	 * bad line is recorded with its line number and the rest are still read.
+	 * The reader is not closed.
+	 * 
+	 * @param errors
+	 *            Receives a message for each line that could not be read.
+	 */
+	public static List<AlarmRule> read( Reader in, List<String> errors ) throws IOException
+	{
+		
+		BufferedReader lines = new BufferedReader( in );
+		List<AlarmRule> rules = new ArrayList<AlarmRule>();
+		
+		String line;
+		int lineNumber = 0;
+		while ( ( line = lines.readLine() ) != null )
+		{
+			lineNumber++;
+			line = SettingsHelper.removeWhiteSpaces( line );
+			if ( line.isEmpty() || line.charAt( 0 ) == '#' )
+				continue;
+			
+			try
+			{
+				rules.add( AlarmRule.parse( line ) );
+			} catch ( IllegalArgumentException e )
+			{
+				errors.add( "line " + lineNumber + ": " + e.getMessage() );
+			}
+		}
+		
+		return rules;
+	}
+	
+	/**
+	 * Moves the engine's job to the new head of the queue.
+	 */
+	private void reschedule()
+	{
+		
+		if ( wheel == null )
+			return;
+		
+		if ( job != null )
+			job.cancel();
+		job = wheel.schedule( "alarms", new CheckJob(), deadline( clock.currentTimeMillis() ) );
+		return;
+	}
+	
+	/**
+	 * @return The monotonic deadline to check again at, given the current
+	 *         time in epoch millis.
+	 */
+	private long deadline( long now )
+	{
+		
+		long wait = Math.min( Math.max( 0, nextDue - now ), MAX_WAIT );
+		return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( wait );
+	}
+	
+	private void updateNextDue()
+	{
+		
+		Occurrence head = queue.peek();
+		nextDue = head == null ? AlarmRule.NEVER : head.due;
+		return;
+	}
+	
+	private class CheckJob implements TimerWheel.Job
+	{
+		
+		public long run( long deadline )
+		{
+			
+			long now = clock.currentTimeMillis();
+			check( now );
+			return deadline( now );
+		}
+	}
+}
@@ -0,0 +1,233 @@
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * One alarm: a local time of day with either the days of the week it repeats
+ * on or the single date it is due, and the text to announce.
+ * 
+ * A rule never lists its occurrences; {@link #next(long, ZoneId)} works out
+ * the one after a given instant when it is asked for, so a rule that repeats
+ * forever costs the same as one that happens once.
+ * 
+ * In the clock_alarms file a rule is one line of "time::when::label", for
+ * example "13:30::weekdays::Shift%change" or "09:00:30::2030-01-31::Audit".
+ * The time is "HH:mm" or "HH:mm:ss"; "when" is "daily", "weekdays",
+ * "weekends", a comma separated list of days ("mon,wed,fri") or a date
+ * ("yyyy-MM-dd"); as in titles, '%' stands for a space in the label.
+ */
+public final class AlarmRule
+{
+	/**
+	 * Returned by {@link #next(long, ZoneId)} when a rule is not due again.
+	 */
+	public final static long NEVER = Long.MAX_VALUE;
+	
+	private final static int ALL_DAYS = 0x7F;
+	private final static int WEEKDAYS = 0x1F;
+	private final static int WEEKENDS = 0x60;
+	private final static String[] DAY_NAMES = { "mon", "tue", "wed", "thu", "fri", "sat", "sun" };
+	
+	private final LocalTime time;
+	private final int days;
+	private final LocalDate date;
+	private final String label;
+	
+	/**
+	 * @param days
+	 *            The days of the week it repeats on, Monday in bit 0, or 0 for
+	 *            a rule due once on the given date.
+	 * @param date
+	 *            The date of a rule that does not repeat, or null.
+	 */
+	public AlarmRule( LocalTime time, int days, LocalDate date, String label )
+	{
+		if ( ( days == 0 ) == ( date == null ) )
+			throw new IllegalArgumentException( "An alarm needs either days or a date" );
+		
+		this.time = time;
+		this.days = days & ALL_DAYS;
+		this.date = date;
+		this.label = label;
+	}
+	
+	/**
+	 * Reads a rule from a "time::when::label" line, without blanks.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the line is not a valid rule.
+	 */
+	public static AlarmRule parse( String line )
+	{
+		
+		String[] parts = line.split( SettingsHelper.DELIMITER, 3 );
+		if ( parts.length < 2 )
+			throw new IllegalArgumentException( "expected time" + SettingsHelper.DELIMITER + "when" +
+					SettingsHelper.DELIMITER + "label but found \"" + line + "\"" );
+		
+		LocalTime time;
+		try
+		{
+			time = LocalTime.parse( parts[0] );
+		} catch ( DateTimeParseException e )
+		{
+			throw new IllegalArgumentException( "Malformed time: \"" + parts[0] + "\"" );
+		}
+		
+		String label = parts.length > 2 ? SettingsHelper.respace( parts[2] ) : "";
+		String when = parts[1].toLowerCase();
+		
+		if ( when.equals( "daily" ) )
+			return new AlarmRule( time, ALL_DAYS, null, label );
+		if ( when.equals( "weekdays" ) )
+			return new AlarmRule( time, WEEKDAYS, null, label );
+		if ( when.equals( "weekends" ) )
+			return new AlarmRule( time, WEEKENDS, null, label );
+		
+		if ( !when.isEmpty() && Character.isDigit( when.charAt( 0 ) ) )
+		{
+			try
+			{
+				return new AlarmRule( time, 0, LocalDate.parse( when ), label );
+			} catch ( DateTimeParseException e )
+			{
+				throw new IllegalArgumentException( "Malformed date: \"" + when + "\"" );
+			}
+		}
+		
+		int days = 0;
+		for ( String day : when.split( "," ) )
+		{
+			int index = dayIndex( day );
+			if ( index < 0 )
+				throw new IllegalArgumentException( "Unknown day: \"" + day + "\"" );
+			days |= 1 << index;
+		}
+		
+		return new AlarmRule( time, days, null, label );
+	}
+	
+	public LocalTime getTime()
+	{
+		
+		return this.time;
+	}
+	
+	public String getLabel()
+	{
+		
+		return this.label;
+	}
+	
+	/**
+	 * @return true if the rule is due on one date only.
+	 */
+	public boolean isOnce()
+	{
+		
+		return this.date != null;
+	}
+	
+	/**
+	 * Works out the first time the rule is due after an instant. A time that
+	 * falls in a daylight saving gap is moved later by the length of the gap,
+	 * and one that happens twice as the clocks go back is due the first time.
+	 * 
+	 * @return The epoch millis it is due at, or {@link #NEVER}.
+	 */
+	public long next( long afterMillis, ZoneId zone )
+	{
+		
+		if ( date != null )
+		{
+			long due = ZonedDateTime.of( date, time, zone ).toInstant().toEpochMilli();
+			return due > afterMillis ? due : NEVER;
+		}
+		
+		LocalDate day = Instant.ofEpochMilli( afterMillis ).atZone( zone ).toLocalDate();
+		
+		// today may already be past the time, so look a full week ahead
+		for ( int i = 0; i <= 7; i++, day = day.plusDays( 1 ) )
+		{
+			if ( ( days & ( 1 << ( day.getDayOfWeek().getValue() - 1 ) ) ) == 0 )
+				continue;
+			
+			long due = ZonedDateTime.of( day, time, zone ).toInstant().toEpochMilli();
+			if ( due > afterMillis )
+				return due;
+		}
+		
+		return NEVER;
+	}
+	
+	public boolean equals( Object obj )
+	{
+		
+		if ( this == obj )
+			return true;
+		if ( !( obj instanceof AlarmRule ) )
+			return false;
+		
+		AlarmRule other = (AlarmRule) obj;
+		return this.time.equals( other.time ) && this.days == other.days &&
+				( this.date == null ? other.date == null : this.date.equals( other.date ) ) &&
+				this.label.equals( other.label );
+	}
+	
+	public int hashCode()
+	{
+		
+		int hash = time.hashCode();
+		hash = 31 * hash + days;
+		hash = 31 * hash + ( date == null ? 0 : date.hashCode() );
+		return 31 * hash + label.hashCode();
+	}
+	
+	/**
+	 * @return The rule as a clock_alarms line.
+	 */
+	public String toString()
+	{
+		
+		String when;
+		if ( date != null )
+			when = date.toString();
+		else if ( days == ALL_DAYS )
+			when = "daily";
+		else if ( days == WEEKDAYS )
+			when = "weekdays";
+		else if ( days == WEEKENDS )
+			when = "weekends";
+		else
+		{
+			StringBuilder list = new StringBuilder();
+			for ( int i = 0; i < 7; i++ )
+			{
+				if ( ( days & ( 1 << i ) ) != 0 )
+					list.append( list.length() == 0 ? "" : "," ).append( DAY_NAMES[i] );
+			}
+			when = list.toString();
+		}
+		
+		return time + SettingsHelper.DELIMITER + when + SettingsHelper.DELIMITER +
+				SettingsHelper.despace( label );
+	}
+	
+	private static int dayIndex( String name )
+	{
+		
+		for ( int i = 0; i < DAY_NAMES.length; i++ )
+		{
+			// "mon", "monday" and "Monday" all name Monday
+			if ( name.length() >= 3 && name.regionMatches( true, 0, DAY_NAMES[i], 0, 3 ) &&
+					DayOfWeek.of( i + 1 ).name().regionMatches( true, 0, name, 0, name.length() ) )
+				return i;
+		}
+		
+		return -1;
+	}
+}
@@ -0,0 +1,56 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Works out how long to wait before trying again after a run of failures:
+ * twice as long after each one, up to a limit, with jitter.
+ *
+ * The wait after n failures is picked at random from the upper half of
+ * base * 2^n (capped at the limit), so it still grows with every failure,
+ * while many clocks that lost the same host at the same moment spread their
+ * retries out instead of all coming back to it together.
+ */
+public class Backoff
+{
+	private final long base;
+	private final long max;
+	
+	/**
+	 * @param base
+	 *            The wait the doubling starts from.
+	 * @param max
+	 *            The longest wait, in the same unit; never less than base.
+	 */
+	public Backoff( long base, long max )
+	{
+		this.base = Math.max( 1, base );
+		this.max = Math.max( this.base, max );
+	}
+	
+	/**
+	 * @param failures
+	 *            How many attempts in a row have failed, from 1.
+	 * @return How long to wait before the next attempt.
+	 */
+	public long delay( int failures )
+	{
+		
+		long cap = base;
+		for ( int i = 0; i < failures && cap < max; i++ )
+			cap = cap > max / 2 ? max : cap * 2;
+		cap = Math.min( cap, max );
+		
+		return cap - ThreadLocalRandom.current().nextLong( cap / 2 + 1 );
+	}
+	
+	public long getBase()
+	{
+		
+		return this.base;
+	}
+	
+	public long getMax()
+	{
+		
+		return this.max;
+	}
+}
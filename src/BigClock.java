@@ -1,8 +1,16 @@
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Container;
 import java.awt.Font;
+import java.awt.Frame;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
@@ -10,20 +18,30 @@ import java.awt.event.ComponentEvent;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.KeyEvent;
-import java.io.File;
+import java.awt.event.WindowEvent;
+import java.awt.event.WindowStateListener;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Scanner;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
-import javax.imageio.ImageIO;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JColorChooser;
+import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -31,91 +49,152 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 
 public class BigClock
 {
 	
-	private String settingsFileURL = "http://nateshot.homenet.org:8025/clock_settings.txt";
+	// how often, in seconds, to look for screens being plugged in or removed
+	private final static int SCREEN_CHECK_PERIOD = 5;
 	
-	private JFrame frame;
-	private JLabel timeLabel;
-	private JLabel dateLabel;
-	private JPanel container;
-	private JPanel main;
+	// set to print the timer wheel's lateness statistics every minute
+	private final static String TIMER_REPORT_PROPERTY = "clock.timer.report";
 	
-	private JMenuBar menuBar;
-	private JMenu fileMenu; // File menu - will contain exit
-	private JMenu editMenu; // Exit menu - will contain settings and preferences
-	private JMenuItem exitItem; // To exit
-	private JMenuItem bgColorItem;
-	private JMenuItem fgColorItem;
-	private JMenuItem preferenceItem;
+	// how long a fired alarm is shown in place of the date, in ms
+	private final static long ALARM_SHOW_MILLIS = 60 * 1000;
 	
-	private Calendar calendar;
-	private SimpleDateFormat timeFormatter;
-	private SimpleDateFormat dateFormatter;
-	private int updateQueryInterval = 30;
-	private long refreshInterval = 200;
-	private boolean useNetSettings = true;
+	// how often the shown time takes a step towards the time server's: at
+	// the rate the clock ticks
+	private final static long SLEW_PERIOD = TimeUnit.SECONDS.toNanos( 1 );
 	
-	private ClockSettings defSettings, fileSettings, netSettings;
+	// the longest the net settings polls back off to while the host fails
+	private final static long MAX_NET_BACKOFF = TimeUnit.MINUTES.toNanos( 15 );
 	
-	public BigClock() throws IOException
+	/*
+	 * One window per screen the clock is shown on. They all share the one
+	 * tick, settings snapshot and settings fetcher below.
+	 */
+	private final List<ClockWindow> windows = new CopyOnWriteArrayList<ClockWindow>();
+	
+	// built the first time a color is picked, then reused
+	private JColorChooser colorChooser;
+	
+	// formats the time for the windows; only touched on the event dispatch thread
+	private TickFormatter tickFormatter;
+	
+	// runs the tick and all other periodic work
+	private final TimerWheel timerWheel = new TimerWheel();
+	private final ClockMetrics metrics = new ClockMetrics( timerWheel );
+	private TickScheduler tickScheduler;
+	private ClockTickListener tickListener;
+	
+	// stops the tick while no window can be seen; only touched on the event
+	// dispatch thread
+	private final TickVisibility visibility = new TickVisibility( new Runnable()
 	{
-		/*
-		 * Create window and initialize clock.
-		 */
-		frame = new JFrame( SettingsHelper.DEFAULT_TITLE );
-		frame.setSize( 660, 500 );
-		frame.setExtendedState( 6 );
-		frame.setIconImage( ImageIO
-				.read( BigClock.class.getClassLoader().getResourceAsStream( "clock.png" ) ) );
-		frame.setDefaultCloseOperation( JFrame.EXIT_ON_CLOSE );
-		
-		buildMenuBar();
 		
-		main = new JPanel();
-		
-		timeLabel = new JLabel();
-		dateLabel = new JLabel();
-		container = new JPanel();
-		
-		timeLabel.setAlignmentX( Component.CENTER_ALIGNMENT );
-		dateLabel.setAlignmentX( Component.CENTER_ALIGNMENT );
-		
-		container.setLayout( new BoxLayout( container, BoxLayout.Y_AXIS ) );
-		
-		container.add( timeLabel );
-		container.add( dateLabel );
-		
-		main.setLayout( new GridBagLayout() );
-		main.add( container );
-		setBackgroundColor( Color.LIGHT_GRAY );
-		
-		timeFormatter = new SimpleDateFormat( "kk:mm:ss" );
-		dateFormatter = new SimpleDateFormat( "EEEE, MMM d, yyyy" );
-		
-		defSettings = new ClockSettings();
-		fileSettings = new ClockSettings();
-		netSettings = new ClockSettings();
+		public void run()
+		{
+			
+			tickListener.show( clock.currentTimeMillis() );
+		}
+	} );
+	// formats the wallboards' zones; only touched on the event dispatch thread
+	private ZoneTickEngine zoneEngine;
+	private NetSettingsFetcher netFetcher;
+	
+	// the last net settings applied, kept on disk for the next start
+	private SettingsWriter netCacheWriter;
+	
+	// the time shown, corrected by the time server if one is set
+	private final CorrectedClock clock = new CorrectedClock();
+	private SntpClient timeSync;
+	private volatile TimerWheel.ScheduledJob timeSyncJob;
+	
+	// runs only while the clock is corrected; only touched on the wheel's thread
+	private TimerWheel.ScheduledJob slewJob;
+	private SettingsWriter settingsWriter;
+	private SettingsFileWatcher fileWatcher;
+	
+	// checked on every tick, and loaded from the file next to the settings
+	private AlarmEngine alarms;
+	private SettingsFileWatcher alarmWatcher;
+	
+	// the alarm shown in place of the date, if any; set on the wheel's thread
+	private volatile String announcement;
+	
+	/*
+	 * Settings are immutable snapshots. The ones in effect and the user's own
+	 * (file) settings are each published through a single reference, so the
+	 * tick, fetch and UI threads can read them without locking.
+	 */
+	private final ClockSettings defSettings = new ClockSettings();
+	private final AtomicReference<ClockSettings> fileSettings =
+			new AtomicReference<ClockSettings>( defSettings );
+	private final AtomicReference<ClockSettings> activeSettings =
+			new AtomicReference<ClockSettings>();
+	
+	// what the windows currently show; only touched on the event dispatch thread
+	private ClockSettings shownSettings;
+	private volatile boolean titleOverridden;
+	
+	public BigClock() throws IOException
+	{
+		tickFormatter = new TickFormatter();
+		timerWheel.start();
+		metrics.register();
+		
+		netFetcher = new NetSettingsFetcher( new NetFetchListener() );
+		netFetcher.setMetrics( metrics );
+		metrics.setNetBreaker( netFetcher.getBreaker() );
+		netCacheWriter = new SettingsWriter(
+				Paths.get( SettingsHelper.DEFAULT_NET_CACHE_FILEPATH ), timerWheel );
+		timeSync = new SntpClient( clock );
+		timeSync.setMetrics( metrics );
+		settingsWriter = new SettingsWriter( Paths.get( SettingsHelper.DEFAULT_FILEPATH ),
+				timerWheel );
 		
 		loadFileSettings();
+		StartupTimer.mark( "load file settings" );
+		watchFileSettings();
+		StartupTimer.mark( "watch settings file" );
+		
+		/*
+		 * The settings are resolved before any window exists, so a window is
+		 * first painted with the configured colors and title. A clock that
+		 * uses the net settings starts with the last ones it fetched, without
+		 * waiting for the settings host.
+		 */
+		ClockSettings resolved = fileSettings.get();
+		if ( resolved.getUseNetSettings() )
+		{
+			resolved = loadCachedNetSettings( resolved );
+			StartupTimer.mark( "load cached net settings" );
+		}
 		
-		frame.add( main );
-		frame.setVisible( true );
+		final ClockSettings initial = resolved;
+		activeSettings.set( initial );
+		tickFormatter.format( clock.currentTimeMillis() );
 		
-		// Make the font size change on frame resize
-		frame.addComponentListener( new ComponentAdapter()
+		try
 		{
-			
-			public void componentResized( ComponentEvent evt )
+			SwingUtilities.invokeAndWait( new Runnable()
 			{
 				
-				// System.out.println( frame.getWidth() );
-				timeLabel.setFont( new Font( "Arial", Font.BOLD, frame.getWidth() / 5 ) );
-				dateLabel.setFont( new Font( "Arial", Font.BOLD, frame.getWidth() / 14 ) );
-			}
-		} );
+				public void run()
+				{
+					
+					// opens a window on each screen the settings ask for
+					showSettings( initial );
+				}
+			} );
+		} catch ( InterruptedException | InvocationTargetException e )
+		{
+			System.out.println( "Error: " + e.getMessage() );
+		}
+		StartupTimer.mark( "build and show windows" );
 		
 		start();
 	}
@@ -123,69 +202,90 @@ public class BigClock
 	private void start() throws IOException
 	{
 		
-		/*
-		 * load the settings
-		 */
-		useFileSettings();
-		
 		/*
 		 * If using the net settings has been selected from the 
 		 * settings file, then we use the net settings before
 		 * using the local file settings.
 		 */
-		if ( useNetSettings )
+		if ( fileSettings.get().getUseNetSettings() )
 		{
 			useNetSettings();
 		}
 		
-		int updateSettingsCounter = 0;
-		
 		/*
-		 * Continue updating the time while the program is running...
+		 * Continue updating the time while the program is running; every
+		 * periodic job has its own deadline on the one timer wheel.
 		 */
-		while ( true )
+		tickListener = new ClockTickListener();
+		alarms = new AlarmEngine( tickListener );
+		loadAlarms();
+		watchAlarms();
+		
+		// alarms keep their own deadline, so they fire while the tick is stopped
+		alarms.start( timerWheel, clock );
+		
+		tickScheduler = new TickScheduler( tickListener );
+		tickScheduler.setClock( clock );
+		tickScheduler.setPeriod( activeSettings.get().getRefreshInterval() );
+		tickScheduler.start( timerWheel );
+		
+		// a window may have been minimized or hidden before the tick started
+		SwingUtilities.invokeLater( new Runnable()
 		{
-			calendar = Calendar.getInstance();
 			
-			timeLabel.setText( timeFormatter.format( calendar.getTime() ) );
-			dateLabel.setText( dateFormatter.format( calendar.getTime() ) );
-			
-			/* 
-			 * Slow down the refresh rate so it doesn't consume
-			 * all the machine's resources. 
-			 */
-			try
-			{
-				Thread.sleep( refreshInterval );
-			} catch ( InterruptedException e )
+			public void run()
 			{
-				System.out.println( "Error: " + e.getMessage() );
+				
+				visibility.attach( tickScheduler, timerWheel );
 			}
+		} );
+		
+		timerWheel.schedule( "net-poll", new NetPollJob(),
+				System.nanoTime() + netPollPeriod( activeSettings.get() ) );
+		
+		// the time server is asked on the same wheel, straight away at first
+		timeSyncJob = timerWheel.schedule( "time-sync", new TimeSyncJob(), System.nanoTime() );
+		
+		// pick up screens that were plugged in or removed
+		timerWheel.schedule( "screen-check", SCREEN_CHECK_PERIOD, TimeUnit.SECONDS, new Runnable()
+		{
 			
-			// update the settings only every interval period ( * 5 because
-			// there are 5 * 200ms in a second)
-			if ( updateSettingsCounter >= updateQueryInterval * (int) (1000 / refreshInterval) )
+			public void run()
 			{
-				// No need to update settings at a regular interval if file
-				// settings are being used as they are loaded at start and they
-				// can only be changed by the user when use-net is not selected.
-				if ( useNetSettings )
+				
+				SwingUtilities.invokeLater( new ScreenCheck() );
+			}
+		} );
+		
+		if ( Boolean.getBoolean( TIMER_REPORT_PROPERTY ) )
+		{
+			timerWheel.schedule( "timer-report", 1, TimeUnit.MINUTES, new Runnable()
+			{
+				
+				public void run()
 				{
-					useNetSettings();
-					updateSettingsCounter = 0;
+					
+					for ( TimerWheel.ScheduledJob job : timerWheel.getJobs() )
+						System.out.println( job );
 				}
-			}
-			
-			updateSettingsCounter++;
+			} );
 		}
+		
+		return;
+	}
+	
+	private static long netPollPeriod( ClockSettings settings )
+	{
+		
+		return TimeUnit.SECONDS.toNanos( settings.getQueryInterval() );
 	}
 	
 	private void useNetSettings()
 	{
 		
-		// upate the net settings before updating the settings
-		loadNetSettings();
-		updateSettings( netSettings );
+		// ask for fresh net settings; they are applied by the fetcher once
+		// they arrive, so a slow settings host never stalls the clock
+		netFetcher.requestFetch( fileSettings.get().getNetURL() );
 		
 		return;
 	}
@@ -193,7 +293,10 @@ public class BigClock
 	private void useFileSettings()
 	{
 		
-		updateSettings( fileSettings );
+		// a long poll held open for net settings is no longer wanted
+		netFetcher.stopPolling();
+		metrics.setSettingsSource( ClockMetrics.SOURCE_FILE );
+		updateSettings( fileSettings.get() );
 		
 		return;
 	}
@@ -205,424 +308,1301 @@ public class BigClock
 		try
 		{
 			// use default file path
-			Scanner settings = new Scanner( new File( SettingsHelper.DEFAULT_FILEPATH ) );
+			InputStream in = new FileInputStream( SettingsHelper.DEFAULT_FILEPATH );
+			SettingsParser parser = new SettingsParser();
+			ClockEvents.SettingsLoad event = new ClockEvents.SettingsLoad();
+			event.begin();
 			
-			String setting, selector[];
-			
-			/*
-			 * Read all the settings from the file
-			 */
-			while ( settings.hasNextLine() )
+			try
 			{
-				
-				/*
-				 * Deblank the string for simpler use
-				 */
-				setting = SettingsHelper.removeWhiteSpaces( settings.nextLine() );
-				
-				/*
-				 * if the line is empty, move to the next one.
-				 */
-				if ( setting.isEmpty() )
-					continue;
-				
-				/*
-				 * Ignore the line if it starts with a non-letter character (such as a // or # for a comment)
-				 */
-				if ( !Character.isLetter( setting.charAt( 0 ) ) )
-					continue;
-				
-				/*
-				 * Check if the setting is valid - with two parts. If not, move
-				 * to the next line.
-				 */
-				selector = setting.split( SettingsHelper.DELIMITER );
-				if ( selector.length != 2 )
-					continue;
-				
-				String tempString;
-				Color newColor;
-				/*
-				 * Switch through possible settings
-				 */
-				switch ( selector[0].toLowerCase() )
-				{
-					case "background-color":
-						/*
-						 * Extract and set the color
-						 */
-						
-						// gets the numbers separated by commas
-						tempString = selector[1].substring( 1, selector[1].length() - 1 );
-						
-						newColor = SettingsHelper.verifyColor( tempString );
-						
-						fileSettings.setBackgroundColor( newColor );
-						continue;
-					case "font-color":
-						/*
-						 * Extract and set the color
-						 */
-						// gets the numbers separated by commas
-						tempString = selector[1].substring( 1, selector[1].length() - 1 );
-						
-						newColor = SettingsHelper.verifyColor( tempString );
-						
-						fileSettings.setForegroundColor( newColor );
-						continue;
-					
-					case "title":
-						fileSettings.setTitle( SettingsHelper.respace( selector[1] ) );
-						continue;
-					
-					case "extended-state":
-						fileSettings.setExtendedState( Integer.parseInt( selector[1] ) );
-						continue;
-					
-					case "query-interval":
-						fileSettings.setQueryInterval( Integer.parseInt( selector[1] ) );
-						continue;
-					
-					case "refresh-interval":
-						fileSettings.setRefreshInterval( Long.parseLong( selector[1] ) );
-						continue;
-					
-					case "settings-url":
-						fileSettings.setNetURL( selector[1] );
-						continue;
-					
-					case "use-net-settings":
-						fileSettings.setUseNetSettings( Boolean.parseBoolean( selector[1] ) );
-						continue;
-					
-					default:
-						continue;
-				}
+				fileSettings.set( parser.parse( in, fileSettings.get() ) );
+			} finally
+			{
+				in.close();
 			}
 			
-			settings.close();
-			
-		} catch ( NumberFormatException e )
-		{
-			System.out.println( "Error: " + e.getMessage() );
-			frame.setTitle( "CLOCK - Parse Error in Settings Load (file)" );
+			commitLoadEvent( event, parser, "file" );
+			reportParseErrors( parser, "file" );
+		
 		} catch ( FileNotFoundException ef )
 		{
 			
 			// The file does not exist so we create it using the default
 			// settings.
-			PrintWriter fileOut;
-			try
-			{
-				fileOut = new PrintWriter( new File( SettingsHelper.DEFAULT_FILEPATH ) );
-				fileOut.println( defSettings.toString() );
-				fileOut.close();
-			} catch ( FileNotFoundException e )
-			{
-				System.out.println( "Creating the settings file failed... \n" + e.getMessage() );
-			}
+			settingsWriter.save( defSettings );
 		} catch ( Exception e )
 		{
 			System.out.println(
 					"The clock has encoutered an unexpected error retrieving the settings file..." );
 			System.out.println( e.getMessage() );
 			e.printStackTrace();
-			frame.setTitle( "CLOCK - Unexpected Error in Settings Load (file)" );
+			showErrorTitle( "CLOCK - Unexpected Error in Settings Load (file)" );
+		}
+		
+		return;
+	
+	}
+	
+	/**
+	 * Loads the net settings that were last applied, as kept on disk.
+	 * 
+	 * @return The cached settings, or the given ones if there are none.
+	 */
+	private ClockSettings loadCachedNetSettings( ClockSettings settings )
+	{
+		
+		try
+		{
+			InputStream in = new FileInputStream( SettingsHelper.DEFAULT_NET_CACHE_FILEPATH );
+			SettingsParser parser = new SettingsParser();
+			ClockEvents.SettingsLoad event = new ClockEvents.SettingsLoad();
+			event.begin();
+			
+			ClockSettings cached;
+			try
+			{
+				cached = parser.parse( in, defSettings );
+			} finally
+			{
+				in.close();
+			}
+			
+			commitLoadEvent( event, parser, ClockMetrics.SOURCE_CACHE );
+			metrics.setSettingsSource( ClockMetrics.SOURCE_CACHE );
+			return cached;
+		} catch ( FileNotFoundException e )
+		{
+			// the net settings have never been fetched
+		} catch ( IOException e )
+		{
+			System.out.println( "Unable to read the cached net settings..." );
+			System.out.println( e.getMessage() );
+		}
+		
+		return settings;
+	}
+	
+	/**
+	 * Starts watching the settings file, so changes made to it while the clock
+	 * runs (by hand or by configuration management) are picked up without a
+	 * restart.
+	 */
+	private void watchFileSettings()
+	{
+		
+		fileWatcher = new SettingsFileWatcher( Paths.get( SettingsHelper.DEFAULT_FILEPATH ),
+				new FileWatchListener() );
+		try
+		{
+			fileWatcher.start( timerWheel );
+		} catch ( IOException e )
+		{
+			System.out.println( "Unable to watch the settings file for changes..." );
+			System.out.println( e.getMessage() );
 		}
 		
 		return;
+	}
+	
+	private void reloadFileSettings( byte[] content )
+	{
 		
+		SettingsParser parser = new SettingsParser();
+		ClockEvents.SettingsLoad event = new ClockEvents.SettingsLoad();
+		event.begin();
+		try
+		{
+			fileSettings.set( parser.parse( new ByteArrayInputStream( content ), defSettings ) );
+		} catch ( IOException e )
+		{
+			System.out.println( "Error: " + e.getMessage() );
+			return;
+		}
+		
+		commitLoadEvent( event, parser, "file" );
+		reportParseErrors( parser, "file" );
+		
+		// feed the new settings through the normal apply path
+		if ( fileSettings.get().getUseNetSettings() )
+			useNetSettings();
+		else
+			useFileSettings();
+		
+		return;
 	}
 	
-	private boolean loadNetSettings()
+	/**
+	 * Loads the alarms from the alarms file. Without the file the clock simply
+	 * has no alarms.
+	 */
+	private void loadAlarms()
 	{
 		
-		/*
-		 * BEGIN LOADING NET SETTINGS
-		 */
 		try
 		{
-			// use default file path
-			Scanner settings = new Scanner( new URL( settingsFileURL ).openStream() );
+			InputStream in = new FileInputStream( SettingsHelper.DEFAULT_ALARMS_FILEPATH );
+			try
+			{
+				setAlarms( in );
+			} finally
+			{
+				in.close();
+			}
+		} catch ( FileNotFoundException e )
+		{
+			// no alarms
+		} catch ( IOException e )
+		{
+			System.out.println( "Unable to read the alarms file..." );
+			System.out.println( e.getMessage() );
+		}
+		
+		return;
+	}
+	
+	/**
+	 * Watches the alarms file the same way as the settings file, so alarms can
+	 * be added and removed while the clock runs.
+	 */
+	private void watchAlarms()
+	{
+		
+		alarmWatcher = new SettingsFileWatcher( Paths.get( SettingsHelper.DEFAULT_ALARMS_FILEPATH ),
+				new AlarmWatchListener() );
+		try
+		{
+			alarmWatcher.start( timerWheel );
+		} catch ( IOException e )
+		{
+			System.out.println( "Unable to watch the alarms file for changes..." );
+			System.out.println( e.getMessage() );
+		}
+		
+		return;
+	}
+	
+	/**
+	 * Replaces the alarms with the ones read from a stream. Lines that cannot
+	 * be read are printed and left out; the rest still apply.
+	 */
+	private void setAlarms( InputStream in ) throws IOException
+	{
+		
+		List<String> errors = new ArrayList<String>();
+		List<AlarmRule> rules = AlarmEngine.read( new InputStreamReader( in ), errors );
+		alarms.setRules( rules, clock.currentTimeMillis() );
+		
+		for ( String error : errors )
+			System.out.println( "Error (alarms): " + error );
+		
+		return;
+	}
+	
+	/**
+	 * Applies the body of a net settings fetch, and keeps it on disk for the
+	 * next start.
+	 * 
+	 * @return false if net settings were switched off meanwhile and the body
+	 *         was dropped, so the next fetch gets it in full again.
+	 * @throws IOException
+	 *             If the body cannot be read; the fetcher counts this as a
+	 *             failed fetch.
+	 */
+	private boolean loadNetSettings( InputStream in ) throws IOException
+	{
+		
+		// parse the body handed over by the fetcher
+		SettingsParser parser = new SettingsParser();
+		ClockEvents.SettingsLoad event = new ClockEvents.SettingsLoad();
+		event.begin();
+		ClockSettings loaded = parser.parse( in, defSettings );
+		
+		commitLoadEvent( event, parser, "net" );
+		reportParseErrors( parser, "net" );
+		
+		// the user may have switched net settings off while this was loading
+		if ( !fileSettings.get().getUseNetSettings() )
+			return false;
+		
+		metrics.setSettingsSource( ClockMetrics.SOURCE_NET );
+		updateSettings( loaded );
+		netCacheWriter.save( loaded );
+		return true;
+	}
+	
+	private static void commitLoadEvent( ClockEvents.SettingsLoad event, SettingsParser parser,
+			String source )
+	{
+		
+		event.end();
+		if ( event.shouldCommit() )
+		{
+			event.source = source;
+			event.characters = parser.getCharsRead();
+			event.errors = parser.getErrors().size();
+			event.commit();
+		}
+		
+		return;
+	}
+	
+	/**
+	 * Prints the lines the parser could not apply. Everything else from the
+	 * source has still been loaded.
+	 */
+	private void reportParseErrors( SettingsParser parser, String source )
+	{
+		
+		if ( !parser.hasErrors() )
+			return;
+		
+		metrics.parseErrors( source, parser.getErrors().size() );
+		for ( String error : parser.getErrors() )
+			System.out.println( "Error (" + source + "): " + error );
+		showErrorTitle( "CLOCK - Parse Error in Settings Load (" + source + ")" );
+		
+		return;
+	}
+	
+	public void setBackgroundColor( Color color )
+	{
+		
+		for ( ClockWindow window : windows )
+			window.setBackgroundColor( color );
+		return;
+	}
+	
+	public Color getBackgroundColor()
+	{
+		
+		return windows.isEmpty() ? null : windows.get( 0 ).getBackgroundColor();
+	}
+	
+	public void setTextColor( Color color )
+	{
+		
+		for ( ClockWindow window : windows )
+			window.setTextColor( color );
+		return;
+	}
+	
+	public Color getTextColor()
+	{
+		
+		return windows.isEmpty() ? null : windows.get( 0 ).getTextColor();
+	}
+	
+	/**
+	 * Opens a window on each screen the settings ask for that does not have
+	 * one yet, and closes the windows of screens that are no longer asked for
+	 * or have been unplugged. Screens are matched by their ID, so windows on
+	 * screens that stay are left alone. Runs on the event dispatch thread (or
+	 * before the clock starts).
+	 */
+	private void updateScreens( String screens )
+	{
+		
+		List<GraphicsDevice> wanted = selectScreens( screens );
+		
+		for ( ClockWindow window : windows )
+		{
+			if ( !containsScreen( wanted, window.getScreenID() ) )
+			{
+				windows.remove( window );
+				window.dispose();
+			}
+		}
+		
+		for ( GraphicsDevice device : wanted )
+		{
+			if ( findWindow( device.getIDstring() ) != null )
+				continue;
 			
-			String setting, selector[];
+			ClockWindow window = new ClockWindow( device );
+			if ( shownSettings != null )
+				window.show( shownSettings, false );
+			window.open();
+			windows.add( window );
+		}
+		
+		return;
+	}
+	
+	/**
+	 * Picks the attached screens a "screens" setting names. Numbers of screens
+	 * that are not attached are skipped, and if none are left the clock falls
+	 * back to the primary screen.
+	 */
+	private static List<GraphicsDevice> selectScreens( String screens )
+	{
+		
+		GraphicsEnvironment environment = GraphicsEnvironment.getLocalGraphicsEnvironment();
+		GraphicsDevice[] devices = environment.getScreenDevices();
+		List<GraphicsDevice> selected = new ArrayList<GraphicsDevice>();
+		
+		if ( screens.equals( ClockSettings.SCREENS_ALL ) )
+		{
+			selected.addAll( Arrays.asList( devices ) );
+		} else if ( !screens.equals( ClockSettings.SCREENS_PRIMARY ) )
+		{
+			for ( String number : screens.split( "," ) )
+			{
+				try
+				{
+					int index = Integer.parseInt( number );
+					if ( index < devices.length && !selected.contains( devices[index] ) )
+						selected.add( devices[index] );
+				} catch ( NumberFormatException e )
+				{
+					// too large to be an attached screen
+				}
+			}
+		}
+		
+		if ( selected.isEmpty() )
+			selected.add( environment.getDefaultScreenDevice() );
+		return selected;
+	}
+	
+	private static boolean containsScreen( List<GraphicsDevice> devices, String id )
+	{
+		
+		for ( GraphicsDevice device : devices )
+		{
+			if ( device.getIDstring().equals( id ) )
+				return true;
+		}
+		
+		return false;
+	}
+	
+	private ClockWindow findWindow( String screenID )
+	{
+		
+		for ( ClockWindow window : windows )
+		{
+			if ( window.getScreenID().equals( screenID ) )
+				return window;
+		}
+		
+		return null;
+	}
+	
+	private void saveSettings()
+	{
+		
+		// Save settings from fileSettings only because we don't want the net
+		// settings overwriting the text file. The write happens in the
+		// background, merged with any other changes made around the same time.
+		settingsWriter.save( fileSettings.get() );
+		
+		return;
+	}
+	
+	/**
+	 * Makes a set of settings the active one. The snapshot is published
+	 * atomically, and compared to the one it replaces: only if a field the
+	 * window shows differs is a single task queued on the event dispatch
+	 * thread, which then applies just the changed fields. Settings that match
+	 * what is showing touch no Swing components at all.
+	 */
+	private void updateSettings( ClockSettings next )
+	{
+		
+		ClockEvents.SettingsUpdate event = new ClockEvents.SettingsUpdate();
+		event.begin();
+		
+		ClockSettings previous = activeSettings.getAndSet( next );
+		
+		if ( tickScheduler != null )
+			tickScheduler.setPeriod( next.getRefreshInterval() );
+		
+		// a new time server, or none, applies straight away
+		TimerWheel.ScheduledJob syncJob = timeSyncJob;
+		if ( syncJob != null && previous != null &&
+				!previous.getTimeServer().equals( next.getTimeServer() ) )
+		{
+			syncJob.cancel();
+			timeSyncJob = timerWheel.schedule( "time-sync", new TimeSyncJob(), System.nanoTime() );
+		}
+		
+		boolean unchanged = previous != null && !titleOverridden &&
+				previous.getBackgroundColor().equals( next.getBackgroundColor() ) &&
+				previous.getForegroundColor().equals( next.getForegroundColor() ) &&
+				previous.getTitle().equals( next.getTitle() ) &&
+				previous.getExtendedState() == next.getExtendedState() &&
+				previous.getWallboardZones().equals( next.getWallboardZones() ) &&
+				previous.getWallboardColumns() == next.getWallboardColumns() &&
+				previous.getScreens().equals( next.getScreens() ) &&
+				previous.getDisplayMode().equals( next.getDisplayMode() ) &&
+				previous.getFrameRate() == next.getFrameRate();
+		
+		if ( !unchanged )
+		{
+			SwingUtilities.invokeLater( new Runnable()
+			{
+				
+				public void run()
+				{
+					
+					showSettings( activeSettings.get() );
+				}
+			} );
+		}
+		
+		event.end();
+		if ( event.shouldCommit() )
+		{
+			event.changed = ClockEvents.changedFields( previous, next );
+			event.shown = !unchanged;
+			event.commit();
+		}
+		
+		return;
+	}
+	
+	/**
+	 * Brings the windows in line with a set of settings, touching only what
+	 * differs from what they show. Runs on the event dispatch thread; tasks
+	 * queued by racing updates all apply the latest snapshot, so the last one
+	 * published always wins.
+	 */
+	private void showSettings( ClockSettings next )
+	{
+		
+		ClockSettings shown = shownSettings;
+		shownSettings = next;
+		
+		boolean restoreTitle = titleOverridden;
+		titleOverridden = false;
+		
+		// the zones are formatted once per tick, for every window's wallboard
+		if ( shown == null || !next.getWallboardZones().equals( shown.getWallboardZones() ) )
+		{
+			if ( next.getWallboardZones().isEmpty() )
+			{
+				zoneEngine = null;
+			} else
+			{
+				ZoneTickEngine engine = new ZoneTickEngine( next.getWallboardZones() );
+				engine.tick( clock.currentTimeMillis() );
+				zoneEngine = engine;
+			}
+		}
+		
+		if ( shown == null || !next.getScreens().equals( shown.getScreens() ) )
+			updateScreens( next.getScreens() );
+		
+		for ( ClockWindow window : windows )
+			window.show( next, restoreTitle );
+		
+		return;
+	}
+	
+	/**
+	 * @return The text for the line under the time: the date, or an alarm
+	 *         that has just fired.
+	 */
+	private String dateLine()
+	{
+		
+		String text = announcement;
+		return text != null ? text : tickFormatter.getDateText();
+	}
+	
+	/**
+	 * Shows an error in the title bar until the next settings are applied.
+	 * Called from the threads that load settings; the frames are set on the
+	 * event dispatch thread.
+	 */
+	private void showErrorTitle( final String title )
+	{
+		
+		titleOverridden = true;
+		SwingUtilities.invokeLater( new Runnable()
+		{
 			
-			/*
-			 * Read all the settings from the file
-			 */
-			while ( settings.hasNextLine() )
+			public void run()
 			{
 				
-				/*
-				 * Deblank the string for simpler use
-				 */
-				setting = SettingsHelper.removeWhiteSpaces( settings.nextLine() );
+				for ( ClockWindow window : windows )
+					window.setTitle( title );
+			}
+		} );
+		return;
+	}
+	
+	/**
+	 * Starts the clock, or with "--serve [port [file]]" a server that hands
+	 * the settings file out to other clocks instead.
+	 */
+	public static void main( String[] args ) throws IOException
+	{
+		
+		StartupTimer.mark( "main" );
+		if ( args.length > 0 && args[0].equals( "--serve" ) )
+		{
+			SettingsServer.main( Arrays.copyOfRange( args, 1, args.length ) );
+			return;
+		}
+		
+		new BigClock();
+	}
+	
+	private class ClockTickListener implements TickScheduler.TickListener, AlarmEngine.AlarmListener
+	{
+		
+		private boolean firstTick = true;
+		
+		// until when the last alarm is shown; only touched on the wheel's thread
+		private long announcedUntil;
+		
+		// the latest tick not yet shown, and whether a show of it is queued
+		private volatile long pendingMillis;
+		private volatile long pendingLateness;
+		private final AtomicBoolean showQueued = new AtomicBoolean();
+		private final Runnable showTask = new ShowTask();
+		
+		// the alarm the date line last showed; only touched on the event
+		// dispatch thread
+		private String shownAnnouncement;
+		
+		/**
+		 * Runs on the timer wheel's thread. The windows are Swing components,
+		 * so the tick is handed to the event dispatch thread to be shown; if
+		 * that is still busy with the last one, the queued show just picks up
+		 * the newer time instead of another being queued behind it.
+		 */
+		public void tick( long epochMillis, long latenessMillis )
+		{
+			
+			if ( firstTick )
+			{
+				firstTick = false;
+				StartupTimer.mark( "first tick" );
+				StartupTimer.report();
+			}
+			
+			// how far after the wall-clock second boundary the tick landed
+			long lateness = TimeUnit.MILLISECONDS.toNanos( latenessMillis );
+			metrics.recordTick( lateness );
+			
+			// a fired alarm takes the date line over for a while
+			alarms.check( epochMillis );
+			if ( announcement != null && epochMillis >= announcedUntil )
+				announcement = null;
+			
+			pendingLateness = lateness;
+			pendingMillis = epochMillis;
+			if ( showQueued.compareAndSet( false, true ) )
+				SwingUtilities.invokeLater( showTask );
+			
+			return;
+		}
+		
+		/**
+		 * Formats the time once, for every window: the single clock from the
+		 * formatter, every wallboard from the shared zone engine. Runs on the
+		 * event dispatch thread.
+		 * 
+		 * @return true if the date changed.
+		 */
+		public boolean show( long epochMillis )
+		{
+			
+			ZoneTickEngine engine = zoneEngine;
+			if ( engine != null )
+				engine.tick( epochMillis );
+			boolean dateChanged = tickFormatter.format( epochMillis );
+			
+			String text = announcement;
+			boolean dateLineChanged = dateChanged || text != shownAnnouncement;
+			shownAnnouncement = text;
+			
+			for ( ClockWindow window : windows )
+				window.tick( dateLineChanged );
+			
+			return dateChanged;
+		}
+		
+		/**
+		 * Shows an alarm that has fired, from the next time the clock is shown.
+		 * Runs on the timer wheel's thread, from {@link #tick(long, long)} or
+		 * the alarm engine's own job.
+		 */
+		public void fired( AlarmRule rule, long dueMillis )
+		{
+			
+			String label = rule.getLabel();
+			announcement = label.isEmpty() ? "Alarm " + rule.getTime() : label;
+			announcedUntil = clock.currentTimeMillis() + ALARM_SHOW_MILLIS;
+			Toolkit.getDefaultToolkit().beep();
+			return;
+		}
+		
+		/**
+		 * Shows the latest tick. Runs on the event dispatch thread.
+		 */
+		private class ShowTask implements Runnable
+		{
+			
+			public void run()
+			{
 				
-				/*
-				 * if the line is empty, move to the next one.
-				 */
-				if ( setting.isEmpty() )
-					continue;
+				// cleared first, so a tick from now on queues another show
+				showQueued.set( false );
 				
-				/*
-				 * Ignore the line if it starts with a non-letter character (such as a // or # for a comment)
-				 */
-				if ( !Character.isLetter( setting.charAt( 0 ) ) )
-					continue;
+				ClockEvents.Tick event = new ClockEvents.Tick();
+				event.begin();
 				
-				/*
-				 * Check if the setting is valid - with two parts. If not, move
-				 * to the next line.
-				 */
-				selector = setting.split( SettingsHelper.DELIMITER );
-				if ( selector.length != 2 )
-					continue;
+				boolean dateChanged = show( pendingMillis );
 				
-				String tempString;
-				Color newColor;
-				/*
-				 * Switch through possible settings
-				 */
-				switch ( selector[0].toLowerCase() )
+				event.end();
+				if ( event.shouldCommit() )
 				{
-					case "background-color":
-						/*
-						 * Extract and set the color
-						 */
-						
-						// gets the numbers separated by commas
-						tempString = selector[1].substring( 1, selector[1].length() - 1 );
-						
-						newColor = SettingsHelper.verifyColor( tempString );
-						
-						netSettings.setBackgroundColor( newColor );
-						continue;
-					case "font-color":
-						/*
-						 * Extract and set the color
-						 */
-						// gets the numbers separated by commas
-						tempString = selector[1].substring( 1, selector[1].length() - 1 );
-						
-						newColor = SettingsHelper.verifyColor( tempString );
-						
-						netSettings.setForegroundColor( newColor );
-						continue;
-					
-					case "title":
-						netSettings.setTitle( SettingsHelper.respace( selector[1] ) );
-						continue;
-					
-					case "extended-state":
-						netSettings.setExtendedState( Integer.parseInt( selector[1] ) );
-						continue;
-					
-					case "query-interval":
-						netSettings.setQueryInterval( Integer.parseInt( selector[1] ) );
-						continue;
-					
-					case "refresh-interval":
-						netSettings.setRefreshInterval( Long.parseLong( selector[1] ) );
-						continue;
-					
-					case "settings-url":
-						netSettings.setNetURL( selector[1] );
-						continue;
-					
-					case "use-net-settings":
-						netSettings.setUseNetSettings( Boolean.parseBoolean( selector[1] ) );
-						continue;
-					
-					default:
-						continue;
+					event.lateness = pendingLateness;
+					event.dateChanged = dateChanged;
+					event.windows = windows.size();
+					event.commit();
 				}
+				
+				return;
 			}
-			settings.close();
+		}
+	}
+	
+	/**
+	 * Asks for the net settings every query interval, on its own deadline
+	 * rather than counted in ticks, so the display's refresh interval has no
+	 * say in how often the settings host is asked. While the host keeps
+	 * failing the polls back off, up to {@link #MAX_NET_BACKOFF}.
+	 */
+	private class NetPollJob implements TimerWheel.Job
+	{
+		
+		public long run( long deadline )
+		{
+			
+			ClockSettings settings = activeSettings.get();
 			
-		} catch ( NumberFormatException e )
+			// No need to update settings at a regular interval if file
+			// settings are being used as they are loaded at start and they
+			// can only be changed by the user when use-net is not selected.
+			// The user's choice is in the file settings; the active ones may
+			// still be the file's after net settings were switched back on.
+			if ( fileSettings.get().getUseNetSettings() )
+				useNetSettings();
+			
+			// a changed interval applies from the next poll
+			long period = netPollPeriod( settings );
+			int failures = netFetcher.getBreaker().getFailures();
+			if ( failures > 0 )
+				period = new Backoff( period, MAX_NET_BACKOFF ).delay( failures );
+			return TimerWheel.next( deadline, period );
+		}
+	}
+	
+	/**
+	 * Asks the time server, if one is set, every time interval, and has the
+	 * shown time slew towards its answers. With the server turned off the
+	 * clock goes back to the computer's own time, and stops slewing.
+	 */
+	private class TimeSyncJob implements TimerWheel.Job
+	{
+		
+		public long run( long deadline )
 		{
-			System.out.println( "Error: " + e.getMessage() );
-			frame.setTitle( "CLOCK - Parse Error in Settings Load (net)" );
 			
-			return false;
-		} catch ( Exception e )
+			ClockSettings settings = activeSettings.get();
+			
+			String server = settings.getTimeServer();
+			if ( server.equals( ClockSettings.TIME_SERVER_OFF ) )
+			{
+				clock.reset();
+				if ( slewJob != null )
+				{
+					slewJob.cancel();
+					slewJob = null;
+				}
+			} else
+			{
+				timeSync.requestSync( server );
+				if ( slewJob == null )
+					slewJob = timerWheel.schedule( "time-slew", new SlewJob(),
+							System.nanoTime() + SLEW_PERIOD );
+			}
+			
+			return TimerWheel.next( deadline,
+					TimeUnit.SECONDS.toNanos( settings.getTimeInterval() ) );
+		}
+	}
+	
+	/**
+	 * Moves the shown time a step towards the time server's once a tick. Stops
+	 * if no answer has corrected the clock (the server cannot be reached);
+	 * the next sync starts it again.
+	 */
+	private class SlewJob implements TimerWheel.Job
+	{
+		
+		public long run( long deadline )
 		{
-			System.out.println(
-					"The clock has encoutered an unexpected error retrieving the settings file..." );
-			System.out.println( e.getMessage() );
-			e.printStackTrace();
-			frame.setTitle( "CLOCK - Unexpected Error in Settings Load (net)" );
 			
-			return false;
+			if ( !clock.isCorrected() )
+			{
+				slewJob = null;
+				return TimerWheel.STOP;
+			}
+			
+			clock.slew();
+			return TimerWheel.next( deadline, SLEW_PERIOD );
 		}
-		return true;
 	}
 	
-	public void setBackgroundColor( Color color )
+	private class NetFetchListener implements NetSettingsFetcher.FetchListener
 	{
 		
-		main.setBackground( color );
-		container.setBackground( color );
-		return;
+		public boolean fetched( InputStream body ) throws IOException
+		{
+			
+			return loadNetSettings( body );
+		}
+		
+		/*
+		 * The settings in effect stay on screen, and the failure is counted in
+		 * the metrics; only the first of a run of failures is printed.
+		 */
+		public void failed( Exception e )
+		{
+			
+			if ( netFetcher.getBreaker().getFailures() == 1 )
+				System.out.println( "Unable to fetch the net settings, retrying: " + e.getMessage() );
+		}
 	}
 	
-	public Color getBackgroundColor()
+	private class FileWatchListener implements SettingsFileWatcher.ChangeListener
 	{
 		
-		return main.getBackground();
+		public void changed( byte[] content )
+		{
+			
+			reloadFileSettings( content );
+		}
 	}
 	
-	public void setTextColor( Color color )
+	private class AlarmWatchListener implements SettingsFileWatcher.ChangeListener
 	{
 		
-		timeLabel.setForeground( color );
-		dateLabel.setForeground( color );
-		return;
+		public void changed( byte[] content )
+		{
+			
+			try
+			{
+				setAlarms( new ByteArrayInputStream( content ) );
+			} catch ( IOException e )
+			{
+				System.out.println( "Error: " + e.getMessage() );
+			}
+		}
 	}
 	
-	public Color getTextColor()
+	private class ExitListener implements ActionListener
 	{
 		
-		return timeLabel.getForeground();
+		public void actionPerformed( ActionEvent e )
+		{
+			
+			saveSettings();
+			settingsWriter.flush();
+			netCacheWriter.flush();
+			System.exit( 0 );
+		}
 	}
 	
-	private void buildMenuBar()
+	private class ColorListener implements ActionListener
 	{
 		
-		menuBar = new JMenuBar();
+		private final Component parent;
+		private final boolean background;
 		
-		buildFileMenu();
-		buildEditMenu();
+		public ColorListener( Component parent, boolean background )
+		{
+			this.parent = parent;
+			this.background = background;
+		}
 		
-		menuBar.add( fileMenu );
-		menuBar.add( editMenu );
+		public void actionPerformed( ActionEvent e )
+		{
+			
+			ClockSettings current = fileSettings.get();
+			if ( colorChooser == null )
+				colorChooser = new JColorChooser();
+			colorChooser.setColor(
+					background ? current.getBackgroundColor() : current.getForegroundColor() );
+			
+			// Show color picker and set the setting accordingly (BG or FG)
+			final Color[] picked = new Color[1];
+			JDialog dialog = JColorChooser.createDialog( parent, "Select a Color", true,
+					colorChooser, new ActionListener()
+					{
+						
+						public void actionPerformed( ActionEvent ok )
+						{
+							
+							picked[0] = colorChooser.getColor();
+						}
+					}, null );
+			dialog.setVisible( true );
+			dialog.dispose();
+			
+			Color newColor = picked[0];
+			if ( newColor == null )
+				return; // If the user presses "cancel"
+			
+			ClockSettings.Builder changed = new ClockSettings.Builder( current );
+			
+			if ( background )
+				changed.setBackgroundColor( newColor ); // Handle Background Color
+			else
+				changed.setForegroundColor( newColor ); // Handle FG color
+			
+			ClockSettings settings = changed.build();
+			fileSettings.set( settings );
+			
+			if ( !settings.getUseNetSettings() )
+				useFileSettings();
+			saveSettings();
+			return;
+		}
+	}
+	
+	private class ScreenCheck implements Runnable
+	{
 		
-		frame.setJMenuBar( menuBar );
+		public void run()
+		{
+			
+			ClockSettings shown = shownSettings;
+			if ( shown != null )
+				updateScreens( shown.getScreens() );
+		}
 	}
 	
-	private void buildFileMenu()
+	/**
+	 * The clock on one screen: a frame showing the single clock or the
+	 * wallboard, with its own menus. Settings are applied to it and ticks
+	 * pushed into it by the clock, so every window shows the same snapshot.
+	 */
+	private class ClockWindow
 	{
 		
-		exitItem = new JMenuItem( "Exit" );
-		exitItem.setMnemonic( KeyEvent.VK_X );
-		exitItem.addActionListener( new ExitListener() );
+		private final String screenID;
+		
+		private JFrame frame;
+		private ClockFace timeFace;
+		private JLabel dateLabel;
+		private JPanel container;
+		private JPanel main;
+		
+		private JMenuBar menuBar;
+		private JMenu fileMenu; // File menu - will contain exit
+		private JMenu editMenu; // Exit menu - will contain settings and preferences
+		private JMenuItem exitItem; // To exit
+		private JMenuItem bgColorItem;
+		private JMenuItem fgColorItem;
+		private JMenuItem preferenceItem;
+		
+		private ClockResizer resizer;
+		private volatile WallboardPanel wallboard;
+		private SmoothClockCanvas smooth;
+		
+		// whether ticks are shown on this window
+		private final TickVisibility.Window ticks;
+		
+		// what this window shows; only touched on the event dispatch thread
+		private ClockSettings shown;
+		
+		public ClockWindow( GraphicsDevice device )
+		{
+			screenID = device.getIDstring();
+			
+			/*
+			 * Create window and initialize clock.
+			 */
+			GraphicsConfiguration config = device.getDefaultConfiguration();
+			Rectangle bounds = config.getBounds();
+			
+			frame = new JFrame( SettingsHelper.DEFAULT_TITLE, config );
+			frame.setBounds( bounds.x, bounds.y, 660, 500 );
+			frame.setExtendedState( 6 );
+			frame.setIconImage( IconHolder.ICON );
+			frame.setDefaultCloseOperation( JFrame.EXIT_ON_CLOSE );
+			
+			buildMenuBar();
+			
+			main = new JPanel();
+			
+			timeFace = new ClockFace();
+			timeFace.setMetrics( metrics );
+			dateLabel = new JLabel( tickFormatter.getDateText() );
+			container = new JPanel();
+			
+			timeFace.setAlignmentX( Component.CENTER_ALIGNMENT );
+			dateLabel.setAlignmentX( Component.CENTER_ALIGNMENT );
+			
+			container.setLayout( new BoxLayout( container, BoxLayout.Y_AXIS ) );
+			
+			container.add( timeFace );
+			container.add( dateLabel );
+			
+			main.setLayout( new GridBagLayout() );
+			main.add( container );
+			setBackgroundColor( Color.LIGHT_GRAY );
+			
+			frame.add( main );
+			
+			// Make the font size change on frame resize
+			resizer = new ClockResizer( frame.getContentPane(), timeFace, dateLabel );
+			frame.getContentPane().addComponentListener( resizer );
+			
+			ticks = visibility.add( new TimeDisplay() );
+			VisibilityListener listener = new VisibilityListener();
+			frame.addComponentListener( listener );
+			frame.addWindowStateListener( listener );
+		}
+		
+		/**
+		 * Shows the window, once the settings have been applied to it.
+		 */
+		public void open()
+		{
+			
+			frame.setVisible( true );
+			updateOnScreen();
+		}
 		
-		// Create a JMenu object for the file menu
-		fileMenu = new JMenu( "File" );
-		fileMenu.setMnemonic( KeyEvent.VK_F );
+		public String getScreenID()
+		{
+			
+			return this.screenID;
+		}
 		
-		fileMenu.add( exitItem );
+		/**
+		 * Shows what the clock last formatted. Runs on the event dispatch
+		 * thread.
+		 */
+		public void tick( boolean dateChanged )
+		{
+			
+			ticks.tick( dateChanged );
+		}
 		
-		return;
-	}
-	
-	private void buildEditMenu()
-	{
+		/**
+		 * Applies the fields of a set of settings that differ from what this
+		 * window shows. Runs on the event dispatch thread.
+		 */
+		public void show( ClockSettings next, boolean restoreTitle )
+		{
+			
+			ClockSettings previous = shown;
+			shown = next;
+			
+			if ( previous == null ||
+					!next.getBackgroundColor().equals( previous.getBackgroundColor() ) )
+				setBackgroundColor( next.getBackgroundColor() );
+			if ( previous == null ||
+					!next.getForegroundColor().equals( previous.getForegroundColor() ) )
+				setTextColor( next.getForegroundColor() );
+			if ( previous == null || restoreTitle || !next.getTitle().equals( previous.getTitle() ) )
+				frame.setTitle( SettingsHelper.respace( next.getTitle() ) );
+			if ( previous == null || next.getExtendedState() != previous.getExtendedState() )
+				frame.setExtendedState( next.getExtendedState() );
+			if ( previous == null ? !next.getWallboardZones().isEmpty() ||
+					!next.getDisplayMode().equals( ClockSettings.DISPLAY_STANDARD )
+					: !next.getWallboardZones().equals( previous.getWallboardZones() ) ||
+							next.getWallboardColumns() != previous.getWallboardColumns() ||
+							!next.getDisplayMode().equals( previous.getDisplayMode() ) )
+				showContent( next );
+			else if ( smooth != null && next.getFrameRate() != previous.getFrameRate() )
+				smooth.setFrameRate( next.getFrameRate() );
+			
+			return;
+		}
 		
-		bgColorItem = new JMenuItem( "Background Color" );
-		bgColorItem.setMnemonic( KeyEvent.VK_B );
-		bgColorItem.addActionListener( new ColorListener() );
+		/**
+		 * Switches between the single clock, the smooth clock and a wallboard
+		 * of time zones, as the settings ask. A wallboard takes precedence over
+		 * the smooth display mode. Runs on the event dispatch thread.
+		 */
+		private void showContent( ClockSettings settings )
+		{
+			
+			Container content = frame.getContentPane();
+			
+			if ( wallboard != null )
+			{
+				content.remove( wallboard );
+				wallboard = null;
+			} else if ( smooth != null )
+			{
+				smooth.stop();
+				content.remove( smooth );
+				smooth = null;
+				ticks.setSkipping( false );
+			} else
+			{
+				content.remove( main );
+			}
+			
+			ZoneTickEngine engine = zoneEngine;
+			if ( engine == null &&
+					settings.getDisplayMode().equals( ClockSettings.DISPLAY_SMOOTH ) )
+			{
+				SmoothClockCanvas canvas = new SmoothClockCanvas( settings.getFrameRate() );
+				canvas.setColors( settings.getBackgroundColor(), settings.getForegroundColor() );
+				canvas.setClock( clock );
+				canvas.setPaused( !ticks.isOnScreen() );
+				content.add( canvas );
+				canvas.start();
+				smooth = canvas;
+				ticks.setSkipping( true );
+			} else if ( engine == null )
+			{
+				// the date may have changed while something else was showing
+				dateLabel.setText( dateLine() );
+				content.add( main );
+			} else
+			{
+				WallboardPanel board = new WallboardPanel( engine,
+						settings.getWallboardColumns() );
+				board.setColors( settings.getBackgroundColor(), settings.getForegroundColor() );
+				board.update();
+				content.add( board );
+				wallboard = board;
+			}
+			
+			content.revalidate();
+			content.repaint();
+			return;
+		}
 		
-		fgColorItem = new JMenuItem( "Text Color" );
-		fgColorItem.setMnemonic( KeyEvent.VK_T );
-		fgColorItem.addActionListener( new ColorListener() );
+		public void setTitle( String title )
+		{
+			
+			frame.setTitle( title );
+		}
 		
-		preferenceItem = new JMenuItem( "Preferences" );
-		preferenceItem.setMnemonic( KeyEvent.VK_P );
-		preferenceItem.addActionListener( new PreferenceListener() );
+		public void setBackgroundColor( Color color )
+		{
+			
+			main.setBackground( color );
+			container.setBackground( color );
+			timeFace.setBackground( color );
+			
+			WallboardPanel board = wallboard;
+			if ( board != null )
+				board.setColors( color, getTextColor() );
+			if ( smooth != null )
+				smooth.setColors( color, getTextColor() );
+			return;
+		}
 		
-		editMenu = new JMenu( "Edit" );
-		editMenu.setMnemonic( KeyEvent.VK_E );
+		public Color getBackgroundColor()
+		{
+			
+			return main.getBackground();
+		}
 		
-		editMenu.add( bgColorItem );
-		editMenu.add( fgColorItem );
-		editMenu.add( preferenceItem );
+		public void setTextColor( Color color )
+		{
+			
+			timeFace.setForeground( color );
+			dateLabel.setForeground( color );
+			
+			WallboardPanel board = wallboard;
+			if ( board != null )
+				board.setColors( getBackgroundColor(), color );
+			if ( smooth != null )
+				smooth.setColors( getBackgroundColor(), color );
+			return;
+		}
 		
-		return;
+		public Color getTextColor()
+		{
+			
+			return timeFace.getForeground();
+		}
 		
-	}
-	
-	private void saveSettings( String filePath )
-	{
+		public void dispose()
+		{
+			
+			if ( smooth != null )
+				smooth.stop();
+			visibility.remove( ticks );
+			frame.dispose();
+		}
 		
-		// Save settings from fileSettings only because we don't want the net
-		// settings overwriting the text file.
-		try
+		private void buildMenuBar()
 		{
-			PrintWriter fileOut = new PrintWriter( new File( filePath ) );
 			
-			fileOut.println( fileSettings.toString() );
-			fileOut.close();
-		} catch ( FileNotFoundException e )
+			menuBar = new JMenuBar();
+			
+			// Create a JMenu object for the file menu
+			fileMenu = new JMenu( "File" );
+			fileMenu.setMnemonic( KeyEvent.VK_F );
+			
+			editMenu = new JMenu( "Edit" );
+			editMenu.setMnemonic( KeyEvent.VK_E );
+			
+			// the items are only built when their menu is first opened
+			fileMenu.addMenuListener( new LazyMenuListener() );
+			editMenu.addMenuListener( new LazyMenuListener() );
+			
+			menuBar.add( fileMenu );
+			menuBar.add( editMenu );
+			
+			frame.setJMenuBar( menuBar );
+		}
+		
+		private void buildFileMenu()
 		{
-			System.out.println( "Unable to save settings to the file path: " + filePath + "\n" );
-			System.out.println( e.getMessage() );
+			
+			exitItem = new JMenuItem( "Exit" );
+			exitItem.setMnemonic( KeyEvent.VK_X );
+			exitItem.addActionListener( new ExitListener() );
+			
+			fileMenu.add( exitItem );
+			
+			return;
 		}
 		
-		return;
-	}
-	
-	private void updateSettings( ClockSettings cs )
-	{
+		private void buildEditMenu()
+		{
+			
+			bgColorItem = new JMenuItem( "Background Color" );
+			bgColorItem.setMnemonic( KeyEvent.VK_B );
+			bgColorItem.addActionListener( new ColorListener( frame, true ) );
+			
+			fgColorItem = new JMenuItem( "Text Color" );
+			fgColorItem.setMnemonic( KeyEvent.VK_T );
+			fgColorItem.addActionListener( new ColorListener( frame, false ) );
+			
+			preferenceItem = new JMenuItem( "Preferences" );
+			preferenceItem.setMnemonic( KeyEvent.VK_P );
+			preferenceItem.addActionListener( new PreferenceListener() );
+			
+			editMenu.add( bgColorItem );
+			editMenu.add( fgColorItem );
+			editMenu.add( preferenceItem );
+			
+			return;
 		
-		this.setBackgroundColor( cs.getBackgroundColor() );
-		this.setTextColor( cs.getForegroundColor() );
-		frame.setTitle( SettingsHelper.respace( cs.getTitle() ) );
-		frame.setExtendedState( cs.getExtendedState() );
-		this.updateQueryInterval = cs.getQueryInterval();
-		this.refreshInterval = cs.getRefreshInterval();
-		settingsFileURL = cs.getNetURL();
-		this.useNetSettings = cs.getUseNetSettings();
-		return;
-	}
-	
-	public static void main( String[] args ) throws IOException
-	{
+		}
 		
-		new BigClock();
-	}
-	
-	private class ExitListener implements ActionListener
-	{
+		private void updateOnScreen()
+		{
+			
+			boolean visible = frame.isShowing() &&
+					( frame.getExtendedState() & Frame.ICONIFIED ) == 0;
+			if ( visible == ticks.isOnScreen() )
+				return;
+			
+			if ( smooth != null )
+				smooth.setPaused( !visible );
+			ticks.setOnScreen( visible );
+			return;
+		}
 		
-		public void actionPerformed( ActionEvent e )
+		/**
+		 * Shows the time on the single clock or the wallboard.
+		 */
+		private class TimeDisplay implements TickVisibility.Display
 		{
 			
-			saveSettings( SettingsHelper.DEFAULT_FILEPATH );
-			System.exit( 0 );
+			public void show( boolean dateLineChanged )
+			{
+				
+				WallboardPanel board = wallboard;
+				if ( board != null )
+				{
+					board.update();
+				} else
+				{
+					// the date line only needs touching when the day changes, or
+					// an alarm comes or goes
+					if ( dateLineChanged )
+						dateLabel.setText( dateLine() );
+					timeFace.setTime( tickFormatter.getTimeChars() );
+				}
+				
+				return;
+			}
 		}
-	}
-	
-	private class ColorListener implements ActionListener
-	{
 		
-		public void actionPerformed( ActionEvent e )
+		/**
+		 * Follows the window being minimized, restored, hidden and shown.
+		 */
+		private class VisibilityListener extends ComponentAdapter implements WindowStateListener
 		{
 			
-			// Show color picker and set the setting accordingly (BG or FG)
-			Color newColor = JColorChooser.showDialog( frame, "Select a Color", Color.BLACK );
+			public void windowStateChanged( WindowEvent e )
+			{
+				
+				updateOnScreen();
+			}
 			
-			if ( newColor == null )
-				return; // If the user presses "cancel"
+			public void componentShown( ComponentEvent e )
+			{
 				
-			if ( e.getSource() == bgColorItem )
+				updateOnScreen();
+			}
+			
+			public void componentHidden( ComponentEvent e )
 			{
-				// Handle Background Color and return
-				fileSettings.setBackgroundColor( newColor );
 				
-				if ( !fileSettings.getUseNetSettings() )
-					useFileSettings();
-				saveSettings( SettingsHelper.DEFAULT_FILEPATH );
-				return;
+				updateOnScreen();
+			}
+		}
+		
+		private class LazyMenuListener implements MenuListener
+		{
+			
+			public void menuSelected( MenuEvent e )
+			{
+				
+				JMenu menu = (JMenu) e.getSource();
+				menu.removeMenuListener( this );
+				
+				if ( menu == fileMenu )
+					buildFileMenu();
+				else
+					buildEditMenu();
 			}
 			
-			// Handle FG color and return
-			fileSettings.setForegroundColor( newColor );
+			public void menuDeselected( MenuEvent e )
+			{
+			}
 			
-			if ( !fileSettings.getUseNetSettings() )
-				useFileSettings();
-			saveSettings( SettingsHelper.DEFAULT_FILEPATH );
-			return;
+			public void menuCanceled( MenuEvent e )
+			{
+			}
+		}
+	}
+	
+	/**
+	 * The window icon, decoded once, the first time a window needs it. The
+	 * toolkit loads it without starting up ImageIO.
+	 */
+	private static class IconHolder
+	{
+		
+		private final static Image ICON = loadIcon();
+		
+		private static Image loadIcon()
+		{
+			
+			URL url = BigClock.class.getClassLoader().getResource( "clock.png" );
+			return url == null ? null : Toolkit.getDefaultToolkit().getImage( url );
 		}
 	}
 	
@@ -632,9 +1612,8 @@ public class BigClock
 		public void actionPerformed( ActionEvent e )
 		{
 			
-			// Open preferences GUI
+			// Open preferences GUI; the window saves the settings itself
 			new PreferenceWindow();
-			saveSettings( SettingsHelper.DEFAULT_FILEPATH );
 			return;
 		}
 	}
@@ -663,6 +1642,8 @@ public class BigClock
 		
 		public PreferenceWindow()
 		{
+			ClockSettings settings = fileSettings.get();
+			
 			pFrame = new JFrame( "Clock Settings" );
 			pFrame.setSize( 800, 500 );
 			pFrame.setDefaultCloseOperation( JFrame.DISPOSE_ON_CLOSE );
@@ -686,7 +1667,7 @@ public class BigClock
 			titleLabel.setToolTipText( "Title For Clock GUI" );
 			titleLabel.setFont( font );
 			titleField = new JTextField( 20 );
-			titleField.setText( fileSettings.getTitle() );
+			titleField.setText( settings.getTitle() );
 			titleField.setToolTipText( "Title For Clock GUI" );
 			titleField.setFont( font );
 			mainPanel.add( titleLabel, 2 );
@@ -697,7 +1678,7 @@ public class BigClock
 					"NORMAL=0, ICONIFIED=1, MAXIMIZED_HORIZ=2, MAXIMIZED_VERT=4, MAXIMIZED_BOTH=6" );
 			extStateLabel.setFont( font );
 			extStateField = new JTextField( 20 );
-			extStateField.setText( String.valueOf( fileSettings.getExtendedState() ) );
+			extStateField.setText( String.valueOf( settings.getExtendedState() ) );
 			extStateField.setToolTipText(
 					"NORMAL=0, ICONIFIED=1, MAXIMIZED_HORIZ=2, MAXIMIZED_VERT=4, MAXIMIZED_BOTH=6" );
 			extStateField.setFont( font );
@@ -708,7 +1689,7 @@ public class BigClock
 			refreshIntervalLabel.setToolTipText( "Interval of refreshing date/time" );
 			refreshIntervalLabel.setFont( font );
 			refreshIntervalField = new JTextField( 20 );
-			refreshIntervalField.setText( String.valueOf( fileSettings.getRefreshInterval() ) );
+			refreshIntervalField.setText( String.valueOf( settings.getRefreshInterval() ) );
 			refreshIntervalField.setToolTipText( "Interval of refreshing date/time" );
 			refreshIntervalField.setFont( font );
 			mainPanel.add( refreshIntervalLabel, 6 );
@@ -718,7 +1699,7 @@ public class BigClock
 			urlForSettingsLabel.setToolTipText( "URL to fetch settings from" );
 			urlForSettingsLabel.setFont( font );
 			urlForSettingsField = new JTextField();
-			urlForSettingsField.setText( fileSettings.getNetURL() );
+			urlForSettingsField.setText( settings.getNetURL() );
 			urlForSettingsField.setToolTipText( "URL to fetch settings from" );
 			urlForSettingsField.setFont( font );
 			mainPanel.add( urlForSettingsLabel, 8 );
@@ -728,7 +1709,7 @@ public class BigClock
 			queryIntervalLabel.setToolTipText( "Interval to update settings from online file" );
 			queryIntervalLabel.setFont( font );
 			queryIntervalField = new JTextField( 20 );
-			queryIntervalField.setText( String.valueOf( fileSettings.getQueryInterval() ) );
+			queryIntervalField.setText( String.valueOf( settings.getQueryInterval() ) );
 			queryIntervalField.setToolTipText( "Interval to update settings from online file" );
 			queryIntervalField.setFont( font );
 			mainPanel.add( queryIntervalLabel, 10 );
@@ -744,18 +1725,11 @@ public class BigClock
 			mainPanel.add( cancel, 13 );
 			
 			pFrame.add( mainPanel );
-			try
-			{
-				pFrame.setIconImage( ImageIO.read(
-						BigClock.class.getClassLoader().getResourceAsStream( "clock.png" ) ) );
-			} catch ( IOException e )
-			{
-				e.printStackTrace();
-			}
+			pFrame.setIconImage( IconHolder.ICON );
 			mainPanel.setFont( new Font( "Time New Roman", Font.BOLD, 35 ) );
 			
 			useNetCheckbox.setSelected( true );
-			useNetCheckbox.setSelected( fileSettings.getUseNetSettings() );
+			useNetCheckbox.setSelected( settings.getUseNetSettings() );
 			pFrame.setVisible( true );
 		}
 		
@@ -782,7 +1756,7 @@ public class BigClock
 					urlForSettingsField.setEditable( true );
 				}
 			}
-			
+		
 		}
 		
 		private class SaveListener implements ActionListener
@@ -792,21 +1766,22 @@ public class BigClock
 			public void actionPerformed( ActionEvent e )
 			{
 				
-				fileSettings.setTitle( titleField.getText() );
+				ClockSettings.Builder changed = new ClockSettings.Builder( fileSettings.get() );
+				
+				changed.setTitle( titleField.getText() );
 				try
 				{
-					fileSettings.setExtendedState( Integer.parseInt( extStateField.getText() ) );
+					changed.setExtendedState( Integer.parseInt( extStateField.getText() ) );
 				} catch ( NumberFormatException pE )
 				{
 					System.out.println( "Error retrieving integer from extended state field: " +
 							pE.getMessage() );
 				}
-				fileSettings.setUseNetSettings( useNetCheckbox.isSelected() );
+				changed.setUseNetSettings( useNetCheckbox.isSelected() );
 				
 				try
 				{
-					fileSettings
-							.setQueryInterval( Integer.parseInt( queryIntervalField.getText() ) );
+					changed.setQueryInterval( Integer.parseInt( queryIntervalField.getText() ) );
 				} catch ( NumberFormatException pE )
 				{
 					System.out.println( "Error retrieving integer from query interval field: " +
@@ -815,27 +1790,29 @@ public class BigClock
 				
 				try
 				{
-					fileSettings
-							.setRefreshInterval( Long.parseLong( refreshIntervalField.getText() ) );
+					changed.setRefreshInterval( Long.parseLong( refreshIntervalField.getText() ) );
 				} catch ( NumberFormatException pE )
 				{
 					System.out.println( "Error retrieving long from refresh interval field: " +
 							pE.getMessage() );
 				}
 				
-				fileSettings.setNetURL( urlForSettingsField.getText() );
+				changed.setNetURL( urlForSettingsField.getText() );
 				
-				if ( fileSettings.getUseNetSettings() )
+				ClockSettings settings = changed.build();
+				fileSettings.set( settings );
+				
+				if ( settings.getUseNetSettings() )
 					useNetSettings();
 				else
 					useFileSettings();
 				
 				// disabling would not allow someone to uncheck using net
-				saveSettings( SettingsHelper.DEFAULT_FILEPATH );
+				saveSettings();
 				
 				pFrame.dispose();
 			}
-			
+		
 		}
 		
 		private class CancelListener implements ActionListener
@@ -847,146 +1824,7 @@ public class BigClock
 				
 				pFrame.dispose();
 			}
-			
-		}
-	}
-	
-	private class ClockSettings
-	{
-		
-		private String title;
-		private String netURL;
-		private Color backgroundColor;
-		private Color foregroundColor;
-		private int queryInterval;
-		private long refreshInterval;
-		private int extendedState;
-		private boolean useNetSettings;
-		
-		public ClockSettings()
-		{
-			this.title = SettingsHelper.DEFAULT_TITLE;
-			this.netURL = settingsFileURL;
-			this.backgroundColor = new Color( 45, 54, 45 );
-			this.foregroundColor = new Color( 155, 172, 134 );
-			this.queryInterval = 60;
-			this.refreshInterval = 500;
-			this.extendedState = 6;
-			this.useNetSettings = true;
-		}
-		
-		public void setTitle( String title )
-		{
-			
-			this.title = title;
-		}
-		
-		public void setBackgroundColor( Color bg )
-		{
-			
-			this.backgroundColor = bg;
-		}
-		
-		public void setForegroundColor( Color fg )
-		{
-			
-			this.foregroundColor = fg;
-		}
-		
-		public void setQueryInterval( int qinterval )
-		{
-			
-			if ( qinterval > 0 )
-				this.queryInterval = qinterval;
-		}
-		
-		public void setRefreshInterval( long refreshInterval )
-		{
-			
-			if ( refreshInterval > 0 )
-				this.refreshInterval = refreshInterval;
-		}
-		
-		public void setExtendedState( int extState )
-		{
-			
-			this.extendedState = extState;
-		}
-		
-		public void setUseNetSettings( boolean useNet )
-		{
-			
-			this.useNetSettings = useNet;
-		}
-		
-		public void setNetURL( String url )
-		{
-			
-			this.netURL = url;
-		}
-		
-		public String getTitle()
-		{
-			
-			return this.title;
-		}
-		
-		public Color getBackgroundColor()
-		{
-			
-			return this.backgroundColor;
-		}
-		
-		public Color getForegroundColor()
-		{
-			
-			return this.foregroundColor;
-		}
-		
-		public int getQueryInterval()
-		{
-			
-			return this.queryInterval;
-		}
-		
-		public long getRefreshInterval()
-		{
-			
-			return this.refreshInterval;
-		}
-		
-		public boolean getUseNetSettings()
-		{
-			
-			return this.useNetSettings;
-		}
-		
-		public String getNetURL()
-		{
-			
-			return this.netURL;
-		}
-		
-		public int getExtendedState()
-		{
-			
-			return this.extendedState;
-		}
 		
-		public String toString()
-		{
-			
-			return "background-color" + SettingsHelper.DELIMITER + "(" +
-					this.backgroundColor.getRed() + "," + this.backgroundColor.getGreen() + "," +
-					this.backgroundColor.getBlue() + ")\n" + "font-color" +
-					SettingsHelper.DELIMITER + "(" + this.foregroundColor.getRed() + "," +
-					this.foregroundColor.getGreen() + "," + this.foregroundColor.getBlue() + ")\n" +
-					"title" + SettingsHelper.DELIMITER + SettingsHelper.despace( this.title ) +
-					"\nextended-state" + SettingsHelper.DELIMITER + this.extendedState +
-					"\nquery-interval" + SettingsHelper.DELIMITER + this.queryInterval +
-					"\nrefresh-interval" + SettingsHelper.DELIMITER + this.refreshInterval +
-					"\nsettings-url" + SettingsHelper.DELIMITER + settingsFileURL +
-					"\nuse-net-settings" + SettingsHelper.DELIMITER + this.useNetSettings;
 		}
 	}
 }
@@ -0,0 +1,173 @@
+/**
+ * Stops requests to a host that keeps failing, so a dead settings host is not
+ * asked again by every poll, menu click and settings file change.
+ *
+ * The breaker starts closed and lets every request through. After
+ * {@link #DEFAULT_THRESHOLD} failures in a row it opens, and refuses requests
+ * straight away, without touching the network, until a cool-down has passed.
+ * It is then half open: one request is let through as a trial. If that
+ * succeeds the breaker closes again; if not it opens again, with the
+ * cool-down growing by {@link Backoff} with each failed trial. By default the
+ * first cool-down is one to two minutes, and they grow to at most 15 to 30.
+ *
+ * Times are on the monotonic clock ({@link System#nanoTime()}).
+ */
+public class CircuitBreaker
+{
+	public final static String CLOSED = "closed";
+	public final static String OPEN = "open";
+	public final static String HALF_OPEN = "half-open";
+	
+	public final static int DEFAULT_THRESHOLD = 5;
+	// the cool-downs double from this, each picked from the upper half of its
+	// span, up to the most
+	public final static long DEFAULT_COOL_DOWN = 2L * 60 * 1000000000L;
+	public final static long DEFAULT_MAX_COOL_DOWN = 30L * 60 * 1000000000L;
+	
+	private final int threshold;
+	private final Backoff coolDown;
+	
+	// guarded by this
+	private String state = CLOSED;
+	private int failures;
+	private int failedTrials;
+	private long openUntil;
+	private boolean trialInFlight;
+	
+	private volatile long trips;
+	private volatile long refused;
+	
+	public CircuitBreaker()
+	{
+		this( DEFAULT_THRESHOLD, new Backoff( DEFAULT_COOL_DOWN, DEFAULT_MAX_COOL_DOWN ) );
+	}
+	
+	/**
+	 * @param threshold
+	 *            How many failures in a row open the breaker.
+	 * @param coolDown
+	 *            How long it stays open, in ns, by the number of trials that
+	 *            have failed since it opened.
+	 */
+	public CircuitBreaker( int threshold, Backoff coolDown )
+	{
+		this.threshold = threshold;
+		this.coolDown = coolDown;
+	}
+	
+	/**
+	 * Asks to make a request. Every request let through must be followed by
+	 * a call to {@link #succeeded()} or {@link #failed(long)}.
+	 *
+	 * @return false if the request must not be made.
+	 */
+	public synchronized boolean allowRequest( long now )
+	{
+		
+		if ( state.equals( OPEN ) && now - openUntil >= 0 )
+			state = HALF_OPEN;
+		
+		if ( state.equals( CLOSED ) || ( state.equals( HALF_OPEN ) && !trialInFlight ) )
+		{
+			trialInFlight = state.equals( HALF_OPEN );
+			return true;
+		}
+		
+		refused++;
+		return false;
+	}
+	
+	public synchronized void succeeded()
+	{
+		
+		state = CLOSED;
+		failures = 0;
+		failedTrials = 0;
+		trialInFlight = false;
+		return;
+	}
+	
+	public synchronized void failed( long now )
+	{
+		
+		failures++;
+		if ( state.equals( HALF_OPEN ) )
+		{
+			failedTrials++;
+			open( now );
+		} else if ( state.equals( CLOSED ) && failures >= threshold )
+		{
+			open( now );
+		}
+		
+		return;
+	}
+	
+	/**
+	 * Ends a request that was let through without it telling either way, e.g.
+	 * one cut short on purpose.
+	 */
+	public synchronized void cancelled()
+	{
+		
+		trialInFlight = false;
+		return;
+	}
+	
+	/**
+	 * Closes the breaker and forgets the failures, e.g. when requests start
+	 * going to a different host.
+	 */
+	public synchronized void reset()
+	{
+		
+		succeeded();
+		return;
+	}
+	
+	private void open( long now )
+	{
+		
+		state = OPEN;
+		trialInFlight = false;
+		openUntil = now + coolDown.delay( failedTrials );
+		trips++;
+		return;
+	}
+	
+	/**
+	 * @return {@link #CLOSED}, {@link #OPEN} or {@link #HALF_OPEN}.
+	 */
+	public synchronized String getState()
+	{
+		
+		return this.state;
+	}
+	
+	/**
+	 * @return How many requests in a row have failed.
+	 */
+	public synchronized int getFailures()
+	{
+		
+		return this.failures;
+	}
+	
+	/**
+	 * @return How many times the breaker has opened.
+	 */
+	public long getTrips()
+	{
+		
+		return this.trips;
+	}
+	
+	/**
+	 * @return How many requests were refused while it was open.
+	 */
+	public long getRefused()
+	{
+		
+		return this.refused;
+	}
+}
@@ -0,0 +1,186 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * The clock's Java Flight Recorder events, for tracing single slow ticks,
+ * repaints, fetches and settings changes when a display stutters.
+ * 
+ * Each event is timed with begin() and end() around the work, and is only
+ * filled in and committed if shouldCommit() says the recording wants it, so
+ * with no recording running, or below an event's threshold, the cost is a
+ * couple of checks. The thresholds below are the defaults; clock.jfc sets
+ * the ones used for a continuous recording:
+ * 
+ * java -XX:StartFlightRecording=settings=clock.jfc -cp bin BigClock
+ */
+public class ClockEvents
+{
+	private final static String CATEGORY = "BigClock";
+	
+	@Name( "bigclock.Tick" )
+	@Label( "Clock Tick" )
+	@Description( "Formatting the time and handing it to every window" )
+	@Category( CATEGORY )
+	@Threshold( "2 ms" )
+	@StackTrace( false )
+	public static class Tick extends Event
+	{
+		@Label( "Lateness" )
+		@Description( "How late the tick landed after the wall-clock second boundary" )
+		@Timespan( Timespan.NANOSECONDS )
+		public long lateness;
+		
+		@Label( "Date Changed" )
+		public boolean dateChanged;
+		
+		@Label( "Windows" )
+		public int windows;
+	}
+	
+	@Name( "bigclock.Repaint" )
+	@Label( "Clock Face Repaint" )
+	@Category( CATEGORY )
+	@Threshold( "5 ms" )
+	@StackTrace( false )
+	public static class Repaint extends Event
+	{
+		@Label( "Area" )
+		@Description( "Pixels in the clip that was painted" )
+		public long area;
+		
+		@Label( "Glyphs Built" )
+		@Description( "Whether the digit images had to be rendered first" )
+		public boolean glyphsBuilt;
+	}
+	
+	@Name( "bigclock.Resize" )
+	@Label( "Clock Resize" )
+	@Description( "Fitting the fonts to the window once resizing settles" )
+	@Category( CATEGORY )
+	@Threshold( "5 ms" )
+	@StackTrace( false )
+	public static class Resize extends Event
+	{
+		@Label( "Width" )
+		public int width;
+		
+		@Label( "Height" )
+		public int height;
+		
+		@Label( "Time Font Size" )
+		public int timeFontSize;
+		
+		@Label( "Relayout" )
+		@Description( "Whether the fonts changed, forcing a relayout" )
+		public boolean relayout;
+	}
+	
+	@Name( "bigclock.SettingsFetch" )
+	@Label( "Settings Fetch" )
+	@Category( CATEGORY )
+	@StackTrace( false )
+	public static class SettingsFetch extends Event
+	{
+		@Label( "URL" )
+		public String url;
+		
+		@Label( "Status" )
+		@Description( "The HTTP status, or -1 if there was none" )
+		public int status;
+		
+		@Label( "Bytes Read" )
+		@DataAmount
+		public long bytes;
+		
+		@Label( "Long Poll" )
+		@Description( "Whether the server held the request until the settings changed" )
+		public boolean longPoll;
+		
+		@Label( "Error" )
+		public String error;
+	}
+	
+	@Name( "bigclock.SettingsLoad" )
+	@Label( "Settings Load" )
+	@Description( "Parsing a settings file or body" )
+	@Category( CATEGORY )
+	@StackTrace( false )
+	public static class SettingsLoad extends Event
+	{
+		@Label( "Source" )
+		public String source;
+		
+		@Label( "Characters Read" )
+		public long characters;
+		
+		@Label( "Parse Errors" )
+		public int errors;
+	}
+	
+	@Name( "bigclock.SettingsUpdate" )
+	@Label( "Settings Update" )
+	@Description( "Publishing a settings snapshot and comparing it to the last one" )
+	@Category( CATEGORY )
+	@StackTrace( false )
+	public static class SettingsUpdate extends Event
+	{
+		@Label( "Changed Fields" )
+		public String changed;
+		
+		@Label( "Windows Updated" )
+		@Description( "Whether the change had to be shown on the windows" )
+		public boolean shown;
+	}
+	
+	/**
+	 * @return The names of the settings that differ, comma separated, or an
+	 *         empty string.
+	 */
+	public static String changedFields( ClockSettings previous, ClockSettings next )
+	{
+		
+		if ( previous == null )
+			return "all";
+		
+		StringBuilder changed = new StringBuilder();
+		if ( !previous.getBackgroundColor().equals( next.getBackgroundColor() ) )
+			changed.append( ",background-color" );
+		if ( !previous.getForegroundColor().equals( next.getForegroundColor() ) )
+			changed.append( ",font-color" );
+		if ( !previous.getTitle().equals( next.getTitle() ) )
+			changed.append( ",title" );
+		if ( previous.getExtendedState() != next.getExtendedState() )
+			changed.append( ",extended-state" );
+		if ( previous.getQueryInterval() != next.getQueryInterval() )
+			changed.append( ",query-interval" );
+		if ( previous.getRefreshInterval() != next.getRefreshInterval() )
+			changed.append( ",refresh-interval" );
+		if ( !previous.getNetURL().equals( next.getNetURL() ) )
+			changed.append( ",settings-url" );
+		if ( previous.getUseNetSettings() != next.getUseNetSettings() )
+			changed.append( ",use-net-settings" );
+		if ( !previous.getWallboardZones().equals( next.getWallboardZones() ) )
+			changed.append( ",wallboard-zones" );
+		if ( previous.getWallboardColumns() != next.getWallboardColumns() )
+			changed.append( ",wallboard-columns" );
+		if ( !previous.getScreens().equals( next.getScreens() ) )
+			changed.append( ",screens" );
+		if ( !previous.getDisplayMode().equals( next.getDisplayMode() ) )
+			changed.append( ",display-mode" );
+		if ( previous.getFrameRate() != next.getFrameRate() )
+			changed.append( ",frame-rate" );
+		if ( !previous.getTimeServer().equals( next.getTimeServer() ) )
+			changed.append( ",time-server" );
+		if ( previous.getTimeInterval() != next.getTimeInterval() )
+			changed.append( ",time-interval" );
+		
+		return changed.length() == 0 ? "" : changed.substring( 1 );
+	}
+}
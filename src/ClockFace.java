@@ -0,0 +1,310 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JComponent;
+
+/**
+ * Paints the "kk:mm:ss" time line from pre-rendered glyph images.
+ * 
+ * Every character the time can contain (the ten digits and the colon) is
+ * rendered once per font and color into an image. Each tick only the cells
+ * whose character actually changed are repainted, which is usually just the
+ * last one or two, instead of the whole line being laid out and drawn again
+ * at full-screen font sizes.
+ */
+public class ClockFace extends JComponent
+{
+	private static final long serialVersionUID = 1L;
+	
+	private final static int CELLS = 8;
+	private final static int COLON = 10;
+	
+	// what each cell shows, guarded by itself
+	private final char[] shown = { '0', '0', ':', '0', '0', ':', '0', '0' };
+	
+	private volatile BufferedImage[] glyphs;
+	private int digitWidth, colonWidth, cellHeight;
+	
+	private volatile long repaintedArea;
+	private volatile long repaintCount;
+	
+	private volatile ClockMetrics metrics;
+	
+	public ClockFace()
+	{
+		setOpaque( true );
+	}
+	
+	/**
+	 * Shows a new time. Safe to call from any thread; only the cells that
+	 * differ from what is on screen are scheduled for repaint.
+	 * 
+	 * @param time
+	 *            Eight characters in "kk:mm:ss" form.
+	 */
+	public void setTime( char[] time )
+	{
+		
+		int first = -1, last = -1;
+		
+		synchronized ( shown )
+		{
+			for ( int i = 0; i < CELLS; i++ )
+			{
+				if ( shown[i] != time[i] )
+				{
+					shown[i] = time[i];
+					if ( first < 0 )
+						first = i;
+					last = i;
+				}
+			}
+		}
+		
+		if ( first < 0 )
+			return;
+		
+		/*
+		 * One repaint for the changed span; unchanged cells in between are
+		 * rare (only when the minute changes but a digit stays the same).
+		 */
+		if ( glyphs == null || digitWidth == 0 )
+		{
+			repaint();
+			return;
+		}
+		
+		int x = originX() + cellX( first );
+		int width = cellX( last ) + cellWidth( last ) - cellX( first );
+		int y = originY();
+		
+		repaintedArea += (long) width * cellHeight;
+		repaintCount++;
+		repaint( x, y, width, cellHeight );
+		return;
+	}
+	
+	/**
+	 * @return The total area, in pixels, this component has asked to have
+	 *         repainted for time changes.
+	 */
+	public long getRepaintedArea()
+	{
+		
+		return this.repaintedArea;
+	}
+	
+	/**
+	 * @return The number of time changes that caused a repaint.
+	 */
+	public long getRepaintCount()
+	{
+		
+		return this.repaintCount;
+	}
+	
+	/**
+	 * @param metrics
+	 *            Where to record how long each paint takes, or null.
+	 */
+	public void setMetrics( ClockMetrics metrics )
+	{
+		
+		this.metrics = metrics;
+	}
+	
+	@Override
+	public void setFont( Font font )
+	{
+		
+		super.setFont( font );
+		invalidateGlyphs();
+		revalidate();
+	}
+	
+	@Override
+	public void setForeground( Color fg )
+	{
+		
+		super.setForeground( fg );
+		invalidateGlyphs();
+	}
+	
+	@Override
+	public void setBackground( Color bg )
+	{
+		
+		super.setBackground( bg );
+		invalidateGlyphs();
+	}
+	
+	@Override
+	public Dimension getPreferredSize()
+	{
+		
+		if ( isPreferredSizeSet() || getFont() == null )
+			return super.getPreferredSize();
+		
+		FontMetrics metrics = getFontMetrics( getFont() );
+		return new Dimension( 6 * maxDigitWidth( metrics ) + 2 * metrics.charWidth( ':' ),
+				metrics.getHeight() );
+	}
+	
+	@Override
+	public Dimension getMaximumSize()
+	{
+		
+		// keep BoxLayout from stretching the line across the whole window
+		return getPreferredSize();
+	}
+	
+	@Override
+	protected void paintComponent( Graphics g )
+	{
+		
+		long started = System.nanoTime();
+		ClockEvents.Repaint event = new ClockEvents.Repaint();
+		event.begin();
+		
+		g.setColor( getBackground() );
+		Rectangle clip = g.getClipBounds();
+		if ( clip == null )
+			clip = new Rectangle( 0, 0, getWidth(), getHeight() );
+		g.fillRect( clip.x, clip.y, clip.width, clip.height );
+		
+		if ( getFont() == null )
+			return;
+		
+		BufferedImage[] images = glyphs;
+		boolean built = images == null;
+		if ( built )
+			images = buildGlyphs();
+		
+		int x0 = originX(), y0 = originY();
+		char ch;
+		
+		for ( int i = 0; i < CELLS; i++ )
+		{
+			int x = x0 + cellX( i );
+			if ( x >= clip.x + clip.width || x + cellWidth( i ) <= clip.x )
+				continue;
+			
+			synchronized ( shown )
+			{
+				ch = shown[i];
+			}
+			
+			int index = ch == ':' ? COLON : ch - '0';
+			if ( index >= 0 && index <= COLON )
+				g.drawImage( images[index], x, y0, null );
+		}
+		
+		ClockMetrics recorder = metrics;
+		if ( recorder != null )
+			recorder.recordPaint( System.nanoTime() - started );
+		
+		event.end();
+		if ( event.shouldCommit() )
+		{
+			event.area = (long) clip.width * clip.height;
+			event.glyphsBuilt = built;
+			event.commit();
+		}
+		return;
+	}
+	
+	private void invalidateGlyphs()
+	{
+		
+		glyphs = null;
+		repaint();
+	}
+	
+	/**
+	 * Renders the digits and the colon for the current font and colors.
+	 * Called on the event dispatch thread.
+	 */
+	private BufferedImage[] buildGlyphs()
+	{
+		
+		FontMetrics metrics = getFontMetrics( getFont() );
+		digitWidth = maxDigitWidth( metrics );
+		colonWidth = metrics.charWidth( ':' );
+		cellHeight = Math.max( 1, metrics.getHeight() );
+		
+		GraphicsConfiguration config = getGraphicsConfiguration();
+		BufferedImage[] images = new BufferedImage[COLON + 1];
+		
+		for ( int i = 0; i <= COLON; i++ )
+		{
+			char ch = i == COLON ? ':' : (char) ( '0' + i );
+			int width = Math.max( 1, i == COLON ? colonWidth : digitWidth );
+			
+			BufferedImage image = config != null
+					? config.createCompatibleImage( width, cellHeight )
+					: new BufferedImage( width, cellHeight, BufferedImage.TYPE_INT_RGB );
+			
+			Graphics2D g = image.createGraphics();
+			g.setColor( getBackground() );
+			g.fillRect( 0, 0, width, cellHeight );
+			g.setRenderingHint( RenderingHints.KEY_TEXT_ANTIALIASING,
+					RenderingHints.VALUE_TEXT_ANTIALIAS_ON );
+			g.setFont( getFont() );
+			g.setColor( getForeground() );
+			
+			// center each digit in its cell so proportional fonts line up
+			g.drawString( String.valueOf( ch ), ( width - metrics.charWidth( ch ) ) / 2,
+					metrics.getAscent() );
+			g.dispose();
+			
+			images[i] = image;
+		}
+		
+		glyphs = images;
+		return images;
+	}
+	
+	private static int maxDigitWidth( FontMetrics metrics )
+	{
+		
+		int width = 0;
+		for ( char ch = '0'; ch <= '9'; ch++ )
+			width = Math.max( width, metrics.charWidth( ch ) );
+		
+		return width;
+	}
+	
+	private int cellX( int cell )
+	{
+		
+		// cells 2 and 5 are colons
+		int colons = cell > 5 ? 2 : cell > 2 ? 1 : 0;
+		return ( cell - colons ) * digitWidth + colons * colonWidth;
+	}
+	
+	private int cellWidth( int cell )
+	{
+		
+		return cell == 2 || cell == 5 ? colonWidth : digitWidth;
+	}
+	
+	private int originX()
+	{
+		
+		return ( getWidth() - cellX( CELLS - 1 ) - digitWidth ) / 2;
+	}
+	
+	private int originY()
+	{
+		
+		return ( getHeight() - cellHeight ) / 2;
+	}
+}
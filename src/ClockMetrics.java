@@ -0,0 +1,411 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects the clock's runtime health and publishes it as a platform MBean,
+ * so a clock showing the wrong time or colors can be looked into with the
+ * standard JMX tools on the machine it runs on.
+ * 
+ * Recording is cheap enough for the tick and paint paths: a sample is a write
+ * into a fixed ring of the latest values. Percentiles are only worked out when
+ * an attribute is read.
+ */
+public class ClockMetrics implements ClockMetricsMBean
+{
+	public final static String OBJECT_NAME = "BigClock:type=ClockMetrics";
+	
+	public final static String SOURCE_FILE = "file";
+	public final static String SOURCE_NET = "net";
+	public final static String SOURCE_CACHE = "cache";
+	
+	// how many of the latest ticks and paints the percentiles are taken over
+	private final static int SAMPLES = 1024;
+	
+	private final TimerWheel wheel;
+	
+	private final SampleRing tickJitter = new SampleRing( SAMPLES );
+	private final SampleRing paintTimes = new SampleRing( SAMPLES );
+	
+	private final AtomicLong fetchSuccesses = new AtomicLong();
+	private final AtomicLong fetchFailures = new AtomicLong();
+	private volatile long lastFetchSuccess;
+	private volatile long lastFetchFailure;
+	private volatile String lastFetchError = "";
+	private volatile long lastFetchLatency = -1;
+	private volatile CircuitBreaker netBreaker;
+	
+	private final AtomicLong fileParseErrors = new AtomicLong();
+	private final AtomicLong netParseErrors = new AtomicLong();
+	private volatile String settingsSource = SOURCE_FILE;
+	
+	private final AtomicLong timeSyncs = new AtomicLong();
+	private final AtomicLong timeSyncFailures = new AtomicLong();
+	private volatile String lastTimeSyncError = "";
+	private volatile long timeServerOffset;
+	private volatile long timeServerDelay = -1;
+	
+	/**
+	 * @param wheel
+	 *            The timer wheel whose jobs are reported, or null.
+	 */
+	public ClockMetrics( TimerWheel wheel )
+	{
+		this.wheel = wheel;
+	}
+	
+	/**
+	 * Registers the metrics with the platform MBean server. A failure is only
+	 * reported; the clock runs the same without them.
+	 */
+	public void register()
+	{
+		
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean( this,
+					new ObjectName( OBJECT_NAME ) );
+		} catch ( JMException e )
+		{
+			System.out.println( "Unable to register the clock metrics: " + e.getMessage() );
+		}
+		
+		return;
+	}
+	
+	/**
+	 * @param latenessNanos
+	 *            How late the tick landed after the wall-clock boundary it
+	 *            was for.
+	 */
+	public void recordTick( long latenessNanos )
+	{
+		
+		tickJitter.record( latenessNanos );
+	}
+	
+	public void recordPaint( long nanos )
+	{
+		
+		paintTimes.record( nanos );
+	}
+	
+	/**
+	 * @param latencyNanos
+	 *            How long the request took, or -1 if the server held it as a
+	 *            long poll, which says nothing about the network.
+	 */
+	public void fetchSucceeded( long latencyNanos )
+	{
+		
+		fetchSuccesses.incrementAndGet();
+		lastFetchSuccess = System.currentTimeMillis();
+		if ( latencyNanos >= 0 )
+			lastFetchLatency = latencyNanos;
+		return;
+	}
+	
+	public void fetchFailed( Exception e, long latencyNanos )
+	{
+		
+		fetchFailures.incrementAndGet();
+		lastFetchFailure = System.currentTimeMillis();
+		lastFetchError = String.valueOf( e );
+		lastFetchLatency = latencyNanos;
+		return;
+	}
+	
+	/**
+	 * @param breaker
+	 *            The breaker settings fetches go through, whose state is
+	 *            reported, or null.
+	 */
+	public void setNetBreaker( CircuitBreaker breaker )
+	{
+		
+		this.netBreaker = breaker;
+	}
+	
+	public void parseErrors( String source, int count )
+	{
+		
+		( SOURCE_NET.equals( source ) ? netParseErrors : fileParseErrors ).addAndGet( count );
+	}
+	
+	public void setSettingsSource( String source )
+	{
+		
+		this.settingsSource = source;
+	}
+	
+	/**
+	 * @param offsetNanos
+	 *            How far the time server is ahead of the computer's clock.
+	 * @param delayNanos
+	 *            The round trip of the measurement the offset is based on.
+	 */
+	public void timeSynced( long offsetNanos, long delayNanos )
+	{
+		
+		timeSyncs.incrementAndGet();
+		timeServerOffset = offsetNanos;
+		timeServerDelay = delayNanos;
+		return;
+	}
+	
+	public void timeSyncFailed( Exception e )
+	{
+		
+		timeSyncFailures.incrementAndGet();
+		lastTimeSyncError = String.valueOf( e );
+		return;
+	}
+	
+	public long getTickCount()
+	{
+		
+		return tickJitter.getCount();
+	}
+	
+	public double getTickJitterP50Millis()
+	{
+		
+		return tickJitter.percentile( 50 ) / 1e6;
+	}
+	
+	public double getTickJitterP90Millis()
+	{
+		
+		return tickJitter.percentile( 90 ) / 1e6;
+	}
+	
+	public double getTickJitterP99Millis()
+	{
+		
+		return tickJitter.percentile( 99 ) / 1e6;
+	}
+	
+	public double getTickJitterMaxMillis()
+	{
+		
+		return tickJitter.percentile( 100 ) / 1e6;
+	}
+	
+	public long getPaintCount()
+	{
+		
+		return paintTimes.getCount();
+	}
+	
+	public double getPaintP50Millis()
+	{
+		
+		return paintTimes.percentile( 50 ) / 1e6;
+	}
+	
+	public double getPaintP99Millis()
+	{
+		
+		return paintTimes.percentile( 99 ) / 1e6;
+	}
+	
+	public double getPaintMaxMillis()
+	{
+		
+		return paintTimes.percentile( 100 ) / 1e6;
+	}
+	
+	public long getFetchSuccessCount()
+	{
+		
+		return this.fetchSuccesses.get();
+	}
+	
+	public long getFetchFailureCount()
+	{
+		
+		return this.fetchFailures.get();
+	}
+	
+	public String getLastFetchSuccess()
+	{
+		
+		return formatTime( lastFetchSuccess );
+	}
+	
+	public String getLastFetchFailure()
+	{
+		
+		return formatTime( lastFetchFailure );
+	}
+	
+	public String getLastFetchError()
+	{
+		
+		return this.lastFetchError;
+	}
+	
+	public double getLastFetchLatencyMillis()
+	{
+		
+		long latency = lastFetchLatency;
+		return latency < 0 ? -1 : latency / 1e6;
+	}
+	
+	public String getNetCircuitState()
+	{
+		
+		CircuitBreaker breaker = netBreaker;
+		return breaker == null ? "" : breaker.getState();
+	}
+	
+	public int getNetConsecutiveFailures()
+	{
+		
+		CircuitBreaker breaker = netBreaker;
+		return breaker == null ? 0 : breaker.getFailures();
+	}
+	
+	public long getNetCircuitTrips()
+	{
+		
+		CircuitBreaker breaker = netBreaker;
+		return breaker == null ? 0 : breaker.getTrips();
+	}
+	
+	public long getFetchRefusedCount()
+	{
+		
+		CircuitBreaker breaker = netBreaker;
+		return breaker == null ? 0 : breaker.getRefused();
+	}
+	
+	public long getFileParseErrorCount()
+	{
+		
+		return this.fileParseErrors.get();
+	}
+	
+	public long getNetParseErrorCount()
+	{
+		
+		return this.netParseErrors.get();
+	}
+	
+	public String getSettingsSource()
+	{
+		
+		return this.settingsSource;
+	}
+	
+	public long getTimeSyncCount()
+	{
+		
+		return this.timeSyncs.get();
+	}
+	
+	public long getTimeSyncFailureCount()
+	{
+		
+		return this.timeSyncFailures.get();
+	}
+	
+	public String getLastTimeSyncError()
+	{
+		
+		return this.lastTimeSyncError;
+	}
+	
+	public double getTimeServerOffsetMillis()
+	{
+		
+		return timeServerOffset / 1e6;
+	}
+	
+	public double getTimeServerDelayMillis()
+	{
+		
+		long delay = timeServerDelay;
+		return delay < 0 ? -1 : delay / 1e6;
+	}
+	
+	public long getHeapUsedBytes()
+	{
+		
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+	
+	public String[] getTimerJobs()
+	{
+		
+		if ( wheel == null )
+			return new String[0];
+		
+		List<TimerWheel.ScheduledJob> jobs = wheel.getJobs();
+		String[] lines = new String[jobs.size()];
+		for ( int i = 0; i < lines.length; i++ )
+			lines[i] = jobs.get( i ).toString();
+		
+		Arrays.sort( lines );
+		return lines;
+	}
+	
+	private static String formatTime( long epochMillis )
+	{
+		
+		return epochMillis == 0 ? "" : new Date( epochMillis ).toString();
+	}
+	
+	/**
+	 * The latest nanosecond samples of one measurement, overwriting the oldest.
+	 */
+	private static class SampleRing
+	{
+		
+		private final long[] samples;
+		private long count;
+		
+		public SampleRing( int size )
+		{
+			samples = new long[size];
+		}
+		
+		public synchronized void record( long nanos )
+		{
+			
+			samples[(int) ( count++ % samples.length )] = nanos;
+		}
+		
+		public synchronized long getCount()
+		{
+			
+			return this.count;
+		}
+		
+		/**
+		 * @return The given percentile of the samples held, or 0 if there are
+		 *         none.
+		 */
+		public long percentile( double percent )
+		{
+			
+			long[] sorted;
+			synchronized ( this )
+			{
+				sorted = Arrays.copyOf( samples, (int) Math.min( count, samples.length ) );
+			}
+			
+			if ( sorted.length == 0 )
+				return 0;
+			
+			Arrays.sort( sorted );
+			int index = (int) Math.ceil( percent / 100 * sorted.length ) - 1;
+			return sorted[Math.max( 0, Math.min( sorted.length - 1, index ) )];
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * The clock's health, as seen through JMX (for example in jconsole or
+ * VisualVM, under "BigClock:type=ClockMetrics"). Times are in milliseconds.
+ */
+public interface ClockMetricsMBean
+{
+	long getTickCount();
+	
+	/*
+	 * How late the tick landed after the wall-clock second boundary, over the
+	 * last ticks (to the millisecond).
+	 */
+	double getTickJitterP50Millis();
+	
+	double getTickJitterP90Millis();
+	
+	double getTickJitterP99Millis();
+	
+	double getTickJitterMaxMillis();
+	
+	long getPaintCount();
+	
+	/*
+	 * How long painting the time took, over the last paints.
+	 */
+	double getPaintP50Millis();
+	
+	double getPaintP99Millis();
+	
+	double getPaintMaxMillis();
+	
+	long getFetchSuccessCount();
+	
+	long getFetchFailureCount();
+	
+	/**
+	 * @return When the last settings fetch succeeded, or an empty string.
+	 */
+	String getLastFetchSuccess();
+	
+	/**
+	 * @return When the last settings fetch failed, or an empty string.
+	 */
+	String getLastFetchFailure();
+	
+	String getLastFetchError();
+	
+	/**
+	 * @return How long the last fetch that was not held by the server as a
+	 *         long poll took, or -1 if there has not been one.
+	 */
+	double getLastFetchLatencyMillis();
+	
+	/**
+	 * @return "closed" while fetches go through, "open" while they are
+	 *         refused because the settings host keeps failing, "half-open"
+	 *         while one is let through to see if it is back.
+	 */
+	String getNetCircuitState();
+	
+	int getNetConsecutiveFailures();
+	
+	/**
+	 * @return How many times fetches have been cut off.
+	 */
+	long getNetCircuitTrips();
+	
+	/**
+	 * @return How many fetches were refused without asking the host.
+	 */
+	long getFetchRefusedCount();
+	
+	long getFileParseErrorCount();
+	
+	long getNetParseErrorCount();
+	
+	/**
+	 * @return "file", "net" or "cache" (the last net settings, kept on disk):
+	 *         where the settings in effect came from.
+	 */
+	String getSettingsSource();
+	
+	long getTimeSyncCount();
+	
+	long getTimeSyncFailureCount();
+	
+	String getLastTimeSyncError();
+	
+	/**
+	 * @return How far the time server was ahead of the computer's clock at
+	 *         the last sync, smoothed over the last answers; 0 before one.
+	 */
+	double getTimeServerOffsetMillis();
+	
+	/**
+	 * @return The round trip of the answer the offset is based on, or -1 if
+	 *         there has not been one.
+	 */
+	double getTimeServerDelayMillis();
+	
+	long getHeapUsedBytes();
+	
+	/**
+	 * @return The lateness statistics of every job on the timer wheel.
+	 */
+	String[] getTimerJobs();
+}
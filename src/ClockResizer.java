@@ -0,0 +1,167 @@
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.text.DateFormatSymbols;
+
+import javax.swing.JLabel;
+import javax.swing.Timer;
+
+/**
+ * Resizes the clock's fonts to fit the window.
+ * 
+ * Resize events are debounced, so dragging a window edge or hot-plugging a
+ * display only resizes the fonts once things settle, and the fonts only
+ * change (forcing a relayout) when the size bucket actually changes.
+ */
+public class ClockResizer extends ComponentAdapter implements ActionListener
+{
+	public final static int DEBOUNCE_DELAY = 150;
+	
+	// share of the width the lines may take up
+	private final static float TIME_FILL = 0.9f;
+	private final static float DATE_FILL = 0.8f;
+	private final static String TIME_SAMPLE = "00:00:00";
+	
+	private final Component area;
+	private final ClockFace timeFace;
+	private final JLabel dateLabel;
+	private final FontSizer sizer;
+	private final String dateSample;
+	private final Timer debounce;
+	
+	private int resizeEvents;
+	private int relayouts;
+	
+	/**
+	 * @param area
+	 *            The component whose size the clock has to fit.
+	 */
+	public ClockResizer( Component area, ClockFace timeFace, JLabel dateLabel )
+	{
+		this.area = area;
+		this.timeFace = timeFace;
+		this.dateLabel = dateLabel;
+		this.sizer = new FontSizer( new Font( "Arial", Font.BOLD, 12 ) );
+		this.dateSample = widestDate();
+		
+		debounce = new Timer( DEBOUNCE_DELAY, this );
+		debounce.setRepeats( false );
+	}
+	
+	public void componentResized( ComponentEvent evt )
+	{
+		
+		resizeEvents++;
+		debounce.restart();
+	}
+	
+	/**
+	 * Called by the debounce timer once the resize events stop.
+	 */
+	public void actionPerformed( ActionEvent e )
+	{
+		
+		fit();
+	}
+	
+	/**
+	 * Sizes the fonts to the current area straight away. Must be called on
+	 * the event dispatch thread.
+	 */
+	public void fit()
+	{
+		
+		int width = area.getWidth();
+		int height = area.getHeight();
+		if ( width <= 0 || height <= 0 )
+			return;
+		
+		ClockEvents.Resize event = new ClockEvents.Resize();
+		event.begin();
+		
+		int timeSize = sizer.fit( timeFace, TIME_SAMPLE, (int) ( width * TIME_FILL ) );
+		int dateSize = sizer.fit( dateLabel, dateSample, (int) ( width * DATE_FILL ) );
+		
+		/*
+		 * On wide, short windows the height runs out first, so scale both
+		 * lines down together until they fit.
+		 */
+		int needed = sizer.lineHeight( timeFace, timeSize ) +
+				sizer.lineHeight( dateLabel, dateSize );
+		if ( needed > height )
+		{
+			timeSize = timeSize * height / needed;
+			dateSize = dateSize * height / needed;
+		}
+		
+		Font timeFont = sizer.getFont( timeSize );
+		Font dateFont = sizer.getFont( dateSize );
+		
+		// the same bucket hands back the same font, which needs no relayout
+		boolean relayout = timeFont != timeFace.getFont() || dateFont != dateLabel.getFont();
+		if ( relayout )
+		{
+			timeFace.setFont( timeFont );
+			dateLabel.setFont( dateFont );
+			relayouts++;
+		}
+		
+		event.end();
+		if ( event.shouldCommit() )
+		{
+			event.width = width;
+			event.height = height;
+			event.timeFontSize = timeFont.getSize();
+			event.relayout = relayout;
+			event.commit();
+		}
+		
+		return;
+	}
+	
+	public int getResizeEvents()
+	{
+		
+		return this.resizeEvents;
+	}
+	
+	public int getFontDerivations()
+	{
+		
+		return sizer.getDerivations();
+	}
+	
+	public int getRelayouts()
+	{
+		
+		return this.relayouts;
+	}
+	
+	/**
+	 * Builds the widest date line the clock can show in this locale, so the
+	 * font does not have to change from day to day.
+	 */
+	public static String widestDate()
+	{
+		
+		DateFormatSymbols symbols = DateFormatSymbols.getInstance();
+		return longest( symbols.getWeekdays() ) + ", " + longest( symbols.getShortMonths() ) +
+				" 28, 2000";
+	}
+	
+	private static String longest( String[] names )
+	{
+		
+		String longest = "";
+		for ( String name : names )
+		{
+			if ( name.length() > longest.length() )
+				longest = name;
+		}
+		
+		return longest;
+	}
+}
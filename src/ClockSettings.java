@@ -0,0 +1,465 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The set of values a clock can be configured with, as read from or written to
+ * the clock_settings format.
+ * 
+ * Settings are immutable so a snapshot can be handed between the tick, fetch
+ * and UI threads without locking; use a {@link Builder} to make a changed
+ * copy.
+ */
+public final class ClockSettings
+{
+	public final static String SCREENS_PRIMARY = "primary";
+	public final static String SCREENS_ALL = "all";
+	
+	public final static String DISPLAY_STANDARD = "standard";
+	public final static String DISPLAY_SMOOTH = "smooth";
+	
+	public final static int MIN_FRAME_RATE = 30;
+	public final static int MAX_FRAME_RATE = 120;
+	
+	public final static String TIME_SERVER_OFF = "off";
+	public final static int MIN_TIME_INTERVAL = 16;
+	
+	private final String title;
+	private final String netURL;
+	private final Color backgroundColor;
+	private final Color foregroundColor;
+	private final int queryInterval;
+	private final long refreshInterval;
+	private final int extendedState;
+	private final boolean useNetSettings;
+	private final List<String> wallboardZones;
+	private final int wallboardColumns;
+	private final String screens;
+	private final String displayMode;
+	private final int frameRate;
+	private final String timeServer;
+	private final int timeInterval;
+	
+	/**
+	 * Creates the default settings.
+	 */
+	public ClockSettings()
+	{
+		this( new Builder() );
+	}
+	
+	private ClockSettings( Builder builder )
+	{
+		this.title = builder.title;
+		this.netURL = builder.netURL;
+		this.backgroundColor = builder.backgroundColor;
+		this.foregroundColor = builder.foregroundColor;
+		this.queryInterval = builder.queryInterval;
+		this.refreshInterval = builder.refreshInterval;
+		this.extendedState = builder.extendedState;
+		this.useNetSettings = builder.useNetSettings;
+		this.wallboardZones = builder.wallboardZones;
+		this.wallboardColumns = builder.wallboardColumns;
+		this.screens = builder.screens;
+		this.displayMode = builder.displayMode;
+		this.frameRate = builder.frameRate;
+		this.timeServer = builder.timeServer;
+		this.timeInterval = builder.timeInterval;
+	}
+	
+	public String getTitle()
+	{
+		
+		return this.title;
+	}
+	
+	public Color getBackgroundColor()
+	{
+		
+		return this.backgroundColor;
+	}
+	
+	public Color getForegroundColor()
+	{
+		
+		return this.foregroundColor;
+	}
+	
+	public int getQueryInterval()
+	{
+		
+		return this.queryInterval;
+	}
+	
+	public long getRefreshInterval()
+	{
+		
+		return this.refreshInterval;
+	}
+	
+	public boolean getUseNetSettings()
+	{
+		
+		return this.useNetSettings;
+	}
+	
+	public String getNetURL()
+	{
+		
+		return this.netURL;
+	}
+	
+	public int getExtendedState()
+	{
+		
+		return this.extendedState;
+	}
+	
+	/**
+	 * @return The time zone IDs shown in wallboard mode, or an empty list for
+	 *         the normal single clock.
+	 */
+	public List<String> getWallboardZones()
+	{
+		
+		return this.wallboardZones;
+	}
+	
+	/**
+	 * @return The number of columns of the wallboard grid, or 0 to pick one to
+	 *         suit the number of zones.
+	 */
+	public int getWallboardColumns()
+	{
+		
+		return this.wallboardColumns;
+	}
+	
+	/**
+	 * @return The screens to show a clock on: "primary", "all", or a comma
+	 *         separated list of screen numbers counted from 0.
+	 */
+	public String getScreens()
+	{
+		
+		return this.screens;
+	}
+	
+	/**
+	 * @return "standard" for the time to the second, or "smooth" for an
+	 *         actively rendered time with milliseconds and a sweeping second
+	 *         indicator.
+	 */
+	public String getDisplayMode()
+	{
+		
+		return this.displayMode;
+	}
+	
+	/**
+	 * @return The frames per second drawn in the smooth display mode.
+	 */
+	public int getFrameRate()
+	{
+		
+		return this.frameRate;
+	}
+	
+	/**
+	 * @return The SNTP server ("host" or "host:port") the displayed time is
+	 *         corrected against, or "off" to show the computer's own clock.
+	 */
+	public String getTimeServer()
+	{
+		
+		return this.timeServer;
+	}
+	
+	/**
+	 * @return How often to ask the time server, in seconds.
+	 */
+	public int getTimeInterval()
+	{
+		
+		return this.timeInterval;
+	}
+	
+	public boolean equals( Object obj )
+	{
+		
+		if ( this == obj )
+			return true;
+		if ( !( obj instanceof ClockSettings ) )
+			return false;
+		
+		ClockSettings other = (ClockSettings) obj;
+		return this.queryInterval == other.queryInterval &&
+				this.refreshInterval == other.refreshInterval &&
+				this.extendedState == other.extendedState &&
+				this.useNetSettings == other.useNetSettings && this.title.equals( other.title ) &&
+				this.netURL.equals( other.netURL ) &&
+				this.backgroundColor.equals( other.backgroundColor ) &&
+				this.foregroundColor.equals( other.foregroundColor ) &&
+				this.wallboardZones.equals( other.wallboardZones ) &&
+				this.wallboardColumns == other.wallboardColumns &&
+				this.screens.equals( other.screens ) &&
+				this.displayMode.equals( other.displayMode ) && this.frameRate == other.frameRate &&
+				this.timeServer.equals( other.timeServer ) &&
+				this.timeInterval == other.timeInterval;
+	}
+	
+	public int hashCode()
+	{
+		
+		int hash = title.hashCode();
+		hash = 31 * hash + netURL.hashCode();
+		hash = 31 * hash + backgroundColor.hashCode();
+		hash = 31 * hash + foregroundColor.hashCode();
+		hash = 31 * hash + queryInterval;
+		hash = 31 * hash + (int) ( refreshInterval ^ ( refreshInterval >>> 32 ) );
+		hash = 31 * hash + extendedState;
+		hash = 31 * hash + ( useNetSettings ? 1 : 0 );
+		hash = 31 * hash + wallboardZones.hashCode();
+		hash = 31 * hash + wallboardColumns;
+		hash = 31 * hash + screens.hashCode();
+		hash = 31 * hash + displayMode.hashCode();
+		hash = 31 * hash + frameRate;
+		hash = 31 * hash + timeServer.hashCode();
+		return 31 * hash + timeInterval;
+	}
+	
+	public String toString()
+	{
+		
+		return "background-color" + SettingsHelper.DELIMITER + "(" +
+				this.backgroundColor.getRed() + "," + this.backgroundColor.getGreen() + "," +
+				this.backgroundColor.getBlue() + ")\n" + "font-color" +
+				SettingsHelper.DELIMITER + "(" + this.foregroundColor.getRed() + "," +
+				this.foregroundColor.getGreen() + "," + this.foregroundColor.getBlue() + ")\n" +
+				"title" + SettingsHelper.DELIMITER + SettingsHelper.despace( this.title ) +
+				"\nextended-state" + SettingsHelper.DELIMITER + this.extendedState +
+				"\nquery-interval" + SettingsHelper.DELIMITER + this.queryInterval +
+				"\nrefresh-interval" + SettingsHelper.DELIMITER + this.refreshInterval +
+				"\nsettings-url" + SettingsHelper.DELIMITER + this.netURL +
+				"\nuse-net-settings" + SettingsHelper.DELIMITER + this.useNetSettings +
+				( this.wallboardZones.isEmpty() ? ""
+						: "\nwallboard-zones" + SettingsHelper.DELIMITER +
+								String.join( ",", this.wallboardZones ) + "\nwallboard-columns" +
+								SettingsHelper.DELIMITER + this.wallboardColumns ) +
+				( this.screens.equals( SCREENS_PRIMARY ) ? ""
+						: "\nscreens" + SettingsHelper.DELIMITER + this.screens ) +
+				( this.displayMode.equals( DISPLAY_STANDARD ) ? ""
+						: "\ndisplay-mode" + SettingsHelper.DELIMITER + this.displayMode +
+								"\nframe-rate" + SettingsHelper.DELIMITER + this.frameRate ) +
+				( this.timeServer.equals( TIME_SERVER_OFF ) ? ""
+						: "\ntime-server" + SettingsHelper.DELIMITER + this.timeServer +
+								"\ntime-interval" + SettingsHelper.DELIMITER + this.timeInterval );
+	}
+	
+	/**
+	 * Collects values for a new set of settings. Starts from the defaults, or
+	 * from an existing set of settings.
+	 */
+	public static class Builder
+	{
+		
+		private String title = SettingsHelper.DEFAULT_TITLE;
+		private String netURL = SettingsHelper.DEFAULT_URL;
+		private Color backgroundColor = new Color( 45, 54, 45 );
+		private Color foregroundColor = new Color( 155, 172, 134 );
+		private int queryInterval = 60;
+		private long refreshInterval = 500;
+		private int extendedState = 6;
+		private boolean useNetSettings = true;
+		private List<String> wallboardZones = Collections.emptyList();
+		private int wallboardColumns = 0;
+		private String screens = SCREENS_PRIMARY;
+		private String displayMode = DISPLAY_STANDARD;
+		private int frameRate = 60;
+		private String timeServer = TIME_SERVER_OFF;
+		private int timeInterval = 64;
+		
+		public Builder()
+		{
+		}
+		
+		public Builder( ClockSettings settings )
+		{
+			this.title = settings.title;
+			this.netURL = settings.netURL;
+			this.backgroundColor = settings.backgroundColor;
+			this.foregroundColor = settings.foregroundColor;
+			this.queryInterval = settings.queryInterval;
+			this.refreshInterval = settings.refreshInterval;
+			this.extendedState = settings.extendedState;
+			this.useNetSettings = settings.useNetSettings;
+			this.wallboardZones = settings.wallboardZones;
+			this.wallboardColumns = settings.wallboardColumns;
+			this.screens = settings.screens;
+			this.displayMode = settings.displayMode;
+			this.frameRate = settings.frameRate;
+			this.timeServer = settings.timeServer;
+			this.timeInterval = settings.timeInterval;
+		}
+		
+		public Builder setTitle( String title )
+		{
+			
+			this.title = title;
+			return this;
+		}
+		
+		public Builder setBackgroundColor( Color bg )
+		{
+			
+			this.backgroundColor = bg;
+			return this;
+		}
+		
+		public Builder setForegroundColor( Color fg )
+		{
+			
+			this.foregroundColor = fg;
+			return this;
+		}
+		
+		public Builder setQueryInterval( int qinterval )
+		{
+			
+			if ( qinterval > 0 )
+				this.queryInterval = qinterval;
+			return this;
+		}
+		
+		public Builder setRefreshInterval( long refreshInterval )
+		{
+			
+			if ( refreshInterval > 0 )
+				this.refreshInterval = refreshInterval;
+			return this;
+		}
+		
+		public Builder setExtendedState( int extState )
+		{
+			
+			this.extendedState = extState;
+			return this;
+		}
+		
+		public Builder setUseNetSettings( boolean useNet )
+		{
+			
+			this.useNetSettings = useNet;
+			return this;
+		}
+		
+		public Builder setNetURL( String url )
+		{
+			
+			this.netURL = url;
+			return this;
+		}
+		
+		public Builder setWallboardZones( List<String> zones )
+		{
+			
+			this.wallboardZones = Collections.unmodifiableList( new ArrayList<String>( zones ) );
+			return this;
+		}
+		
+		public Builder setWallboardColumns( int columns )
+		{
+			
+			if ( columns >= 0 )
+				this.wallboardColumns = columns;
+			return this;
+		}
+		
+		/**
+		 * @throws IllegalArgumentException
+		 *             If the value is not "primary", "all" or a list of screen
+		 *             numbers.
+		 */
+		public Builder setScreens( String screens )
+		{
+			
+			if ( !screens.equalsIgnoreCase( SCREENS_PRIMARY ) &&
+					!screens.equalsIgnoreCase( SCREENS_ALL ) &&
+					!screens.matches( "[0-9]+(,[0-9]+)*" ) )
+				throw new IllegalArgumentException( "Malformed screen list: \"" + screens + "\"" );
+			
+			this.screens = screens.toLowerCase();
+			return this;
+		}
+		
+		/**
+		 * @throws IllegalArgumentException
+		 *             If the value is not "standard" or "smooth".
+		 */
+		public Builder setDisplayMode( String mode )
+		{
+			
+			if ( !mode.equalsIgnoreCase( DISPLAY_STANDARD ) &&
+					!mode.equalsIgnoreCase( DISPLAY_SMOOTH ) )
+				throw new IllegalArgumentException( "Unknown display mode: \"" + mode + "\"" );
+			
+			this.displayMode = mode.toLowerCase();
+			return this;
+		}
+		
+		/**
+		 * @throws IllegalArgumentException
+		 *             If the rate is outside 30 to 120 frames per second.
+		 */
+		public Builder setFrameRate( int frameRate )
+		{
+			
+			if ( frameRate < MIN_FRAME_RATE || frameRate > MAX_FRAME_RATE )
+				throw new IllegalArgumentException( "Frame rate out of range (" + MIN_FRAME_RATE +
+						"-" + MAX_FRAME_RATE + "): " + frameRate );
+			
+			this.frameRate = frameRate;
+			return this;
+		}
+		
+		/**
+		 * @throws IllegalArgumentException
+		 *             If the value is not "off", a host name or a host and a
+		 *             port.
+		 */
+		public Builder setTimeServer( String server )
+		{
+			
+			if ( server.equalsIgnoreCase( TIME_SERVER_OFF ) )
+				server = TIME_SERVER_OFF;
+			else if ( !server.matches( "[A-Za-z0-9.\\-]+(:[0-9]{1,5})?" ) )
+				throw new IllegalArgumentException( "Malformed time server: \"" + server + "\"" );
+			
+			this.timeServer = server;
+			return this;
+		}
+		
+		/**
+		 * @throws IllegalArgumentException
+		 *             If the interval is shorter than 16 seconds, which time
+		 *             servers ask clients not to poll more often than.
+		 */
+		public Builder setTimeInterval( int seconds )
+		{
+			
+			if ( seconds < MIN_TIME_INTERVAL )
+				throw new IllegalArgumentException( "Time interval below " + MIN_TIME_INTERVAL +
+						" seconds: " + seconds );
+			
+			this.timeInterval = seconds;
+			return this;
+		}
+		
+		public ClockSettings build()
+		{
+			
+			return new ClockSettings( this );
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * The time the clock shows: the computer's own clock, or once a time server
+ * has been heard from, the monotonic clock ({@link System#nanoTime()}) plus
+ * an offset worked out from the server's answers.
+ *
+ * Reading the time is one addition to the monotonic clock, with the offset
+ * kept in a volatile field. A new offset is never jumped to: {@link #slew()},
+ * called once a second, moves the offset in use towards it by at most
+ * {@link #MAX_SLEW_RATE} of the time that passed. A step is at most 5ms,
+ * shorter than a frame at the smooth display's highest frame rate, so the
+ * seconds never skip or repeat and the milliseconds never run backwards.
+ */
+public class CorrectedClock
+{
+	/**
+	 * The most the shown time is sped up or slowed down while it catches up
+	 * with the server: 5ms a second.
+	 */
+	public final static double MAX_SLEW_RATE = 0.005;
+	
+	// a late call to slew() still only takes one step of this much time
+	private final static long MAX_STEP_NANOS = 1000000000;
+	
+	// monotonic nanos + offset = epoch nanos; only used once corrected
+	private volatile long offset;
+	private volatile boolean corrected;
+	
+	// where the offset is slewing to, and when it last moved
+	private volatile long target;
+	private long lastSlew;
+	
+	/**
+	 * @return The current time in epoch millis.
+	 */
+	public long currentTimeMillis()
+	{
+		
+		if ( !corrected )
+			return System.currentTimeMillis();
+		return Math.floorDiv( System.nanoTime() + offset, 1000000 );
+	}
+	
+	/**
+	 * Sets the offset to slew to. The first one starts from where the
+	 * computer's clock is, so the correction is slewed in like any other.
+	 *
+	 * @param offsetNanos
+	 *            Epoch nanos minus {@link System#nanoTime()}, as measured.
+	 */
+	public synchronized void setTarget( long offsetNanos )
+	{
+		
+		if ( !corrected )
+		{
+			offset = systemOffsetNanos();
+			lastSlew = System.nanoTime();
+			corrected = true;
+		}
+		
+		target = offsetNanos;
+		return;
+	}
+	
+	/**
+	 * Goes back to showing the computer's own clock, at once.
+	 */
+	public synchronized void reset()
+	{
+		
+		corrected = false;
+		return;
+	}
+	
+	public boolean isCorrected()
+	{
+		
+		return this.corrected;
+	}
+	
+	/**
+	 * Moves the offset in use a step towards the target. Called regularly
+	 * (every second) on the timer wheel.
+	 */
+	public synchronized void slew()
+	{
+		
+		if ( !corrected )
+			return;
+		
+		long now = System.nanoTime();
+		long step = (long) ( Math.min( now - lastSlew, MAX_STEP_NANOS ) * MAX_SLEW_RATE );
+		lastSlew = now;
+		
+		long remaining = target - offset;
+		if ( Math.abs( remaining ) <= step )
+			offset = target;
+		else
+			offset += remaining > 0 ? step : -step;
+		return;
+	}
+	
+	/**
+	 * @return How far the shown time is ahead of the computer's clock, in ms.
+	 */
+	public long getCorrectionMillis()
+	{
+		
+		return corrected ? ( offset - systemOffsetNanos() ) / 1000000 : 0;
+	}
+	
+	/**
+	 * @return How far the shown time still has to slew, in ms.
+	 */
+	public long getSlewRemainingMillis()
+	{
+		
+		return corrected ? ( target - offset ) / 1000000 : 0;
+	}
+	
+	/**
+	 * @return The offset that makes the monotonic clock read the same as the
+	 *         computer's clock right now, in ns.
+	 */
+	public static long systemOffsetNanos()
+	{
+		
+		return System.currentTimeMillis() * 1000000 - System.nanoTime();
+	}
+}
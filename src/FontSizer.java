@@ -0,0 +1,100 @@
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Works out font sizes that make a line of text fill a given width, and hands
+ * out derived fonts from a cache keyed by size bucket.
+ * 
+ * Sizes are measured with the {@link FontMetrics} of a single reference size
+ * and scaled, so no font is derived just to find out whether it fits, and
+ * sizes are rounded down to a bucket so small changes in window size reuse the
+ * font that is already showing.
+ */
+public class FontSizer
+{
+	public final static int BUCKET = 4;
+	public final static int MIN_SIZE = 8;
+	
+	private final static float REFERENCE_SIZE = 100f;
+	
+	private final Font reference;
+	private final Map<Integer, Font> fonts = new HashMap<Integer, Font>();
+	private int derivations;
+	
+	/**
+	 * @param font
+	 *            The family and style to size; its own size is ignored.
+	 */
+	public FontSizer( Font font )
+	{
+		this.reference = font.deriveFont( REFERENCE_SIZE );
+	}
+	
+	/**
+	 * Finds the largest size at which the sample text fits the given width,
+	 * rounded down to a bucket.
+	 * 
+	 * @param component
+	 *            Any component, used to get font metrics.
+	 * @param sample
+	 *            The widest text the line is expected to show.
+	 * @param width
+	 *            The width the text has to fit in, in pixels.
+	 */
+	public int fit( Component component, String sample, int width )
+	{
+		
+		FontMetrics metrics = component.getFontMetrics( reference );
+		int sampleWidth = Math.max( 1, metrics.stringWidth( sample ) );
+		
+		return bucket( (int) ( REFERENCE_SIZE * width / sampleWidth ) );
+	}
+	
+	/**
+	 * @return The height of a line at the given size, in pixels.
+	 */
+	public int lineHeight( Component component, int size )
+	{
+		
+		FontMetrics metrics = component.getFontMetrics( reference );
+		return (int) Math.ceil( metrics.getHeight() * size / REFERENCE_SIZE );
+	}
+	
+	/**
+	 * @return The font at the given size, rounded down to a bucket. Fonts are
+	 *         only derived the first time a bucket is asked for.
+	 */
+	public Font getFont( int size )
+	{
+		
+		Integer bucket = bucket( size );
+		Font font = fonts.get( bucket );
+		
+		if ( font == null )
+		{
+			font = reference.deriveFont( (float) bucket );
+			fonts.put( bucket, font );
+			derivations++;
+		}
+		
+		return font;
+	}
+	
+	/**
+	 * @return The number of fonts derived so far.
+	 */
+	public int getDerivations()
+	{
+		
+		return this.derivations;
+	}
+	
+	private static int bucket( int size )
+	{
+		
+		return Math.max( MIN_SIZE, size / BUCKET * BUCKET );
+	}
+}
@@ -0,0 +1,98 @@
+import java.util.Arrays;
+
+/**
+ * A distribution of frame times, in fixed 10 microsecond buckets up to 100ms
+ * (longer times land in the last bucket), so recording a frame is one array
+ * increment and never allocates.
+ * 
+ * Written by one thread; the statistics may be read from any thread while it
+ * runs, and are then approximate.
+ */
+public class FrameHistogram
+{
+	private final static long BUCKET_NANOS = 10000;
+	private final static int BUCKETS = 10000;
+	
+	private final long[] counts = new long[BUCKETS];
+	private volatile long count;
+	private volatile long total;
+	private volatile long max;
+	
+	public void record( long nanos )
+	{
+		
+		int bucket = (int) Math.min( BUCKETS - 1, Math.max( 0, nanos ) / BUCKET_NANOS );
+		counts[bucket]++;
+		count++;
+		total += nanos;
+		if ( nanos > max )
+			max = nanos;
+		return;
+	}
+	
+	public long getCount()
+	{
+		
+		return this.count;
+	}
+	
+	public long getMax()
+	{
+		
+		return this.max;
+	}
+	
+	public long getMean()
+	{
+		
+		long frames = count;
+		return frames == 0 ? 0 : total / frames;
+	}
+	
+	/**
+	 * @return The upper edge of the bucket holding the given percentile, in
+	 *         ns, or 0 if nothing has been recorded.
+	 */
+	public long percentile( double percent )
+	{
+		
+		long frames = count;
+		if ( frames == 0 )
+			return 0;
+		
+		long wanted = (long) Math.ceil( percent / 100 * frames );
+		long seen = 0;
+		for ( int i = 0; i < BUCKETS; i++ )
+		{
+			seen += counts[i];
+			if ( seen >= wanted )
+				return ( i + 1 ) * BUCKET_NANOS;
+		}
+		
+		return max;
+	}
+	
+	/**
+	 * Starts again from nothing. Only to be called by the recording thread,
+	 * or while it is not recording.
+	 */
+	public void reset()
+	{
+		
+		Arrays.fill( counts, 0 );
+		count = 0;
+		total = 0;
+		max = 0;
+		return;
+	}
+	
+	/**
+	 * @return "p50 / p99 / max" in milliseconds.
+	 */
+	public String toString()
+	{
+		
+		return String.format( "p50 %6.2f  p99 %6.2f  max %6.2f ms", percentile( 50 ) / 1e6,
+				percentile( 99 ) / 1e6, max / 1e6 );
+	}
+}
@@ -0,0 +1,82 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces an active rendering loop at a fixed frame rate.
+ * 
+ * Frame deadlines are on the monotonic clock and each follows from the one
+ * before, so the rate does not drift; a frame that is missed is dropped
+ * rather than drawn late in a burst. The time between the starts of frames is
+ * kept in a {@link FrameHistogram}.
+ */
+public class FramePacer
+{
+	private volatile long periodNanos;
+	
+	// only touched by the rendering thread
+	private long next;
+	private long last;
+	
+	private final FrameHistogram intervals = new FrameHistogram();
+	
+	public FramePacer( int frameRate )
+	{
+		setFrameRate( frameRate );
+		restart();
+	}
+	
+	/**
+	 * Changes the rate; takes effect from the next frame.
+	 */
+	public void setFrameRate( int frameRate )
+	{
+		
+		this.periodNanos = TimeUnit.SECONDS.toNanos( 1 ) / Math.max( 1, frameRate );
+	}
+	
+	/**
+	 * Makes the next frame due now, and leaves the gap since the last one out
+	 * of the statistics. For after the loop has been paused.
+	 */
+	public void restart()
+	{
+		
+		next = System.nanoTime();
+		last = 0;
+		return;
+	}
+	
+	/**
+	 * Sleeps towards the next frame's deadline. The sleep may end early, when
+	 * the thread is unparked, so the loop can look at its own flags.
+	 * 
+	 * @return true if the next frame is due and should be drawn now.
+	 */
+	public boolean awaitFrame()
+	{
+		
+		long now = System.nanoTime();
+		long wait = next - now;
+		if ( wait > 0 )
+		{
+			LockSupport.parkNanos( this, wait );
+			return false;
+		}
+		
+		if ( last != 0 )
+			intervals.record( now - last );
+		last = now;
+		
+		next = TimerWheel.next( next, periodNanos );
+		return true;
+	}
+	
+	/**
+	 * @return The times between the starts of frames.
+	 */
+	public FrameHistogram getIntervals()
+	{
+		
+		return this.intervals;
+	}
+}
@@ -0,0 +1,482 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fetches the network settings file off the clock's tick thread.
+ *
+ * Every request runs on a background executor with connect and read timeouts,
+ * so a slow or dead settings host can never hold up the displayed time. The
+ * fetcher remembers the ETag and Last-Modified of the last file it handed out
+ * and sends them back as If-None-Match / If-Modified-Since, so an unchanged
+ * file costs a 304 and is never parsed again.
+ *
+ * Requests also carry "Prefer: wait=N" (RFC 7240). A server that applies it,
+ * such as {@link SettingsServer}, holds the request until the file changes or
+ * the wait runs out; the fetcher then polls again at once, so changes arrive
+ * as soon as they are made and the clock's own interval polls find a fetch
+ * already in flight. Plain web servers ignore the preference and are polled on
+ * the clock's interval as before.
+ *
+ * Every request goes through a {@link CircuitBreaker}: once the host has
+ * failed several times in a row, requests are refused without touching the
+ * network until it has had time to come back.
+ */
+public class NetSettingsFetcher
+{
+	public final static int DEFAULT_CONNECT_TIMEOUT = 5000;
+	public final static int DEFAULT_READ_TIMEOUT = 10000;
+	public final static int DEFAULT_LONG_POLL_WAIT = 55;
+	
+	/**
+	 * Receives the outcome of a fetch, on the fetcher's thread.
+	 */
+	public interface FetchListener
+	{
+		/**
+		 * Called with the body of a settings file that changed since the last
+		 * successful fetch.
+		 *
+		 * @param body
+		 *            The response body; closed by the fetcher afterwards.
+		 * @return true if the body was accepted. A rejected body is fetched in
+		 *         full again next time instead of being answered with a 304.
+		 */
+		boolean fetched( InputStream body ) throws IOException;
+		
+		void failed( Exception e );
+	}
+	
+	private final FetchListener listener;
+	private final Executor executor;
+	private final AtomicBoolean inFlight = new AtomicBoolean();
+	private final CircuitBreaker breaker = new CircuitBreaker();
+	
+	private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+	private volatile int longPollWait = DEFAULT_LONG_POLL_WAIT;
+	private volatile ClockMetrics metrics;
+	
+	// the URL to keep long polling, or null to stop
+	private volatile String pollURL;
+	
+	// the request in flight, so it can be cut short
+	private volatile HttpURLConnection current;
+	private volatile String currentURL;
+	private volatile boolean aborted;
+	
+	// set when polling stops, so the next request fetches the file in full
+	private volatile boolean forgetValidators;
+	
+	// validators of the last accepted body, only touched by the fetch task
+	private String validatedURL;
+	private String etag;
+	private String lastModified;
+	private volatile String longPollURL;
+	
+	// the URL the breaker's failures were counted against
+	private volatile String breakerURL;
+	
+	/**
+	 * Creates a fetcher with its own background thread.
+	 */
+	public NetSettingsFetcher( FetchListener listener )
+	{
+		this( listener, newDaemonExecutor() );
+	}
+	
+	/**
+	 * Creates a fetcher that runs its requests on the given executor.
+	 */
+	public NetSettingsFetcher( FetchListener listener, Executor executor )
+	{
+		this.listener = listener;
+		this.executor = executor;
+	}
+	
+	public void setTimeouts( int connectTimeout, int readTimeout )
+	{
+		
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+	
+	/**
+	 * @param seconds
+	 *            How long a server may hold a request until the file changes,
+	 *            or 0 to never ask it to.
+	 */
+	public void setLongPollWait( int seconds )
+	{
+		
+		this.longPollWait = seconds;
+	}
+	
+	/**
+	 * @param metrics
+	 *            Where to count fetches and their latency, or null.
+	 */
+	public void setMetrics( ClockMetrics metrics )
+	{
+		
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return true if the server of the last request holds requests until the
+	 *         settings change.
+	 */
+	public boolean isLongPolling()
+	{
+		
+		String url = this.pollURL;
+		return url != null && url.equals( this.longPollURL );
+	}
+	
+	/**
+	 * @return The breaker requests to the settings host go through.
+	 */
+	public CircuitBreaker getBreaker()
+	{
+		
+		return this.breaker;
+	}
+	
+	/**
+	 * @return true while a fetch is queued or running.
+	 */
+	public boolean isFetching()
+	{
+		
+		return inFlight.get();
+	}
+	
+	/**
+	 * Starts fetching the settings file in the background. Returns straight
+	 * away; if a fetch is already in flight the request is dropped rather than
+	 * queued behind it. A long poll held on a different URL is cut short so the
+	 * new URL is polled next. While the circuit breaker is open the request
+	 * is refused.
+	 *
+	 * @param url
+	 *            The location of the settings file.
+	 * @return false if the request was dropped or refused.
+	 */
+	public boolean requestFetch( String url )
+	{
+		
+		pollURL = url;
+		
+		if ( !inFlight.compareAndSet( false, true ) )
+		{
+			HttpURLConnection connection = current;
+			if ( connection != null && !url.equals( currentURL ) )
+				abort( connection );
+			return false;
+		}
+		
+		if ( !allowNext( url ) )
+		{
+			inFlight.set( false );
+			return false;
+		}
+		
+		executor.execute( new FetchTask( url ) );
+		return true;
+	}
+	
+	/**
+	 * Stops polling again after a long poll returns, and ends one that is
+	 * being held by the server. Requests made later still work as before,
+	 * except that the first of them fetches the file in full: whoever stopped
+	 * polling has most likely dropped the settings it last accepted.
+	 */
+	public void stopPolling()
+	{
+		
+		pollURL = null;
+		forgetValidators = true;
+		
+		HttpURLConnection connection = current;
+		if ( connection != null && currentURL.equals( longPollURL ) )
+			abort( connection );
+		return;
+	}
+	
+	/**
+	 * Starts the breaker afresh when requests move to another URL; failures
+	 * of another host say nothing about this one.
+	 */
+	private void countFailuresFor( String url )
+	{
+		
+		if ( !url.equals( breakerURL ) )
+		{
+			breakerURL = url;
+			breaker.reset();
+		}
+		return;
+	}
+	
+	/**
+	 * Asks the breaker whether a request to the URL may be made now.
+	 */
+	private boolean allowNext( String url )
+	{
+		
+		countFailuresFor( url );
+		return breaker.allowRequest( System.nanoTime() );
+	}
+	
+	private void abort( HttpURLConnection connection )
+	{
+		
+		aborted = true;
+		connection.disconnect();
+		return;
+	}
+	
+	/**
+	 * @return true if the server held the request as a long poll and answered
+	 *         it cleanly, so another one should follow straight away.
+	 */
+	private boolean fetch( String url )
+	{
+		
+		long started = System.nanoTime();
+		boolean held = false;
+		int status = -1;
+		long bytes = 0;
+		String error = null;
+		
+		ClockEvents.SettingsFetch event = new ClockEvents.SettingsFetch();
+		event.begin();
+		
+		try
+		{
+			// validators from a different URL do not apply to this one
+			if ( forgetValidators || !url.equals( validatedURL ) )
+			{
+				forgetValidators = false;
+				validatedURL = url;
+				etag = null;
+				lastModified = null;
+			}
+			
+			URLConnection connection = new URL( url ).openConnection();
+			connection.setConnectTimeout( connectTimeout );
+			connection.setReadTimeout( readTimeout );
+			connection.setUseCaches( false );
+			
+			HttpURLConnection http = null;
+			if ( connection instanceof HttpURLConnection )
+			{
+				http = (HttpURLConnection) connection;
+				
+				if ( etag != null )
+					http.setRequestProperty( "If-None-Match", etag );
+				if ( lastModified != null )
+					http.setRequestProperty( "If-Modified-Since", lastModified );
+				
+				int wait = longPollWait;
+				if ( wait > 0 )
+				{
+					http.setRequestProperty( "Prefer", "wait=" + wait );
+					
+					// a server known to hold requests may take the whole wait
+					held = url.equals( longPollURL ) && etag != null;
+					if ( held )
+						connection.setReadTimeout( readTimeout + wait * 1000 );
+				}
+				
+				currentURL = url;
+				current = http;
+				
+				status = http.getResponseCode();
+				String applied = http.getHeaderField( "Preference-Applied" );
+				longPollURL = wait > 0 && applied != null && applied.contains( "wait=" ) ? url
+						: null;
+				
+				if ( status == HttpURLConnection.HTTP_NOT_MODIFIED )
+				{
+					http.disconnect();
+					succeeded( started, held );
+					return url.equals( longPollURL );
+				}
+				if ( status != HttpURLConnection.HTTP_OK )
+				{
+					http.disconnect();
+					throw new IOException( "Server answered " + status + " for " + url );
+				}
+			}
+			
+			// what was read, not what was declared: chunked bodies declare nothing
+			CountingInputStream body = new CountingInputStream( connection.getInputStream() );
+			boolean accepted;
+			try
+			{
+				accepted = listener.fetched( body );
+			} finally
+			{
+				bytes = body.getCount();
+				body.close();
+			}
+			succeeded( started, held );
+			
+			if ( http != null && accepted )
+			{
+				etag = http.getHeaderField( "ETag" );
+				lastModified = http.getHeaderField( "Last-Modified" );
+			}
+			
+			// a rejected body would only be sent straight back
+			return accepted && url.equals( longPollURL );
+		} catch ( Exception e )
+		{
+			error = String.valueOf( e );
+			
+			// a poll cut short for a new URL is not a failure
+			if ( aborted )
+			{
+				breaker.cancelled();
+				return true;
+			}
+			
+			breaker.failed( System.nanoTime() );
+			ClockMetrics recorder = metrics;
+			if ( recorder != null )
+				recorder.fetchFailed( e, System.nanoTime() - started );
+			listener.failed( e );
+		} finally
+		{
+			current = null;
+			aborted = false;
+			
+			event.end();
+			if ( event.shouldCommit() )
+			{
+				event.url = url;
+				event.status = status;
+				event.bytes = bytes;
+				event.longPoll = held;
+				event.error = error;
+				event.commit();
+			}
+		}
+		
+		return false;
+	}
+	
+	private void succeeded( long started, boolean held )
+	{
+		
+		breaker.succeeded();
+		ClockMetrics recorder = metrics;
+		if ( recorder != null )
+			recorder.fetchSucceeded( held ? -1 : System.nanoTime() - started );
+		return;
+	}
+	
+	private static ExecutorService newDaemonExecutor()
+	{
+		
+		return Executors.newSingleThreadExecutor( new ThreadFactory()
+		{
+			
+			public Thread newThread( Runnable r )
+			{
+				
+				Thread thread = new Thread( r, "clock-settings-fetch" );
+				thread.setDaemon( true );
+				return thread;
+			}
+		} );
+	}
+	
+	/**
+	 * Counts the bytes read through it.
+	 */
+	private static class CountingInputStream extends FilterInputStream
+	{
+		
+		private long count;
+		
+		public CountingInputStream( InputStream in )
+		{
+			super( in );
+		}
+		
+		@Override
+		public int read() throws IOException
+		{
+			
+			int b = super.read();
+			if ( b >= 0 )
+				count++;
+			return b;
+		}
+		
+		@Override
+		public int read( byte[] buffer, int offset, int length ) throws IOException
+		{
+			
+			int read = super.read( buffer, offset, length );
+			if ( read > 0 )
+				count += read;
+			return read;
+		}
+		
+		@Override
+		public long skip( long n ) throws IOException
+		{
+			
+			long skipped = super.skip( n );
+			count += skipped;
+			return skipped;
+		}
+		
+		public long getCount()
+		{
+			
+			return this.count;
+		}
+	}
+	
+	private class FetchTask implements Runnable
+	{
+		
+		private final String url;
+		
+		public FetchTask( String url )
+		{
+			this.url = url;
+		}
+		
+		public void run()
+		{
+			
+			boolean again = false;
+			try
+			{
+				again = fetch( url );
+			} finally
+			{
+				// keep the request in flight while long polling, as long as
+				// the breaker lets the next one through
+				String next = pollURL;
+				if ( again && next != null && allowNext( next ) )
+					executor.execute( new FetchTask( next ) );
+				else
+					inFlight.set( false );
+			}
+		}
+	}
+}
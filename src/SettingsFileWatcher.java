@@ -0,0 +1,369 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Watches the local settings file and hands its content over whenever it
+ * really changes.
+ * 
+ * The file's directory is watched with the JDK {@link WatchService}, so tools
+ * that replace the file by writing a temporary file and renaming it over the
+ * original are seen too. Events are merged until the directory has been quiet
+ * for a while, the file is only read once its size and modification time hold
+ * still across the read, and the content is only passed on if its hash differs
+ * from the last content seen.
+ * 
+ * The watcher can run on a thread of its own, or with a {@link TimerWheel}
+ * timing the quiet period: a background thread then blocks for events and
+ * hands them to a job on the wheel, which only runs while a change is
+ * settling, and the file is read on another background thread. Either way
+ * nothing wakes up while the directory is left alone.
+ */
+public class SettingsFileWatcher implements Runnable
+{
+	public final static long DEFAULT_QUIET_PERIOD = 300;
+	
+	/**
+	 * Receives changed file content, on the watcher's thread.
+	 */
+	public interface ChangeListener
+	{
+		void changed( byte[] content );
+	}
+	
+	private final Path file;
+	private final Path directory;
+	private final ChangeListener listener;
+	private final long quietPeriod;
+	
+	private volatile WatchService watchService;
+	private ExecutorService reader;
+	private TimerWheel wheel;
+	
+	// when the last event of a change came in, and whether a job waits for quiet
+	private volatile long lastEvent;
+	private final AtomicBoolean settling = new AtomicBoolean();
+	private byte[] lastDigest;
+	private volatile long reloads;
+	
+	public SettingsFileWatcher( Path file, ChangeListener listener )
+	{
+		this( file, listener, DEFAULT_QUIET_PERIOD );
+	}
+	
+	/**
+	 * @param quietPeriod
+	 *            How long the directory has to be quiet before the file is
+	 *            read, in ms.
+	 */
+	public SettingsFileWatcher( Path file, ChangeListener listener, long quietPeriod )
+	{
+		this.file = file.toAbsolutePath();
+		this.directory = this.file.getParent();
+		this.listener = listener;
+		this.quietPeriod = quietPeriod;
+	}
+	
+	/**
+	 * Starts watching on a background thread. The current content of the file
+	 * is taken as already known, so only later changes are reported.
+	 */
+	public void start() throws IOException
+	{
+		
+		register();
+		
+		Thread thread = new Thread( this, "clock-settings-watch" );
+		thread.setDaemon( true );
+		thread.start();
+		
+		return;
+	}
+	
+	/**
+	 * Starts watching, with the quiet period timed on the given wheel. The
+	 * file is read on a background thread once the directory has gone quiet.
+	 */
+	public void start( TimerWheel wheel ) throws IOException
+	{
+		
+		register();
+		this.wheel = wheel;
+		
+		reader = Executors.newSingleThreadExecutor( new ThreadFactory()
+		{
+			
+			public Thread newThread( Runnable r )
+			{
+				
+				Thread thread = new Thread( r, "clock-settings-read" );
+				thread.setDaemon( true );
+				return thread;
+			}
+		} );
+		
+		Thread thread = new Thread( new EventPump(), "clock-settings-watch" );
+		thread.setDaemon( true );
+		thread.start();
+		
+		return;
+	}
+	
+	private void register() throws IOException
+	{
+		
+		watchService = FileSystems.getDefault().newWatchService();
+		directory.register( watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY );
+		
+		byte[] content = readStable();
+		if ( content != null )
+			lastDigest = digest( content );
+		
+		return;
+	}
+	
+	public void stop()
+	{
+		
+		try
+		{
+			if ( watchService != null )
+				watchService.close();
+		} catch ( IOException e )
+		{
+			System.out.println( "Error: " + e.getMessage() );
+		}
+		
+		if ( reader != null )
+			reader.shutdown();
+		
+		return;
+	}
+	
+	/**
+	 * @return The number of times changed content was passed on.
+	 */
+	public long getReloads()
+	{
+		
+		return this.reloads;
+	}
+	
+	public void run()
+	{
+		
+		try
+		{
+			while ( true )
+			{
+				if ( !isRelevant( watchService.take() ) )
+					continue;
+				
+				/*
+				 * Merge everything that follows until the directory goes
+				 * quiet, so a burst of writes or renames is one reload.
+				 */
+				WatchKey key;
+				while ( ( key = watchService.poll( quietPeriod, TimeUnit.MILLISECONDS ) ) != null )
+					isRelevant( key );
+				
+				reload();
+			}
+		} catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		} catch ( ClosedWatchServiceException e )
+		{
+			// stopped
+		}
+		
+		return;
+	}
+	
+	/**
+	 * Checks whether any event of a key concerns the settings file, and
+	 * re-arms the key.
+	 */
+	private boolean isRelevant( WatchKey key )
+	{
+		
+		boolean relevant = false;
+		
+		for ( WatchEvent<?> event : key.pollEvents() )
+		{
+			// on overflow we cannot tell, so look at the file anyway
+			if ( event.kind() == StandardWatchEventKinds.OVERFLOW ||
+					file.getFileName().equals( event.context() ) )
+				relevant = true;
+		}
+		key.reset();
+		
+		return relevant;
+	}
+	
+	private void reload() throws InterruptedException
+	{
+		
+		byte[] content;
+		try
+		{
+			content = readStable();
+		} catch ( IOException e )
+		{
+			System.out.println( "Unable to read the settings file: " + e.getMessage() );
+			return;
+		}
+		
+		// gone (mid-rename or deleted); the next event brings it back
+		if ( content == null )
+			return;
+		
+		byte[] digest = digest( content );
+		if ( Arrays.equals( digest, lastDigest ) )
+			return;
+		
+		lastDigest = digest;
+		reloads++;
+		listener.changed( content );
+		return;
+	}
+	
+	/**
+	 * Reads the file once its size and modification time stay the same across
+	 * a read, so a file that is still being written in place is not used.
+	 * 
+	 * @return The content, or null if there is no file.
+	 */
+	private byte[] readStable() throws IOException
+	{
+		
+		try
+		{
+			while ( true )
+			{
+				BasicFileAttributes before = Files.readAttributes( file, BasicFileAttributes.class );
+				byte[] content = Files.readAllBytes( file );
+				BasicFileAttributes after = Files.readAttributes( file, BasicFileAttributes.class );
+				
+				if ( before.size() == after.size() && after.size() == content.length &&
+						before.lastModifiedTime().equals( after.lastModifiedTime() ) )
+					return content;
+				
+				try
+				{
+					Thread.sleep( quietPeriod );
+				} catch ( InterruptedException e )
+				{
+					Thread.currentThread().interrupt();
+					return null;
+				}
+			}
+		} catch ( NoSuchFileException e )
+		{
+			return null;
+		}
+	}
+	
+	private static byte[] digest( byte[] content )
+	{
+		
+		try
+		{
+			return MessageDigest.getInstance( "SHA-256" ).digest( content );
+		} catch ( NoSuchAlgorithmException e )
+		{
+			// every JVM has SHA-256; fall back to comparing the content itself
+			return content.clone();
+		}
+	}
+	
+	/**
+	 * Waits for events on a thread of its own and, once the settings file has
+	 * changed, has a job on the wheel wait for the directory to go quiet.
+	 */
+	private class EventPump implements Runnable
+	{
+		
+		public void run()
+		{
+			
+			try
+			{
+				while ( true )
+				{
+					// once the file has changed, any event restarts the quiet period
+					if ( !isRelevant( watchService.take() ) && !settling.get() )
+						continue;
+					
+					lastEvent = System.nanoTime();
+					if ( settling.compareAndSet( false, true ) )
+						wheel.schedule( "settings-watch", new QuietJob(),
+								lastEvent + TimeUnit.MILLISECONDS.toNanos( quietPeriod ) );
+				}
+			} catch ( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			} catch ( ClosedWatchServiceException e )
+			{
+				// stopped
+			}
+			
+			return;
+		}
+	}
+	
+	/**
+	 * Has the file read once the directory has been quiet for the quiet
+	 * period, putting its own deadline back while events keep coming.
+	 */
+	private class QuietJob implements TimerWheel.Job
+	{
+		
+		private final long quietNanos = TimeUnit.MILLISECONDS.toNanos( quietPeriod );
+		
+		public long run( long deadline )
+		{
+			
+			long quietAt = lastEvent + quietNanos;
+			if ( System.nanoTime() - quietAt < 0 )
+				return quietAt;
+			
+			settling.set( false );
+			reader.execute( new ReloadTask() );
+			return TimerWheel.STOP;
+		}
+	}
+	
+	private class ReloadTask implements Runnable
+	{
+		
+		public void run()
+		{
+			
+			try
+			{
+				reload();
+			} catch ( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
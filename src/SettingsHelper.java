@@ -5,6 +5,9 @@ public abstract class SettingsHelper
 	public final static float VERSION_NUMBER = 2.6f;
 	public final static String DEFAULT_TITLE = "CLOCK v" + VERSION_NUMBER;
 	public final static String DEFAULT_FILEPATH = "clock_settings";
+	public final static String DEFAULT_ALARMS_FILEPATH = "clock_alarms";
+	public final static String DEFAULT_NET_CACHE_FILEPATH = "clock_settings_net";
+	public final static String DEFAULT_URL = "http://nateshot.homenet.org:8025/clock_settings.txt";
 	public final static String DELIMITER = "::";
 	/**
 	 * This method will replace all '%' symbols in a string with a single blank
@@ -18,35 +21,21 @@ public abstract class SettingsHelper
 	public static String respace( String deblankedString )
 	{
 		
-		String str = "";
-		char[] charArray = deblankedString.toCharArray();
-		
-		for ( int i = 0; i < charArray.length; i++ )
-		{
-			if ( charArray[i] == '%' )
-				str += " ";
-			else
-				str += charArray[i];
-		}
-		
-		return str;
+		return deblankedString.replace( '%', ' ' );
 	}
 	
+	/**
+	 * This method will replace all blank spaces in a string with a '%' symbol,
+	 * the reverse of {@link #respace(String)}.
+	 * 
+	 * @param spacedString
+	 *            The string to be de-spaced.
+	 * @return A string void of any spaces, which have been replaced by '%'.
+	 */
 	public static String despace( String spacedString )
 	{
 		
-		String str = "";
-		char[] charArray = spacedString.toCharArray();
-		
-		for ( int i = 0; i < charArray.length; i++ )
-		{
-			if ( charArray[i] == ' ' )
-				str += "%";
-			else
-				str += charArray[i];
-		}
-		
-		return str;
+		return spacedString.replace( ' ', '%' );
 	}
 	
 	/**
@@ -63,31 +52,122 @@ public abstract class SettingsHelper
 	public static Color verifyColor( String color )
 	{
 		
-		int red, green, blue;
-		
-		color = removeWhiteSpaces( color );
-		
-		red = Integer.parseInt( color.split( "," )[0] );
-		green = Integer.parseInt( color.split( "," )[1] );
-		blue = Integer.parseInt( color.split( "," )[2] );
-		
-		/*
-		 * Verify that the new colors will work.
-		 */
-		if ( red > 255 )
-			red = 255;
-		else if ( 0 > red )
-			red = 0;
-		if ( green > 255 )
-			green = 255;
-		else if ( 0 > green )
-			green = 0;
-		if ( blue > 255 )
-			blue = 255;
-		else if ( 0 > blue )
-			blue = 0;
-		
-		return new Color( red, green, blue );
+		return parseColor( color, 0, color.length() );
+	}
+	
+	/**
+	 * Same as {@link #verifyColor(String)}, but reads the "N,N,N" text straight
+	 * out of a range of a character sequence in a single pass, skipping any
+	 * blanks.
+	 * 
+	 * @param seq
+	 *            The characters holding the RGB values.
+	 * @param start
+	 *            The index of the first character of the values.
+	 * @param end
+	 *            The index after the last character of the values.
+	 * @return A color object created from the (clamped) RGB values.
+	 * @throws NumberFormatException
+	 *             If the range does not hold exactly three integers.
+	 */
+	public static Color parseColor( CharSequence seq, int start, int end )
+	{
+		
+		int[] rgb = new int[3];
+		int component = 0, from = start;
+		
+		for ( int index = start; index <= end; index++ )
+		{
+			if ( index < end && seq.charAt( index ) != ',' )
+				continue;
+			
+			if ( component == 3 )
+				throw new NumberFormatException(
+						"Too many color values: \"" + seq.subSequence( start, end ) + "\"" );
+			
+			/*
+			 * Verify that the new color will work.
+			 */
+			rgb[component++] = Math.max( 0, Math.min( 255, parseInt( seq, from, index ) ) );
+			from = index + 1;
+		}
+		
+		if ( component != 3 )
+			throw new NumberFormatException(
+					"Too few color values: \"" + seq.subSequence( start, end ) + "\"" );
+		
+		return new Color( rgb[0], rgb[1], rgb[2] );
+	}
+	
+	/**
+	 * Parses a decimal integer out of a range of a character sequence without
+	 * creating a substring first. Blanks inside the range are skipped.
+	 * 
+	 * @throws NumberFormatException
+	 *             If the range does not hold an int.
+	 */
+	public static int parseInt( CharSequence seq, int start, int end )
+	{
+		
+		long value = parseLong( seq, start, end );
+		if ( value > Integer.MAX_VALUE || value < Integer.MIN_VALUE )
+			throw new NumberFormatException(
+					"Value out of range: \"" + seq.subSequence( start, end ) + "\"" );
+		
+		return (int) value;
+	}
+	
+	/**
+	 * Parses a decimal long out of a range of a character sequence without
+	 * creating a substring first. Blanks inside the range are skipped.
+	 * 
+	 * @throws NumberFormatException
+	 *             If the range does not hold a long.
+	 */
+	public static long parseLong( CharSequence seq, int start, int end )
+	{
+		
+		boolean negative = false, signed = false, digits = false;
+		long value = 0;
+		char ch;
+		
+		for ( int index = start; index < end; index++ )
+		{
+			ch = seq.charAt( index );
+			
+			if ( Character.isSpaceChar( ch ) )
+				continue;
+			
+			if ( !digits && !signed && ( ch == '-' || ch == '+' ) )
+			{
+				signed = true;
+				negative = ch == '-';
+				continue;
+			}
+			
+			if ( ch < '0' || ch > '9' )
+				throw new NumberFormatException(
+						"For input string: \"" + seq.subSequence( start, end ) + "\"" );
+			
+			// accumulate negatively so Long.MIN_VALUE still fits
+			long next = value * 10 - ( ch - '0' );
+			if ( value < Long.MIN_VALUE / 10 || next > value )
+				throw new NumberFormatException(
+						"Value out of range: \"" + seq.subSequence( start, end ) + "\"" );
+			value = next;
+			digits = true;
+		}
+		
+		if ( !digits )
+			throw new NumberFormatException(
+					"For input string: \"" + seq.subSequence( start, end ) + "\"" );
+		if ( negative )
+			return value;
+		if ( value == Long.MIN_VALUE )
+			throw new NumberFormatException(
+					"Value out of range: \"" + seq.subSequence( start, end ) + "\"" );
+		
+		return -value;
 	}
 	
 	/**
@@ -101,19 +181,23 @@ public abstract class SettingsHelper
 	public static String removeWhiteSpaces( String str )
 	{
 		
-		int index, length = str.length();
+		int index, length = str.length(), kept = 0;
 		char ch;
-		String deblanked = "";
+		char[] deblanked = new char[length];
 		
 		for ( index = 0; index < length; index++ )
 		{
 			ch = str.charAt( index );
 			if ( !Character.isSpaceChar( ch ) )
 			{
-				deblanked += ch;
+				deblanked[kept++] = ch;
 			}
 		}
 		
-		return deblanked;
+		// nothing removed, so the original can be handed back as is
+		if ( kept == length )
+			return str;
+		
+		return new String( deblanked, 0, kept );
 	}
 }
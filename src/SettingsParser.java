@@ -0,0 +1,278 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the clock_settings format ("key::value" per line) from any byte source
+ * into a {@link ClockSettings}.
+ *
+ * The input is read in one linear pass through a fixed char buffer. Blanks are
+ * dropped as the characters arrive (titles use '%' for spaces), comment lines
+ * (anything not starting with a letter) are skipped without being buffered,
+ * and numbers and colors are parsed straight out of the line buffer. A bad
+ * value only costs its own line: it is recorded with its line number and the
+ * rest of the input is still applied.
+ */
+public class SettingsParser
+{
+	private final static int BUFFER_SIZE = 8192;
+	
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private final StringBuilder line = new StringBuilder( 128 );
+	private final List<String> errors = new ArrayList<String>();
+	
+	private int lineNumber;
+	private boolean skipLine;
+	private long charsRead;
+	
+	/**
+	 * Parses settings on top of a base set: the values found in the input
+	 * replace those of the base, the rest are kept. The stream is not closed.
+	 *
+	 * @param in
+	 *            The settings, in the platform's default encoding (the same
+	 *            one the settings file is written in).
+	 * @param base
+	 *            The settings to start from.
+	 * @return The new settings.
+	 * @throws IOException
+	 *             If reading the stream fails. Bad values do not throw; see
+	 *             {@link #getErrors()}.
+	 */
+	public ClockSettings parse( InputStream in, ClockSettings base ) throws IOException
+	{
+		
+		return parse( new InputStreamReader( in ), base );
+	}
+	
+	/**
+	 * @see #parse(InputStream, ClockSettings)
+	 */
+	public ClockSettings parse( Reader in, ClockSettings base ) throws IOException
+	{
+		
+		ClockSettings.Builder target = new ClockSettings.Builder( base );
+		
+		errors.clear();
+		charsRead = 0;
+		line.setLength( 0 );
+		lineNumber = 1;
+		skipLine = false;
+		
+		boolean afterCR = false;
+		int count;
+		char ch;
+		
+		while ( ( count = in.read( buffer ) ) != -1 )
+		{
+			charsRead += count;
+			for ( int index = 0; index < count; index++ )
+			{
+				ch = buffer[index];
+				
+				if ( ch == '\n' || ch == '\r' )
+				{
+					// a "\r\n" pair ends just one line
+					if ( !( ch == '\n' && afterCR ) )
+						endLine( target );
+					afterCR = ch == '\r';
+					continue;
+				}
+				afterCR = false;
+				
+				/*
+				 * Deblank the line as it is read, and stop buffering a line
+				 * once it turns out to be a comment.
+				 */
+				if ( skipLine || Character.isSpaceChar( ch ) )
+					continue;
+				
+				if ( line.length() == 0 && !Character.isLetter( ch ) )
+				{
+					skipLine = true;
+					continue;
+				}
+				
+				line.append( ch );
+			}
+		}
+		
+		endLine( target );
+		return target.build();
+	}
+	
+	/**
+	 * @return The problems found by the last parse, each prefixed with its
+	 *         line number. Empty if everything was applied.
+	 */
+	public List<String> getErrors()
+	{
+		
+		return errors;
+	}
+	
+	/**
+	 * @return The number of characters the last parse read.
+	 */
+	public long getCharsRead()
+	{
+		
+		return this.charsRead;
+	}
+	
+	public boolean hasErrors()
+	{
+		
+		return !errors.isEmpty();
+	}
+	
+	private void endLine( ClockSettings.Builder target )
+	{
+		
+		try
+		{
+			if ( line.length() > 0 )
+				applyLine( target );
+		} catch ( IllegalArgumentException e )
+		{
+			// bad numbers, colors, zone IDs, screen lists, display modes and time servers
+			errors.add( "line " + lineNumber + ": " + e.getMessage() );
+		}
+		
+		line.setLength( 0 );
+		skipLine = false;
+		lineNumber++;
+		return;
+	}
+	
+	private void applyLine( ClockSettings.Builder target )
+	{
+		
+		/*
+		 * Check if the setting is valid - with two parts. If not, the line is
+		 * skipped, as it always has been: settings files hold such lines as
+		 * notes and as keys left blank.
+		 */
+		int split = line.indexOf( SettingsHelper.DELIMITER );
+		if ( split < 0 )
+			return;
+		
+		int valueStart = split + SettingsHelper.DELIMITER.length();
+		int end = line.length();
+		
+		// trailing delimiters carry nothing
+		while ( end - valueStart >= 2 && line.charAt( end - 1 ) == ':' &&
+				line.charAt( end - 2 ) == ':' )
+			end -= 2;
+		
+		int extra = line.indexOf( SettingsHelper.DELIMITER, valueStart );
+		if ( valueStart == end || ( extra >= 0 && extra < end ) )
+			return;
+		
+		/*
+		 * Switch through possible settings
+		 */
+		if ( keyEquals( split, "background-color" ) )
+			target.setBackgroundColor( parseColor( valueStart, end ) );
+		else if ( keyEquals( split, "font-color" ) )
+			target.setForegroundColor( parseColor( valueStart, end ) );
+		else if ( keyEquals( split, "title" ) )
+			target.setTitle( SettingsHelper.respace( line.substring( valueStart, end ) ) );
+		else if ( keyEquals( split, "extended-state" ) )
+			target.setExtendedState( SettingsHelper.parseInt( line, valueStart, end ) );
+		else if ( keyEquals( split, "query-interval" ) )
+			target.setQueryInterval( SettingsHelper.parseInt( line, valueStart, end ) );
+		else if ( keyEquals( split, "refresh-interval" ) )
+			target.setRefreshInterval( SettingsHelper.parseLong( line, valueStart, end ) );
+		else if ( keyEquals( split, "settings-url" ) )
+			target.setNetURL( line.substring( valueStart, end ) );
+		else if ( keyEquals( split, "use-net-settings" ) )
+			target.setUseNetSettings( end - valueStart == 4 &&
+					line.substring( valueStart, end ).equalsIgnoreCase( "true" ) );
+		else if ( keyEquals( split, "wallboard-zones" ) )
+			target.setWallboardZones( parseZones( valueStart, end ) );
+		else if ( keyEquals( split, "wallboard-columns" ) )
+			target.setWallboardColumns( SettingsHelper.parseInt( line, valueStart, end ) );
+		else if ( keyEquals( split, "screens" ) )
+			target.setScreens( line.substring( valueStart, end ) );
+		else if ( keyEquals( split, "display-mode" ) )
+			target.setDisplayMode( line.substring( valueStart, end ) );
+		else if ( keyEquals( split, "frame-rate" ) )
+			target.setFrameRate( SettingsHelper.parseInt( line, valueStart, end ) );
+		else if ( keyEquals( split, "time-server" ) )
+			target.setTimeServer( line.substring( valueStart, end ) );
+		else if ( keyEquals( split, "time-interval" ) )
+			target.setTimeInterval( SettingsHelper.parseInt( line, valueStart, end ) );
+		
+		// unknown keys are ignored, as they may belong to a newer clock
+		return;
+	}
+	
+	/**
+	 * Compares the key (the first {@code length} characters of the line) to a
+	 * lower case name, ignoring case, without creating a string for the key.
+	 */
+	private boolean keyEquals( int length, String name )
+	{
+		
+		if ( length != name.length() )
+			return false;
+		
+		for ( int index = 0; index < length; index++ )
+		{
+			if ( Character.toLowerCase( line.charAt( index ) ) != name.charAt( index ) )
+				return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Splits a comma separated list of time zone IDs, checking each one.
+	 */
+	private List<String> parseZones( int start, int end )
+	{
+		
+		List<String> zones = new ArrayList<String>();
+		int from = start;
+		
+		for ( int index = start; index <= end; index++ )
+		{
+			if ( index < end && line.charAt( index ) != ',' )
+				continue;
+			
+			if ( index > from )
+			{
+				String id = line.substring( from, index );
+				try
+				{
+					ZoneId.of( id );
+				} catch ( DateTimeException e )
+				{
+					throw new IllegalArgumentException( "Unknown time zone: \"" + id + "\"" );
+				}
+				zones.add( id );
+			}
+			from = index + 1;
+		}
+		
+		return zones;
+	}
+	
+	private Color parseColor( int start, int end )
+	{
+		
+		// the numbers are wrapped in brackets: (N,N,N)
+		if ( end - start < 2 )
+			throw new NumberFormatException( "Malformed color: \"" +
+					line.substring( start, end ) + "\"" );
+		
+		return SettingsHelper.parseColor( line, start + 1, end - 1 );
+	}
+}
@@ -0,0 +1,430 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a clock_settings file to a fleet of clocks over HTTP, pushing changes
+ * to them through long polls instead of having every clock poll on a timer.
+ * 
+ * The protocol is plain HTTP on top of what the clocks already send. Every
+ * response carries the version of the settings as its ETag. A client that
+ * sends its version back in If-None-Match along with "Prefer: wait=N"
+ * (RFC 7240) is parked until the settings change, when it gets the new file
+ * straight away, or until N seconds have passed, when it gets a 304. Servers
+ * that do not know the preference simply answer at once, so clocks work the
+ * same against a plain web server. Parked requests hold no thread; they are
+ * answered from the file watcher's thread or a timer.
+ */
+public class SettingsServer
+{
+	public final static int DEFAULT_PORT = 8765;
+	public final static String PATH = "/clock_settings";
+	
+	// longest a client may be parked, in seconds
+	public final static int MAX_WAIT = 120;
+	
+	private final Path file;
+	private final int port;
+	private final Set<ParkedPoll> parked = new LinkedHashSet<ParkedPoll>();
+	
+	private HttpServer server;
+	private ExecutorService handlerPool;
+	private ScheduledExecutorService timer;
+	private SettingsFileWatcher watcher;
+	
+	// the file being served and its version; guarded by parked
+	private byte[] content;
+	private String version;
+	
+	private final AtomicLong requests = new AtomicLong();
+	private volatile long pushes;
+	
+	/**
+	 * @param file
+	 *            The settings file to serve. Changes to it are picked up while
+	 *            the server runs.
+	 * @param port
+	 *            The port to listen on, or 0 to pick a free one.
+	 */
+	public SettingsServer( Path file, int port )
+	{
+		this.file = file;
+		this.port = port;
+	}
+	
+	public void start() throws IOException
+	{
+		
+		watcher = new SettingsFileWatcher( file, new SettingsFileWatcher.ChangeListener()
+		{
+			
+			public void changed( byte[] changed )
+			{
+				
+				publish( changed );
+			}
+		} );
+		watcher.start();
+		publish( Files.readAllBytes( file ) );
+		
+		handlerPool = Executors.newFixedThreadPool( 4, new NamedThreadFactory( "settings-server" ) );
+		timer = Executors.newSingleThreadScheduledExecutor(
+				new NamedThreadFactory( "settings-server-timer" ) );
+		
+		/*
+		 * The JDK server writes the headers and the body separately; without
+		 * TCP_NODELAY every full body waits out the client's delayed ACK
+		 * (about 40ms). Read once, when the first server is created.
+		 */
+		if ( System.getProperty( "sun.net.httpserver.nodelay" ) == null )
+			System.setProperty( "sun.net.httpserver.nodelay", "true" );
+
+		server = HttpServer.create( new InetSocketAddress( port ), 0 );
+		server.createContext( PATH, new SettingsHandler() );
+		server.setExecutor( handlerPool );
+		server.start();
+		
+		return;
+	}
+	
+	/**
+	 * Stops the server. Parked clients are answered with a 304 first, so they
+	 * can come back to another server straight away.
+	 */
+	public void stop()
+	{
+		
+		List<ParkedPoll> waiting;
+		synchronized ( parked )
+		{
+			waiting = new ArrayList<ParkedPoll>( parked );
+			parked.clear();
+		}
+		for ( ParkedPoll poll : waiting )
+			poll.expire();
+		
+		server.stop( 1 );
+		watcher.stop();
+		timer.shutdownNow();
+		handlerPool.shutdown();
+		return;
+	}
+	
+	/**
+	 * @return The port the server listens on.
+	 */
+	public int getPort()
+	{
+		
+		return server.getAddress().getPort();
+	}
+	
+	public String getVersion()
+	{
+		
+		synchronized ( parked )
+		{
+			return this.version;
+		}
+	}
+	
+	/**
+	 * @return The number of clients waiting for a change.
+	 */
+	public int getParkedCount()
+	{
+		
+		synchronized ( parked )
+		{
+			return parked.size();
+		}
+	}
+	
+	public long getRequests()
+	{
+		
+		return this.requests.get();
+	}
+	
+	/**
+	 * @return The number of parked clients that were sent a changed file.
+	 */
+	public long getPushes()
+	{
+		
+		return this.pushes;
+	}
+	
+	/**
+	 * Makes new content the one served, and sends it to every parked client.
+	 */
+	private void publish( byte[] changed )
+	{
+		
+		String changedVersion = version( changed );
+		List<ParkedPoll> waiting;
+		
+		synchronized ( parked )
+		{
+			if ( changedVersion.equals( version ) )
+				return;
+			
+			content = changed;
+			version = changedVersion;
+			waiting = new ArrayList<ParkedPoll>( parked );
+			parked.clear();
+		}
+		
+		SettingsParser parser = new SettingsParser();
+		try
+		{
+			parser.parse( new ByteArrayInputStream( changed ), new ClockSettings() );
+		} catch ( IOException e )
+		{
+			// reading from memory does not fail
+		}
+		for ( String error : parser.getErrors() )
+			System.out.println( "Warning (served file): " + error );
+		
+		for ( ParkedPoll poll : waiting )
+		{
+			poll.cancelTimeout();
+			respond( poll.exchange, changed, changedVersion );
+			pushes++;
+		}
+		
+		return;
+	}
+	
+	private void respond( HttpExchange exchange, byte[] body, String bodyVersion )
+	{
+		
+		try
+		{
+			exchange.getResponseHeaders().set( "ETag", bodyVersion );
+			exchange.getResponseHeaders().set( "Content-Type", "text/plain" );
+			exchange.getResponseHeaders().set( "Cache-Control", "no-cache" );
+			
+			if ( body == null )
+			{
+				exchange.sendResponseHeaders( 304, -1 );
+			} else
+			{
+				exchange.sendResponseHeaders( 200, body.length );
+				OutputStream out = exchange.getResponseBody();
+				out.write( body );
+				out.close();
+			}
+		} catch ( IOException e )
+		{
+			// the client went away while it was waiting
+		} finally
+		{
+			exchange.close();
+		}
+		
+		return;
+	}
+	
+	/**
+	 * Reads the wait a client asked for from its Prefer header.
+	 * 
+	 * @return The wait in seconds, capped to {@link #MAX_WAIT}, or 0 for none.
+	 */
+	static int requestedWait( String prefer )
+	{
+		
+		if ( prefer == null )
+			return 0;
+		
+		for ( String preference : prefer.split( "[,;]" ) )
+		{
+			preference = preference.trim();
+			if ( !preference.regionMatches( true, 0, "wait=", 0, 5 ) )
+				continue;
+			
+			try
+			{
+				return Math.max( 0, Math.min( MAX_WAIT,
+						SettingsHelper.parseInt( preference, 5, preference.length() ) ) );
+			} catch ( NumberFormatException e )
+			{
+				return 0;
+			}
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Derives the version of a settings file from its content, so the same
+	 * file keeps its version across server restarts and servers.
+	 */
+	private static String version( byte[] content )
+	{
+		
+		try
+		{
+			byte[] digest = MessageDigest.getInstance( "SHA-256" ).digest( content );
+			StringBuilder text = new StringBuilder( 34 ).append( '"' );
+			for ( int i = 0; i < 16; i++ )
+				text.append( Character.forDigit( ( digest[i] >> 4 ) & 0xF, 16 ) )
+						.append( Character.forDigit( digest[i] & 0xF, 16 ) );
+			return text.append( '"' ).toString();
+		} catch ( NoSuchAlgorithmException e )
+		{
+			// every JDK has SHA-256
+			throw new IllegalStateException( e );
+		}
+	}
+	
+	/**
+	 * Runs a settings server until the process is killed.
+	 * 
+	 * @param args
+	 *            [port [settings file]]
+	 */
+	public static void main( String[] args ) throws IOException
+	{
+		
+		int port = args.length > 0 ? Integer.parseInt( args[0] ) : DEFAULT_PORT;
+		Path file = Paths.get( args.length > 1 ? args[1] : SettingsHelper.DEFAULT_FILEPATH );
+		
+		SettingsServer server = new SettingsServer( file, port );
+		server.start();
+		System.out.println( "Serving " + file.toAbsolutePath() + " at http://localhost:" +
+				server.getPort() + PATH );
+	}
+	
+	private class SettingsHandler implements HttpHandler
+	{
+		
+		public void handle( HttpExchange exchange ) throws IOException
+		{
+			
+			requests.incrementAndGet();
+			
+			if ( !exchange.getRequestMethod().equals( "GET" ) )
+			{
+				exchange.sendResponseHeaders( 405, -1 );
+				exchange.close();
+				return;
+			}
+			
+			String known = exchange.getRequestHeaders().getFirst( "If-None-Match" );
+			int wait = requestedWait( exchange.getRequestHeaders().getFirst( "Prefer" ) );
+			if ( wait > 0 )
+				exchange.getResponseHeaders().set( "Preference-Applied", "wait=" + wait );
+			
+			byte[] body;
+			String bodyVersion;
+			synchronized ( parked )
+			{
+				body = content;
+				bodyVersion = version;
+				
+				/*
+				 * A client that already has the current file waits for the
+				 * next one. The handler returns straight away; the exchange is
+				 * answered when the file changes or the wait runs out.
+				 */
+				if ( wait > 0 && bodyVersion.equals( known ) )
+				{
+					ParkedPoll poll = new ParkedPoll( exchange );
+					parked.add( poll );
+					poll.timeout = timer.schedule( poll, wait, TimeUnit.SECONDS );
+					return;
+				}
+			}
+			
+			respond( exchange, bodyVersion.equals( known ) ? null : body, bodyVersion );
+			return;
+		}
+	}
+	
+	/**
+	 * A client waiting for the next version. Whoever takes it out of the
+	 * parked set answers it: the publisher with the new file, or the timer
+	 * with a 304.
+	 */
+	private class ParkedPoll implements Runnable
+	{
+		
+		private final HttpExchange exchange;
+		private ScheduledFuture<?> timeout;
+		
+		public ParkedPoll( HttpExchange exchange )
+		{
+			this.exchange = exchange;
+		}
+		
+		public void run()
+		{
+			
+			synchronized ( parked )
+			{
+				if ( !parked.remove( this ) )
+					return;
+			}
+			
+			expire();
+		}
+		
+		public void expire()
+		{
+			
+			cancelTimeout();
+			respond( exchange, null, getVersion() );
+		}
+		
+		public void cancelTimeout()
+		{
+			
+			ScheduledFuture<?> scheduled;
+			synchronized ( parked )
+			{
+				scheduled = timeout;
+			}
+			if ( scheduled != null )
+				scheduled.cancel( false );
+		}
+	}
+	
+	private static class NamedThreadFactory implements ThreadFactory
+	{
+		
+		private final String name;
+		
+		public NamedThreadFactory( String name )
+		{
+			this.name = name;
+		}
+		
+		public Thread newThread( Runnable r )
+		{
+			
+			return new Thread( r, name );
+		}
+	}
+}
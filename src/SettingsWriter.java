@@ -0,0 +1,246 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes the settings file in the background.
+ * 
+ * Saves are merged: a burst of changes (picking colors, saving preferences)
+ * leads to a single write of the latest settings once the burst has passed.
+ * The file is written to a temporary file in the same directory, synced to
+ * disk and then renamed over the settings file, so a crash mid-write never
+ * leaves a truncated file behind. If the file on disk already holds exactly
+ * the bytes that would be written, nothing is written at all.
+ * 
+ * The delay before a write can be timed by a {@link TimerWheel}; the write
+ * itself always happens on the writer's own thread.
+ */
+public class SettingsWriter
+{
+	public final static long DEFAULT_DELAY = 500;
+	
+	private final Path file;
+	private final long delay;
+	private final ScheduledExecutorService executor;
+	private final TimerWheel wheel;
+	private final AtomicReference<ClockSettings> pending = new AtomicReference<ClockSettings>();
+	
+	private volatile long writes;
+	private volatile long skippedWrites;
+	
+	public SettingsWriter( Path file )
+	{
+		this( file, DEFAULT_DELAY, null );
+	}
+	
+	/**
+	 * Creates a writer whose delay before writing is timed by the given wheel.
+	 */
+	public SettingsWriter( Path file, TimerWheel wheel )
+	{
+		this( file, DEFAULT_DELAY, wheel );
+	}
+	
+	/**
+	 * @param file
+	 *            The settings file to keep up to date.
+	 * @param delay
+	 *            How long to wait for more changes before writing, in ms.
+	 * @param wheel
+	 *            The wheel to time the delay on, or null to use the writer's
+	 *            own thread.
+	 */
+	public SettingsWriter( Path file, long delay, TimerWheel wheel )
+	{
+		this.file = file;
+		this.delay = delay;
+		this.wheel = wheel;
+		this.executor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+		{
+			
+			public Thread newThread( Runnable r )
+			{
+				
+				Thread thread = new Thread( r, "clock-settings-writer" );
+				thread.setDaemon( true );
+				return thread;
+			}
+		} );
+	}
+	
+	/**
+	 * Queues the settings to be written. Returns straight away; if a write is
+	 * already queued it will write these settings instead.
+	 */
+	public void save( ClockSettings settings )
+	{
+		
+		if ( pending.getAndSet( settings ) != null )
+			return;
+		
+		if ( wheel == null )
+		{
+			executor.schedule( new WriteTask(), delay, TimeUnit.MILLISECONDS );
+			return;
+		}
+		
+		wheel.schedule( "settings-flush", new TimerWheel.Job()
+		{
+			
+			public long run( long deadline )
+			{
+				
+				// hand the write to the writer's thread; it blocks on the disk
+				executor.execute( new WriteTask() );
+				return TimerWheel.STOP;
+			}
+		}, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( delay ) );
+		
+		return;
+	}
+	
+	/**
+	 * Writes any queued settings now and waits for the write to finish, e.g.
+	 * before the program exits.
+	 */
+	public void flush()
+	{
+		
+		try
+		{
+			executor.submit( new WriteTask() ).get();
+		} catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		} catch ( ExecutionException e )
+		{
+			System.out.println( "Error: " + e.getMessage() );
+		}
+		
+		return;
+	}
+	
+	/**
+	 * @return The number of times the settings file was written.
+	 */
+	public long getWrites()
+	{
+		
+		return this.writes;
+	}
+	
+	/**
+	 * @return The number of writes skipped because the file already held the
+	 *         same content.
+	 */
+	public long getSkippedWrites()
+	{
+		
+		return this.skippedWrites;
+	}
+	
+	private void write( ClockSettings settings ) throws IOException
+	{
+		
+		// the same text PrintWriter.println used to produce
+		byte[] content = ( settings.toString() + System.lineSeparator() ).getBytes();
+		
+		if ( Files.isRegularFile( file ) && Arrays.equals( content, Files.readAllBytes( file ) ) )
+		{
+			skippedWrites++;
+			return;
+		}
+		
+		Path directory = file.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile( directory, file.getFileName().toString(), ".tmp" );
+		
+		try
+		{
+			FileChannel channel = FileChannel.open( temp, StandardOpenOption.WRITE );
+			try
+			{
+				ByteBuffer buffer = ByteBuffer.wrap( content );
+				while ( buffer.hasRemaining() )
+					channel.write( buffer );
+				channel.force( true );
+			} finally
+			{
+				channel.close();
+			}
+			
+			try
+			{
+				Files.move( temp, file, StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING );
+			} catch ( AtomicMoveNotSupportedException e )
+			{
+				Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING );
+			}
+		} finally
+		{
+			Files.deleteIfExists( temp );
+		}
+		
+		syncDirectory( directory );
+		writes++;
+		return;
+	}
+	
+	/**
+	 * Makes the rename itself durable. Not every platform can open a directory
+	 * for this, in which case the rename is left to the file system.
+	 */
+	private static void syncDirectory( Path directory )
+	{
+		
+		try
+		{
+			FileChannel channel = FileChannel.open( directory, StandardOpenOption.READ );
+			try
+			{
+				channel.force( true );
+			} finally
+			{
+				channel.close();
+			}
+		} catch ( IOException e )
+		{
+			// not supported here
+		}
+		
+		return;
+	}
+	
+	private class WriteTask implements Runnable
+	{
+		
+		public void run()
+		{
+			
+			ClockSettings settings = pending.getAndSet( null );
+			if ( settings == null )
+				return;
+			
+			try
+			{
+				write( settings );
+			} catch ( IOException e )
+			{
+				System.out.println( "Unable to save settings to the file path: " + file + "\n" );
+				System.out.println( e.getMessage() );
+			}
+		}
+	}
+}
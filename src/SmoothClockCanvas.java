@@ -0,0 +1,189 @@
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Shows the clock in the smooth display mode, drawn by its own thread with a
+ * {@link BufferStrategy} (active rendering) at a set frame rate, instead of
+ * waiting for Swing to repaint.
+ * 
+ * The frames are drawn by a {@link SmoothClockRenderer} and paced by a
+ * {@link FramePacer}. While paused (the window is minimized or hidden) the
+ * thread parks until it is resumed, and then starts again from the current
+ * time rather than catching up.
+ */
+public class SmoothClockCanvas extends Canvas implements Runnable
+{
+	private static final long serialVersionUID = 1L;
+	
+	private final SmoothClockRenderer renderer = new SmoothClockRenderer();
+	private final FramePacer pacer;
+	private final FrameHistogram renderTimes = new FrameHistogram();
+	
+	// guards the buffer strategy against the canvas being taken off screen
+	private final Object strategyLock = new Object();
+	private BufferStrategy strategy;
+	
+	private volatile Thread thread;
+	private volatile boolean running;
+	private volatile boolean paused;
+	private volatile CorrectedClock clock = new CorrectedClock();
+	
+	public SmoothClockCanvas( int frameRate )
+	{
+		pacer = new FramePacer( frameRate );
+		setIgnoreRepaint( true );
+	}
+	
+	/**
+	 * Starts the rendering thread.
+	 */
+	public void start()
+	{
+		
+		running = true;
+		thread = new Thread( this, "clock-render" );
+		thread.setDaemon( true );
+		thread.start();
+		return;
+	}
+	
+	public void stop()
+	{
+		
+		running = false;
+		LockSupport.unpark( thread );
+		return;
+	}
+	
+	/**
+	 * Stops drawing frames while nobody can see them, or starts again.
+	 */
+	public void setPaused( boolean paused )
+	{
+		
+		this.paused = paused;
+		LockSupport.unpark( thread );
+		return;
+	}
+	
+	/**
+	 * @param clock
+	 *            Where the time drawn in each frame is read from.
+	 */
+	public void setClock( CorrectedClock clock )
+	{
+		
+		this.clock = clock;
+	}
+	
+	public void setFrameRate( int frameRate )
+	{
+		
+		pacer.setFrameRate( frameRate );
+	}
+	
+	public void setColors( Color background, Color foreground )
+	{
+		
+		setBackground( background );
+		renderer.setColors( background, foreground );
+	}
+	
+	/**
+	 * @return The times between the starts of frames.
+	 */
+	public FrameHistogram getFrameIntervals()
+	{
+		
+		return pacer.getIntervals();
+	}
+	
+	/**
+	 * @return The times taken to draw and show each frame.
+	 */
+	public FrameHistogram getRenderTimes()
+	{
+		
+		return this.renderTimes;
+	}
+	
+	public void run()
+	{
+		
+		while ( running )
+		{
+			if ( paused )
+			{
+				LockSupport.park( this );
+				pacer.restart();
+				continue;
+			}
+			
+			if ( !pacer.awaitFrame() )
+				continue;
+			
+			long started = System.nanoTime();
+			renderFrame();
+			renderTimes.record( System.nanoTime() - started );
+		}
+		
+		return;
+	}
+	
+	@Override
+	public void removeNotify()
+	{
+		
+		synchronized ( strategyLock )
+		{
+			if ( strategy != null )
+				strategy.dispose();
+			strategy = null;
+		}
+		
+		super.removeNotify();
+	}
+	
+	private void renderFrame()
+	{
+		
+		synchronized ( strategyLock )
+		{
+			if ( !isDisplayable() || getWidth() <= 0 || getHeight() <= 0 )
+				return;
+			
+			if ( strategy == null )
+			{
+				createBufferStrategy( 2 );
+				strategy = getBufferStrategy();
+			}
+			
+			// the buffers can be lost (a display mode change, a locked screen)
+			do
+			{
+				do
+				{
+					Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+					try
+					{
+						renderer.render( g, getWidth(), getHeight(), clock.currentTimeMillis(),
+								getGraphicsConfiguration() );
+					} finally
+					{
+						g.dispose();
+					}
+				} while ( strategy.contentsRestored() );
+				
+				strategy.show();
+			} while ( strategy.contentsLost() );
+		}
+		
+		// hand the frame to the display now rather than when the pipeline fills
+		Toolkit.getDefaultToolkit().sync();
+		return;
+	}
+}
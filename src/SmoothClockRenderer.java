@@ -0,0 +1,266 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.TimeZone;
+
+/**
+ * Draws one frame of the smooth display mode: the time as "kk:mm:ss.SSS"
+ * above a bar sweeping through the minute, with the date line below.
+ * 
+ * Everything that stays the same from frame to frame (the background, the
+ * date line and the sweep's track) is drawn once into a cached image, and
+ * the characters of the time are pre-rendered glyph images, as in
+ * {@link ClockFace}. A frame is then one image copy, twelve glyph copies and
+ * one filled rectangle, worked out with integer math on the epoch millis, and
+ * allocates nothing. The cache is only rebuilt when the size, colors or day
+ * change.
+ */
+public class SmoothClockRenderer
+{
+	private final static long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	private final static long ZONE_CHECK_INTERVAL = 60 * 1000;
+	
+	private final static String TIME_SAMPLE = "00:00:00.000";
+	private final static int CELLS = 12;
+	private final static int COLON = 10;
+	private final static int POINT = 11;
+	
+	// share of the width the time may take up, and of the height
+	private final static float TIME_FILL = 0.9f;
+	private final static float TIME_HEIGHT = 0.5f;
+	private final static float DATE_FILL = 0.7f;
+	
+	private final Font baseFont = new Font( "Arial", Font.BOLD, 100 );
+	private final char[] time = TIME_SAMPLE.toCharArray();
+	private final DateTimeFormatter dateFormatter =
+			DateTimeFormatter.ofPattern( TickFormatter.DATE_PATTERN );
+	
+	private volatile Color background = Color.BLACK;
+	private volatile Color foreground = Color.WHITE;
+	private volatile boolean colorsChanged = true;
+	
+	// the cache, only touched by the rendering thread
+	private BufferedImage backdrop;
+	private final BufferedImage[] glyphs = new BufferedImage[POINT + 1];
+	private int width, height;
+	private int digitWidth, colonWidth, pointWidth;
+	private int timeX, timeY;
+	private int sweepX, sweepY, sweepWidth, sweepHeight;
+	private String zoneID = TimeZone.getDefault().getID();
+	private ZoneTimeSource source = new ZoneTimeSource( TimeZone.getDefault().toZoneId() );
+	private long nextZoneCheck = Long.MIN_VALUE;
+	private int rebuilds;
+	
+	/**
+	 * Safe to call from any thread; the next frame picks the colors up.
+	 */
+	public void setColors( Color background, Color foreground )
+	{
+		
+		this.background = background;
+		this.foreground = foreground;
+		colorsChanged = true;
+		return;
+	}
+	
+	/**
+	 * @return The number of times the cached images were built.
+	 */
+	public int getRebuilds()
+	{
+		
+		return this.rebuilds;
+	}
+	
+	/**
+	 * Draws the clock as it is at the given time.
+	 * 
+	 * @param config
+	 *            The configuration to make cached images for, or null.
+	 */
+	public void render( Graphics2D g, int frameWidth, int frameHeight, long epochMillis,
+			GraphicsConfiguration config )
+	{
+		
+		if ( epochMillis >= nextZoneCheck )
+		{
+			// TimeZone.getDefault() hands out a copy, so only look now and then
+			nextZoneCheck = epochMillis + ZONE_CHECK_INTERVAL;
+			TimeZone current = TimeZone.getDefault();
+			if ( !current.getID().equals( zoneID ) )
+			{
+				// a new source starts with no day, so the cache is rebuilt
+				zoneID = current.getID();
+				source = new ZoneTimeSource( current.toZoneId() );
+			}
+		}
+		
+		long local = epochMillis + source.getOffset( epochMillis );
+		boolean newDay = source.updateDay( epochMillis );
+		
+		if ( colorsChanged || newDay || frameWidth != width || frameHeight != height )
+		{
+			colorsChanged = false;
+			rebuild( frameWidth, frameHeight, epochMillis, config );
+		}
+		
+		g.drawImage( backdrop, 0, 0, null );
+		
+		int millisOfDay = (int) Math.floorMod( local, MILLIS_PER_DAY );
+		formatTime( millisOfDay );
+		
+		int x = timeX;
+		for ( int i = 0; i < CELLS; i++ )
+		{
+			char ch = time[i];
+			int index = ch == ':' ? COLON : ch == '.' ? POINT : ch - '0';
+			g.drawImage( glyphs[index], x, timeY, null );
+			x += index == COLON ? colonWidth : index == POINT ? pointWidth : digitWidth;
+		}
+		
+		// how far through the minute we are
+		int sweep = (int) ( (long) sweepWidth * ( millisOfDay % 60000 ) / 60000 );
+		g.setColor( foreground );
+		g.fillRect( sweepX, sweepY, sweep, sweepHeight );
+		return;
+	}
+	
+	private void formatTime( int millisOfDay )
+	{
+		
+		int hour = millisOfDay / 3600000;
+		int minute = millisOfDay / 60000 % 60;
+		int second = millisOfDay / 1000 % 60;
+		int millis = millisOfDay % 1000;
+		
+		// 'k' counts hours 1-24, as on the standard display
+		if ( hour == 0 )
+			hour = 24;
+		
+		time[0] = (char) ( '0' + hour / 10 );
+		time[1] = (char) ( '0' + hour % 10 );
+		time[3] = (char) ( '0' + minute / 10 );
+		time[4] = (char) ( '0' + minute % 10 );
+		time[6] = (char) ( '0' + second / 10 );
+		time[7] = (char) ( '0' + second % 10 );
+		time[9] = (char) ( '0' + millis / 100 );
+		time[10] = (char) ( '0' + millis / 10 % 10 );
+		time[11] = (char) ( '0' + millis % 10 );
+		return;
+	}
+	
+	/**
+	 * Lays the frame out for its size and draws the parts that do not change
+	 * from frame to frame.
+	 */
+	private void rebuild( int frameWidth, int frameHeight, long epochMillis,
+			GraphicsConfiguration config )
+	{
+		
+		width = Math.max( 1, frameWidth );
+		height = Math.max( 1, frameHeight );
+		rebuilds++;
+		
+		Color bg = background;
+		Color fg = foreground;
+		
+		backdrop = createImage( config, width, height );
+		Graphics2D g = backdrop.createGraphics();
+		g.setRenderingHint( RenderingHints.KEY_TEXT_ANTIALIASING,
+				RenderingHints.VALUE_TEXT_ANTIALIAS_ON );
+		
+		// size the time to the width, unless the height runs out first
+		FontMetrics reference = g.getFontMetrics( baseFont );
+		float timeSize = Math.min( 100f * width * TIME_FILL / reference.stringWidth( TIME_SAMPLE ),
+				100f * height * TIME_HEIGHT / reference.getHeight() );
+		Font timeFont = baseFont.deriveFont( Math.max( 8f, timeSize ) );
+		FontMetrics timeMetrics = g.getFontMetrics( timeFont );
+		
+		digitWidth = 0;
+		for ( char ch = '0'; ch <= '9'; ch++ )
+			digitWidth = Math.max( digitWidth, timeMetrics.charWidth( ch ) );
+		colonWidth = timeMetrics.charWidth( ':' );
+		pointWidth = timeMetrics.charWidth( '.' );
+		int cellHeight = Math.max( 1, timeMetrics.getHeight() );
+		
+		for ( int i = 0; i <= POINT; i++ )
+		{
+			char ch = i == COLON ? ':' : i == POINT ? '.' : (char) ( '0' + i );
+			int cellWidth = Math.max( 1,
+					i == COLON ? colonWidth : i == POINT ? pointWidth : digitWidth );
+			glyphs[i] = renderGlyph( config, ch, cellWidth, cellHeight, timeFont, timeMetrics, bg,
+					fg );
+		}
+		
+		String dateText = dateFormatter.format(
+				Instant.ofEpochMilli( epochMillis ).atZone( source.getZone() ) );
+		FontMetrics dateReference = g.getFontMetrics( baseFont.deriveFont( Font.PLAIN ) );
+		float dateSize = Math.min( 100f * width * DATE_FILL / dateReference.stringWidth( dateText ),
+				timeFont.getSize2D() / 3 );
+		Font dateFont = baseFont.deriveFont( Font.PLAIN, Math.max( 8f, dateSize ) );
+		FontMetrics dateMetrics = g.getFontMetrics( dateFont );
+		
+		// the time, the sweep and the date, centered as one block
+		int lineWidth = 8 * digitWidth + 2 * colonWidth + pointWidth;
+		sweepHeight = Math.max( 2, cellHeight / 20 );
+		int gap = sweepHeight * 2;
+		int blockHeight = cellHeight + gap + sweepHeight + gap + dateMetrics.getHeight();
+		
+		timeX = ( width - lineWidth ) / 2;
+		timeY = ( height - blockHeight ) / 2;
+		sweepX = timeX;
+		sweepY = timeY + cellHeight + gap;
+		sweepWidth = lineWidth;
+		int dateY = sweepY + sweepHeight + gap;
+		
+		g.setColor( bg );
+		g.fillRect( 0, 0, width, height );
+		
+		// the track the sweep runs along, halfway between the two colors
+		g.setColor( new Color( ( bg.getRed() + fg.getRed() ) / 2,
+				( bg.getGreen() + fg.getGreen() ) / 2, ( bg.getBlue() + fg.getBlue() ) / 2 ) );
+		g.fillRect( sweepX, sweepY + sweepHeight / 3, sweepWidth, Math.max( 1, sweepHeight / 3 ) );
+		
+		g.setColor( fg );
+		g.setFont( dateFont );
+		g.drawString( dateText, ( width - dateMetrics.stringWidth( dateText ) ) / 2,
+				dateY + dateMetrics.getAscent() );
+		g.dispose();
+		
+		return;
+	}
+	
+	private static BufferedImage renderGlyph( GraphicsConfiguration config, char ch, int cellWidth,
+			int cellHeight, Font font, FontMetrics metrics, Color bg, Color fg )
+	{
+		
+		BufferedImage image = createImage( config, cellWidth, cellHeight );
+		Graphics2D g = image.createGraphics();
+		g.setColor( bg );
+		g.fillRect( 0, 0, cellWidth, cellHeight );
+		g.setRenderingHint( RenderingHints.KEY_TEXT_ANTIALIASING,
+				RenderingHints.VALUE_TEXT_ANTIALIAS_ON );
+		g.setFont( font );
+		g.setColor( fg );
+		
+		// center each character in its cell so proportional fonts line up
+		g.drawString( String.valueOf( ch ), ( cellWidth - metrics.charWidth( ch ) ) / 2,
+				metrics.getAscent() );
+		g.dispose();
+		
+		return image;
+	}
+	
+	private static BufferedImage createImage( GraphicsConfiguration config, int width, int height )
+	{
+		
+		return config != null ? config.createCompatibleImage( width, height )
+				: new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+	}
+}
@@ -0,0 +1,380 @@
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Asks a time server how far off the computer's clock is, with SNTP (RFC
+ * 4330) over UDP, and steers a {@link CorrectedClock} towards its answer.
+ *
+ * Each answer gives an offset and the round trip it was measured over; the
+ * offset can be wrong by up to half of the round trip, and more when the way
+ * there and back are not equally slow. The client keeps the last
+ * {@link #FILTER_SIZE} answers and goes by the one with the shortest round
+ * trip, the least disturbed by queueing on the way (the NTP clock filter).
+ * That offset is then smoothed into the one handed to the clock, which slews
+ * to it rather than jumping.
+ *
+ * Queries run on a background thread, so a slow or unreachable server can
+ * never hold up the displayed time. When the server changes, a short burst of
+ * queries fills the filter straight away.
+ */
+public class SntpClient
+{
+	public final static int DEFAULT_PORT = 123;
+	public final static int DEFAULT_TIMEOUT = 2000;
+	
+	/**
+	 * How many answers the shortest round trip is picked from.
+	 */
+	public final static int FILTER_SIZE = 8;
+	
+	// queries sent, a second apart, when starting on a server
+	private final static int BURST = 4;
+	private final static long BURST_SPACING = 1000;
+	
+	// how much of each filtered offset goes into the smoothed one
+	private final static double SMOOTHING = 0.25;
+	
+	private final static int PACKET_SIZE = 48;
+	
+	// seconds from 1900, where NTP time starts, to 1970
+	private final static long NTP_EPOCH_OFFSET = 2208988800L;
+	
+	/**
+	 * One answer from a time server.
+	 */
+	public static class Sample
+	{
+		/**
+		 * Epoch nanos minus {@link System#nanoTime()}, by the server.
+		 */
+		public final long offset;
+		
+		/**
+		 * The round trip, less the time the server held the query.
+		 */
+		public final long delay;
+		
+		public final int stratum;
+		
+		public Sample( long offset, long delay, int stratum )
+		{
+			this.offset = offset;
+			this.delay = delay;
+			this.stratum = stratum;
+		}
+		
+		@Override
+		public String toString()
+		{
+			
+			return "offset " + offset + "ns, delay " + delay + "ns, stratum " + stratum;
+		}
+	}
+	
+	private final CorrectedClock clock;
+	private final Executor executor;
+	private final AtomicBoolean inFlight = new AtomicBoolean();
+	
+	private volatile int timeout = DEFAULT_TIMEOUT;
+	private volatile ClockMetrics metrics;
+	
+	// only touched by the sync task
+	private String filteredServer;
+	private final Sample[] samples = new Sample[FILTER_SIZE];
+	private int sampleCount;
+	private int nextSample;
+	private boolean smoothed;
+	
+	private volatile long offset;
+	private volatile Sample selected;
+	
+	/**
+	 * Creates a client with its own background thread.
+	 */
+	public SntpClient( CorrectedClock clock )
+	{
+		this( clock, newDaemonExecutor() );
+	}
+	
+	/**
+	 * Creates a client that runs its queries on the given executor.
+	 */
+	public SntpClient( CorrectedClock clock, Executor executor )
+	{
+		this.clock = clock;
+		this.executor = executor;
+	}
+	
+	public void setTimeout( int timeout )
+	{
+		
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * @param metrics
+	 *            Where to record syncs and failures, or null.
+	 */
+	public void setMetrics( ClockMetrics metrics )
+	{
+		
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return The smoothed offset handed to the clock, in epoch nanos minus
+	 *         {@link System#nanoTime()}.
+	 */
+	public long getOffset()
+	{
+		
+		return this.offset;
+	}
+	
+	/**
+	 * @return The answer the offset was last taken from, or null.
+	 */
+	public Sample getSelected()
+	{
+		
+		return this.selected;
+	}
+	
+	/**
+	 * Starts asking the server in the background. Returns straight away; if a
+	 * sync is already in flight the request is dropped rather than queued.
+	 *
+	 * @param server
+	 *            host or host:port
+	 * @return false if the request was dropped.
+	 */
+	public boolean requestSync( String server )
+	{
+		
+		if ( !inFlight.compareAndSet( false, true ) )
+			return false;
+		
+		executor.execute( new SyncTask( server ) );
+		return true;
+	}
+	
+	/**
+	 * Asks a time server once, on the calling thread.
+	 *
+	 * @throws IOException
+	 *             If there is no answer within the timeout, or the answer is
+	 *             not one to set a clock by.
+	 */
+	public Sample query( InetSocketAddress address ) throws IOException
+	{
+		
+		byte[] buffer = new byte[PACKET_SIZE];
+		DatagramSocket socket = new DatagramSocket();
+		try
+		{
+			socket.setSoTimeout( timeout );
+			
+			// the send time goes out as the transmit timestamp, and must come
+			// back as the originate one, so stray answers are told apart
+			long sent = System.nanoTime();
+			buffer[0] = 0x23; // no leap warning, version 4, client
+			writeLong( buffer, 40, sent );
+			socket.send( new DatagramPacket( buffer, PACKET_SIZE, address ) );
+			
+			byte[] answer = new byte[PACKET_SIZE];
+			DatagramPacket packet = new DatagramPacket( answer, PACKET_SIZE );
+			long received;
+			do
+			{
+				socket.receive( packet );
+				received = System.nanoTime();
+			} while ( packet.getLength() < PACKET_SIZE || readLong( answer, 24 ) != sent );
+			
+			int leap = ( answer[0] >> 6 ) & 0x3;
+			int mode = answer[0] & 0x7;
+			int stratum = answer[1] & 0xff;
+			if ( mode != 4 )
+				throw new IOException( "Not a server answer (mode " + mode + ")" );
+			if ( leap == 3 || stratum == 0 || stratum > 15 )
+				throw new IOException( "Server is not synchronized (stratum " + stratum + ")" );
+			
+			// the server's receive and transmit times, as epoch nanos
+			long serverReceived = toEpochNanos( readLong( answer, 32 ) );
+			long serverSent = toEpochNanos( readLong( answer, 40 ) );
+			
+			long offset = ( ( serverReceived - sent ) + ( serverSent - received ) ) / 2;
+			long delay = Math.max( 0, ( received - sent ) - ( serverSent - serverReceived ) );
+			return new Sample( offset, delay, stratum );
+		} finally
+		{
+			socket.close();
+		}
+	}
+	
+	/**
+	 * Adds an answer to the filter.
+	 *
+	 * @return The answer with the shortest round trip of the last few.
+	 */
+	private Sample filter( Sample sample )
+	{
+		
+		samples[nextSample] = sample;
+		nextSample = ( nextSample + 1 ) % FILTER_SIZE;
+		sampleCount = Math.min( sampleCount + 1, FILTER_SIZE );
+		
+		Sample best = sample;
+		for ( int i = 0; i < sampleCount; i++ )
+		{
+			if ( samples[i].delay < best.delay )
+				best = samples[i];
+		}
+		return best;
+	}
+	
+	private void resetFilter( String server )
+	{
+		
+		filteredServer = server;
+		sampleCount = 0;
+		nextSample = 0;
+		smoothed = false;
+		return;
+	}
+	
+	private void sync( String server ) throws IOException, InterruptedException
+	{
+		
+		InetSocketAddress address = parseAddress( server );
+		
+		int queries = 1;
+		if ( !server.equals( filteredServer ) )
+		{
+			resetFilter( server );
+			queries = BURST;
+		}
+		
+		for ( int i = 0; i < queries; i++ )
+		{
+			if ( i > 0 )
+				Thread.sleep( BURST_SPACING );
+			
+			Sample best = filter( query( address ) );
+			selected = best;
+			
+			// the smoothed offset follows the best answer, a step at a time
+			offset = smoothed ? offset + (long) ( ( best.offset - offset ) * SMOOTHING )
+					: best.offset;
+			smoothed = true;
+			clock.setTarget( offset );
+			
+			ClockMetrics recorder = metrics;
+			if ( recorder != null )
+				recorder.timeSynced( offset - CorrectedClock.systemOffsetNanos(), best.delay );
+		}
+		
+		return;
+	}
+	
+	/**
+	 * @param server
+	 *            host or host:port, as checked by
+	 *            {@link ClockSettings.Builder#setTimeServer(String)}
+	 */
+	static InetSocketAddress parseAddress( String server )
+	{
+		
+		int colon = server.indexOf( ':' );
+		if ( colon < 0 )
+			return new InetSocketAddress( server, DEFAULT_PORT );
+		return new InetSocketAddress( server.substring( 0, colon ),
+				Integer.parseInt( server.substring( colon + 1 ) ) );
+	}
+	
+	/**
+	 * Turns an NTP timestamp (seconds since 1900 and a binary fraction) into
+	 * epoch nanos. Seconds without the top bit set are taken to be in the era
+	 * that starts in 2036.
+	 */
+	private static long toEpochNanos( long timestamp )
+	{
+		
+		long seconds = timestamp >>> 32;
+		long fraction = timestamp & 0xffffffffL;
+		if ( ( seconds & 0x80000000L ) == 0 )
+			seconds += 1L << 32;
+		
+		return ( seconds - NTP_EPOCH_OFFSET ) * 1000000000L + ( ( fraction * 1000000000L ) >>> 32 );
+	}
+	
+	private static void writeLong( byte[] buffer, int at, long value )
+	{
+		
+		for ( int i = 7; i >= 0; i-- )
+		{
+			buffer[at + i] = (byte) value;
+			value >>>= 8;
+		}
+		return;
+	}
+	
+	private static long readLong( byte[] buffer, int at )
+	{
+		
+		long value = 0;
+		for ( int i = 0; i < 8; i++ )
+			value = ( value << 8 ) | ( buffer[at + i] & 0xff );
+		return value;
+	}
+	
+	private static ExecutorService newDaemonExecutor()
+	{
+		
+		return Executors.newSingleThreadExecutor( new ThreadFactory()
+		{
+			
+			public Thread newThread( Runnable r )
+			{
+				
+				Thread thread = new Thread( r, "clock-time-sync" );
+				thread.setDaemon( true );
+				return thread;
+			}
+		} );
+	}
+	
+	private class SyncTask implements Runnable
+	{
+		
+		private final String server;
+		
+		public SyncTask( String server )
+		{
+			this.server = server;
+		}
+		
+		public void run()
+		{
+			
+			try
+			{
+				sync( server );
+			} catch ( Exception e )
+			{
+				ClockMetrics recorder = metrics;
+				if ( recorder != null )
+					recorder.timeSyncFailed( e );
+			} finally
+			{
+				inFlight.set( false );
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the phases of the clock's start and prints a breakdown once the first
+ * tick is on screen.
+ * 
+ * Only active when the clock is started with -Dclock.startup.report=true;
+ * otherwise every call returns straight away.
+ */
+public class StartupTimer
+{
+	public final static String PROPERTY = "clock.startup.report";
+	
+	private final static boolean ENABLED = Boolean.getBoolean( PROPERTY );
+	
+	private final static List<String> phases = new ArrayList<String>();
+	private final static List<Long> times = new ArrayList<Long>();
+	
+	private static long jvmStartMillis = -1;
+	private static boolean reported;
+	
+	/**
+	 * Marks the end of a phase.
+	 * 
+	 * @param phase
+	 *            What was done since the previous mark.
+	 */
+	public static void mark( String phase )
+	{
+		
+		if ( !ENABLED )
+			return;
+		
+		long now = System.nanoTime();
+		synchronized ( phases )
+		{
+			// time from the launch of the JVM to the first mark
+			if ( phases.isEmpty() )
+				jvmStartMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+			
+			phases.add( phase );
+			times.add( now );
+		}
+		
+		return;
+	}
+	
+	/**
+	 * Prints the breakdown, the first time it is called.
+	 */
+	public static void report()
+	{
+		
+		if ( !ENABLED )
+			return;
+		
+		synchronized ( phases )
+		{
+			if ( reported || phases.isEmpty() )
+				return;
+			reported = true;
+			
+			System.out.println( "Startup times (ms):" );
+			System.out.println( String.format( "  %-28s %8d", "JVM start to main", jvmStartMillis ) );
+			
+			long start = times.get( 0 );
+			long previous = start;
+			for ( int i = 1; i < phases.size(); i++ )
+			{
+				long time = times.get( i );
+				System.out.println( String.format( "  %-28s %8.1f", phases.get( i ),
+						( time - previous ) / 1e6 ) );
+				previous = time;
+			}
+			
+			System.out.println( String.format( "  %-28s %8.1f", "total since main",
+					( previous - start ) / 1e6 ) );
+		}
+		
+		return;
+	}
+}
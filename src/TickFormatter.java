@@ -0,0 +1,147 @@
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.TimeZone;
+
+/**
+ * Formats the clock's time and date lines for each tick without creating
+ * garbage on the common path.
+ *
+ * The time is written as "kk:mm:ss" (hours 1-24, as {@link SimpleDateFormat}
+ * does for 'k') into a reused char buffer using integer math on the epoch
+ * millis. The zone's offset and the bounds of the local day come from a
+ * {@link ZoneTimeSource}, which only looks at the zone's rules when an offset
+ * change is passed; the date line ("EEEE, MMM d, yyyy") is only rebuilt when
+ * the local day changes.
+ */
+public class TickFormatter
+{
+	public final static String TIME_PATTERN = "kk:mm:ss";
+	public final static String DATE_PATTERN = "EEEE, MMM d, yyyy";
+	
+	private final static long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	private final static long ZONE_CHECK_INTERVAL = 60 * 1000;
+	
+	private final char[] time = { '0', '0', ':', '0', '0', ':', '0', '0' };
+	private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern( DATE_PATTERN );
+	private final boolean followDefaultZone;
+	
+	private ZoneTimeSource source;
+	private String defaultZoneID;
+	private long nextZoneCheck = Long.MIN_VALUE;
+	private String dateText = "";
+	
+	/**
+	 * Creates a formatter that follows the system default time zone, picking
+	 * up changes to it within a minute.
+	 */
+	public TickFormatter()
+	{
+		this( ZoneId.systemDefault(), true );
+	}
+	
+	/**
+	 * Creates a formatter fixed to the given time zone.
+	 */
+	public TickFormatter( ZoneId zone )
+	{
+		this( zone, false );
+	}
+	
+	private TickFormatter( ZoneId zone, boolean followDefaultZone )
+	{
+		this.followDefaultZone = followDefaultZone;
+		this.defaultZoneID = TimeZone.getDefault().getID();
+		setZone( zone );
+	}
+	
+	public void setZone( ZoneId zone )
+	{
+		
+		// a new source starts with no day, so the date line is rebuilt
+		source = new ZoneTimeSource( zone );
+		return;
+	}
+	
+	public ZoneId getZone()
+	{
+		
+		return source.getZone();
+	}
+	
+	/**
+	 * Formats the given instant.
+	 *
+	 * @param epochMillis
+	 *            The instant to format.
+	 * @return true if the date line changed since the last call.
+	 */
+	public boolean format( long epochMillis )
+	{
+		
+		if ( followDefaultZone && epochMillis >= nextZoneCheck )
+		{
+			// TimeZone.getDefault() hands out a copy, so only look now and then
+			nextZoneCheck = epochMillis + ZONE_CHECK_INTERVAL;
+			TimeZone current = TimeZone.getDefault();
+			if ( !current.getID().equals( defaultZoneID ) )
+			{
+				defaultZoneID = current.getID();
+				setZone( current.toZoneId() );
+			}
+		}
+		
+		long local = epochMillis + source.getOffset( epochMillis );
+		int secondOfDay = (int) ( Math.floorMod( local, MILLIS_PER_DAY ) / 1000 );
+		
+		int hour = secondOfDay / 3600;
+		int minute = secondOfDay / 60 % 60;
+		int second = secondOfDay % 60;
+		
+		// 'k' counts hours 1-24, so midnight is shown as 24
+		if ( hour == 0 )
+			hour = 24;
+		
+		time[0] = (char) ( '0' + hour / 10 );
+		time[1] = (char) ( '0' + hour % 10 );
+		time[3] = (char) ( '0' + minute / 10 );
+		time[4] = (char) ( '0' + minute % 10 );
+		time[6] = (char) ( '0' + second / 10 );
+		time[7] = (char) ( '0' + second % 10 );
+		
+		if ( !source.updateDay( epochMillis ) )
+			return false;
+		
+		// from the same rules as the offset; TimeZone's can differ after 2037
+		dateText = dateFormatter.format(
+				Instant.ofEpochMilli( epochMillis ).atZone( source.getZone() ) );
+		return true;
+	}
+	
+	/**
+	 * @return The buffer holding the last formatted time. It is overwritten by
+	 *         every call to {@link #format(long)}.
+	 */
+	public char[] getTimeChars()
+	{
+		
+		return this.time;
+	}
+	
+	/**
+	 * @return The last formatted time as a new string, for components that
+	 *         only accept text.
+	 */
+	public String getTimeText()
+	{
+		
+		return new String( time );
+	}
+	
+	public String getDateText()
+	{
+		
+		return this.dateText;
+	}
+}
@@ -0,0 +1,134 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the clock display by waking exactly once per displayed second, right
+ * after the wall-clock second changes, instead of polling at a fixed sleep
+ * interval.
+ *
+ * It runs as a job on a {@link TimerWheel}. The deadline for each wakeup is
+ * computed from the wall clock but handed to the wheel on the monotonic clock
+ * ({@link System#nanoTime()}), and the next boundary is recomputed from a
+ * fresh wall-clock reading after every wakeup, so oversleeping on one tick
+ * never accumulates into drift on the next.
+ *
+ * The wall clock is read from a {@link CorrectedClock}, so while it slews
+ * towards a time server the boundaries move with it.
+ */
+public class TickScheduler implements TimerWheel.Job
+{
+	/**
+	 * Receives one call per tick, on the timer wheel's thread.
+	 */
+	public interface TickListener
+	{
+		/**
+		 * @param epochMillis
+		 *            The wall-clock time the tick was taken at.
+		 * @param latenessMillis
+		 *            How far after the second boundary the wakeup landed.
+		 */
+		void tick( long epochMillis, long latenessMillis );
+	}
+	
+	private final TickListener listener;
+	private volatile CorrectedClock clock = new CorrectedClock();
+	
+	private volatile long periodMillis = 1000;
+	private volatile TimerWheel.ScheduledJob scheduled;
+	
+	// the wall-clock boundary being waited for
+	private volatile long boundary;
+	private long lastTickSecond = Long.MIN_VALUE;
+	
+	public TickScheduler( TickListener listener )
+	{
+		this.listener = listener;
+	}
+	
+	/**
+	 * Sets how often the display should change. Nothing finer than a second is
+	 * visible on the clock, so the period is rounded down to whole seconds
+	 * (and never below one).
+	 *
+	 * @param refreshInterval
+	 *            The requested refresh interval in milliseconds.
+	 */
+	public void setPeriod( long refreshInterval )
+	{
+		
+		this.periodMillis = Math.max( 1, refreshInterval / 1000 ) * 1000;
+	}
+	
+	/**
+	 * @param clock
+	 *            Where the wall-clock time is read from.
+	 */
+	public void setClock( CorrectedClock clock )
+	{
+		
+		this.clock = clock;
+	}
+	
+	public long getPeriod()
+	{
+		
+		return this.periodMillis;
+	}
+	
+	/**
+	 * Starts ticking on the given wheel, or starts again after {@link #stop()}
+	 * from the next boundary, without making up the ticks in between.
+	 */
+	public void start( TimerWheel wheel )
+	{
+		
+		scheduled = wheel.schedule( "tick", this, nextDeadline() );
+		return;
+	}
+	
+	public void stop()
+	{
+		
+		TimerWheel.ScheduledJob job = scheduled;
+		if ( job != null )
+			job.cancel();
+		return;
+	}
+	
+	public long run( long deadline )
+	{
+		
+		/*
+		 * The wall clock may have been stepped while we slept. If we are still
+		 * short of the boundary, wait out the remainder; if the second we land
+		 * in has already been shown, there is nothing new to display.
+		 */
+		long wall = clock.currentTimeMillis();
+		if ( wall < boundary )
+			return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( boundary - wall );
+		
+		long second = Math.floorDiv( wall, 1000 );
+		if ( second != lastTickSecond )
+		{
+			lastTickSecond = second;
+			
+			listener.tick( wall, wall - boundary );
+		}
+		
+		return nextDeadline();
+	}
+	
+	/**
+	 * Works out the monotonic deadline of the next wall-clock boundary.
+	 */
+	private long nextDeadline()
+	{
+		
+		long period = periodMillis;
+		long wall = clock.currentTimeMillis();
+		long mono = System.nanoTime();
+		
+		boundary = ( Math.floorDiv( wall, period ) + 1 ) * period;
+		return mono + TimeUnit.MILLISECONDS.toNanos( boundary - wall );
+	}
+}
@@ -0,0 +1,212 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the clock's tick to the windows that can be seen.
+ * 
+ * A window that is minimized or hidden skips its updates, and catches up in
+ * full, date line included, when it comes back. While no window can be seen
+ * the tick is stopped altogether, so the clock does not wake at all; when one
+ * comes back the tick starts again from the next second boundary, without
+ * making up the ticks it missed, and the windows are brought up to date
+ * straight away.
+ * 
+ * Apart from {@link Window#isOnScreen()}, everything here is called on one
+ * thread: the event dispatch thread in the clock.
+ */
+public class TickVisibility
+{
+	/**
+	 * What a window shows the time on.
+	 */
+	public interface Display
+	{
+		/**
+		 * Shows the time the clock last formatted.
+		 * 
+		 * @param dateLineChanged
+		 *            true if the line under the time has to be shown again too.
+		 */
+		void show( boolean dateLineChanged );
+	}
+	
+	private final Runnable refresh;
+	private final List<Window> windows = new ArrayList<Window>();
+	
+	private TickScheduler scheduler;
+	private TimerWheel wheel;
+	private boolean suspended;
+	
+	/**
+	 * @param refresh
+	 *            Shows the current time on every window, the way a tick does.
+	 *            It is run when a window comes back.
+	 */
+	public TickVisibility( Runnable refresh )
+	{
+		this.refresh = refresh;
+	}
+	
+	/**
+	 * Takes charge of a tick that has been started: from now on it is stopped
+	 * while no window can be seen, and started again on the wheel when one
+	 * can.
+	 */
+	public void attach( TickScheduler scheduler, TimerWheel wheel )
+	{
+		
+		this.scheduler = scheduler;
+		this.wheel = wheel;
+		update();
+		return;
+	}
+	
+	/**
+	 * Adds a window, off screen until it says otherwise.
+	 */
+	public Window add( Display display )
+	{
+		
+		Window window = new Window( display );
+		windows.add( window );
+		return window;
+	}
+	
+	public void remove( Window window )
+	{
+		
+		windows.remove( window );
+		update();
+		return;
+	}
+	
+	/**
+	 * @return true while the tick is stopped because no window can be seen.
+	 */
+	public boolean isSuspended()
+	{
+		
+		return this.suspended;
+	}
+	
+	/**
+	 * Stops the tick if no window can be seen, or starts it again and brings
+	 * the windows up to date if one can.
+	 */
+	private void update()
+	{
+		
+		if ( scheduler == null )
+			return;
+		
+		boolean anyOnScreen = false;
+		for ( Window window : windows )
+			anyOnScreen |= window.isOnScreen();
+		
+		if ( !anyOnScreen )
+		{
+			if ( !suspended )
+			{
+				suspended = true;
+				scheduler.stop();
+			}
+			return;
+		}
+		
+		if ( suspended )
+		{
+			suspended = false;
+			scheduler.start( wheel );
+		}
+		
+		refresh.run();
+		return;
+	}
+	
+	/**
+	 * One window's share of the tick.
+	 */
+	public class Window
+	{
+		
+		private final Display display;
+		
+		// false while the window is minimized or hidden
+		private volatile boolean onScreen;
+		
+		// set when the window may have missed a tick, so it catches up in full
+		private boolean stale;
+		private boolean skipping;
+		
+		private Window( Display display )
+		{
+			this.display = display;
+		}
+		
+		/**
+		 * @return false while the window is minimized or hidden, when ticks
+		 *         are not shown on it.
+		 */
+		public boolean isOnScreen()
+		{
+			
+			return this.onScreen;
+		}
+		
+		/**
+		 * Follows the window being minimized, restored, hidden and shown, and
+		 * stops or starts the tick when that changes whether any window can be
+		 * seen.
+		 */
+		public void setOnScreen( boolean visible )
+		{
+			
+			if ( visible == onScreen )
+				return;
+			
+			onScreen = visible;
+			
+			// the tick may stop before it would find this window hidden
+			if ( !visible )
+				stale = true;
+			update();
+			return;
+		}
+		
+		/**
+		 * Skips ticks on a window that can still be seen, because it draws the
+		 * time itself for now. It catches up in full when this is turned off.
+		 */
+		public void setSkipping( boolean skipping )
+		{
+			
+			this.skipping = skipping;
+		}
+		
+		/**
+		 * Shows a tick on the window, unless nobody would see it.
+		 * 
+		 * @param dateLineChanged
+		 *            true if the line under the time changed since the last
+		 *            tick.
+		 */
+		public void tick( boolean dateLineChanged )
+		{
+			
+			// nobody would see it; catch up in full once the window is back
+			if ( !onScreen || skipping )
+			{
+				stale = true;
+				return;
+			}
+			if ( stale )
+			{
+				stale = false;
+				dateLineChanged = true;
+			}
+			
+			display.show( dateLineChanged );
+			return;
+		}
+	}
+}
@@ -0,0 +1,406 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs all of the clock's periodic work on one daemon thread.
+ * 
+ * Jobs are kept in a hashed wheel of one millisecond slots, each in the slot
+ * of its deadline, so scheduling a job and finding the next one due cost the
+ * same however many jobs there are. Deadlines are on the monotonic clock
+ * ({@link System#nanoTime()}), so wall-clock steps do not move them, and each
+ * job works out its next deadline from the one it was due at, so oversleeping
+ * never turns into drift. The thread sleeps until the exact deadline of the
+ * next job rather than waking for every slot.
+ * 
+ * For every job the wheel records how late it was started. Jobs run one after
+ * another on the wheel's thread, so they must not block: a job that does I/O
+ * hands it on to another thread.
+ */
+public class TimerWheel implements Runnable
+{
+	/**
+	 * Returned by a job that should not run again.
+	 */
+	public final static long STOP = Long.MIN_VALUE;
+	
+	private final static long SLOT_NANOS = TimeUnit.MILLISECONDS.toNanos( 1 );
+	private final static int SLOTS = 1024;
+	private final static int MASK = SLOTS - 1;
+	
+	/**
+	 * Work run by the wheel.
+	 */
+	public interface Job
+	{
+		/**
+		 * @param deadline
+		 *            The monotonic time, in ns, the job was due at.
+		 * @return The monotonic time it is due at next, or {@link #STOP}.
+		 */
+		long run( long deadline );
+	}
+	
+	private final ScheduledJob[] slots = new ScheduledJob[SLOTS];
+	private final ConcurrentLinkedQueue<ScheduledJob> added =
+			new ConcurrentLinkedQueue<ScheduledJob>();
+	private final Set<ScheduledJob> jobs =
+			Collections.newSetFromMap( new ConcurrentHashMap<ScheduledJob, Boolean>() );
+	private final List<ScheduledJob> due = new ArrayList<ScheduledJob>();
+	private final long origin = System.nanoTime();
+	
+	private volatile Thread thread;
+	private volatile boolean running;
+	
+	// the last slot that has been run, only touched by the wheel's thread
+	private long currentTick;
+	
+	/**
+	 * Starts the wheel's daemon thread.
+	 */
+	public void start()
+	{
+		
+		running = true;
+		thread = new Thread( this, "clock-timer" );
+		thread.setDaemon( true );
+		thread.start();
+		return;
+	}
+	
+	public void stop()
+	{
+		
+		running = false;
+		LockSupport.unpark( thread );
+		return;
+	}
+	
+	/**
+	 * Adds a job. Safe to call from any thread, including from a job.
+	 * 
+	 * @param name
+	 *            What to call the job in the statistics.
+	 * @param deadline
+	 *            The monotonic time, in ns, of the first run.
+	 */
+	public ScheduledJob schedule( String name, Job job, long deadline )
+	{
+		
+		ScheduledJob scheduled = new ScheduledJob( name, job, deadline );
+		jobs.add( scheduled );
+		added.add( scheduled );
+		LockSupport.unpark( thread );
+		return scheduled;
+	}
+	
+	/**
+	 * Adds a task that runs every period, starting one period from now.
+	 * Missed runs are skipped rather than made up.
+	 */
+	public ScheduledJob schedule( String name, final long period, TimeUnit unit,
+			final Runnable task )
+	{
+		
+		final long periodNanos = unit.toNanos( period );
+		return schedule( name, new Job()
+		{
+			
+			public long run( long deadline )
+			{
+				
+				task.run();
+				return next( deadline, periodNanos );
+			}
+		}, System.nanoTime() + periodNanos );
+	}
+	
+	/**
+	 * @return Every job that has been scheduled and has not stopped or been
+	 *         cancelled.
+	 */
+	public List<ScheduledJob> getJobs()
+	{
+		
+		List<ScheduledJob> list = new ArrayList<ScheduledJob>( jobs.size() );
+		for ( ScheduledJob job : jobs )
+		{
+			// a cancelled job leaves the set once its slot comes round
+			if ( !job.cancelled )
+				list.add( job );
+		}
+		return list;
+	}
+	
+	/**
+	 * Works out the next deadline of a job that runs every period: one period
+	 * after the last deadline, or if that has already passed, the next one
+	 * still ahead on the same grid.
+	 */
+	public static long next( long deadline, long period )
+	{
+		
+		long next = deadline + period;
+		long behind = System.nanoTime() - next;
+		if ( behind >= 0 )
+			next += ( behind / period + 1 ) * period;
+		
+		return next;
+	}
+	
+	public void run()
+	{
+		
+		currentTick = tick( System.nanoTime() );
+		
+		while ( running )
+		{
+			addScheduled();
+			runDue( System.nanoTime() );
+			addScheduled();
+			
+			/*
+			 * Sleep until the deadline of the next job. Jobs further away than
+			 * one turn of the wheel are only looked at once per turn.
+			 */
+			long wake = nextDeadline();
+			long delay = wake - System.nanoTime();
+			if ( delay > 0 )
+				LockSupport.parkNanos( this, delay );
+		}
+		
+		return;
+	}
+	
+	private void addScheduled()
+	{
+		
+		ScheduledJob job;
+		while ( ( job = added.poll() ) != null )
+			insert( job );
+		
+		return;
+	}
+	
+	private void insert( ScheduledJob job )
+	{
+		
+		// a deadline in the past goes into the current slot, to run now
+		job.slotTick = Math.max( tick( job.deadline ), currentTick );
+		
+		int index = (int) ( job.slotTick & MASK );
+		job.next = slots[index];
+		slots[index] = job;
+		return;
+	}
+	
+	/**
+	 * Runs every job whose deadline has passed, in deadline order, in all the
+	 * slots from the last one run up to now.
+	 */
+	private void runDue( long now )
+	{
+		
+		long nowTick = tick( now );
+		long first = Math.max( currentTick, nowTick - MASK );
+		
+		for ( long tick = first; tick <= nowTick; tick++ )
+		{
+			int index = (int) ( tick & MASK );
+			ScheduledJob previous = null;
+			
+			for ( ScheduledJob job = slots[index]; job != null; job = job.next )
+			{
+				if ( job.cancelled || job.deadline - now <= 0 )
+				{
+					// unlink it; it is put back once it has run
+					if ( previous == null )
+						slots[index] = job.next;
+					else
+						previous.next = job.next;
+					
+					if ( job.cancelled )
+						jobs.remove( job );
+					else
+						due.add( job );
+				} else
+				{
+					previous = job;
+				}
+			}
+		}
+		
+		currentTick = nowTick;
+		
+		if ( due.size() > 1 )
+			Collections.sort( due, BY_DEADLINE );
+		
+		for ( int i = 0; i < due.size(); i++ )
+		{
+			ScheduledJob job = due.get( i );
+			long next = job.runOnce();
+			
+			if ( next == STOP || job.cancelled )
+			{
+				jobs.remove( job );
+			} else
+			{
+				job.deadline = next;
+				insert( job );
+			}
+		}
+		
+		due.clear();
+		return;
+	}
+	
+	/**
+	 * @return The earliest deadline within one turn of the wheel, or the end
+	 *         of the turn if there is none.
+	 */
+	private long nextDeadline()
+	{
+		
+		for ( long tick = currentTick; tick < currentTick + SLOTS; tick++ )
+		{
+			boolean found = false;
+			long earliest = 0;
+			
+			for ( ScheduledJob job = slots[(int) ( tick & MASK )]; job != null; job = job.next )
+			{
+				if ( job.slotTick == tick && ( !found || job.deadline - earliest < 0 ) )
+				{
+					earliest = job.deadline;
+					found = true;
+				}
+			}
+			
+			if ( found )
+				return earliest;
+		}
+		
+		return origin + ( currentTick + SLOTS ) * SLOT_NANOS;
+	}
+	
+	private long tick( long nanos )
+	{
+		
+		return ( nanos - origin ) / SLOT_NANOS;
+	}
+	
+	private final static Comparator<ScheduledJob> BY_DEADLINE = new Comparator<ScheduledJob>()
+	{
+		
+		public int compare( ScheduledJob a, ScheduledJob b )
+		{
+			
+			return Long.signum( a.deadline - b.deadline );
+		}
+	};
+	
+	/**
+	 * A job on the wheel, with its lateness statistics. The statistics are
+	 * written by the wheel's thread and can be read from any thread.
+	 */
+	public static class ScheduledJob
+	{
+		
+		private final String name;
+		private final Job job;
+		
+		private long deadline;
+		private long slotTick;
+		private ScheduledJob next;
+		private volatile boolean cancelled;
+		
+		private volatile long runs;
+		private volatile long lastLateness;
+		private volatile long maxLateness;
+		private volatile long totalLateness;
+		
+		private ScheduledJob( String name, Job job, long deadline )
+		{
+			this.name = name;
+			this.job = job;
+			this.deadline = deadline;
+		}
+		
+		/**
+		 * Stops the job. A run that has already started is finished.
+		 */
+		public void cancel()
+		{
+			
+			cancelled = true;
+		}
+		
+		public String getName()
+		{
+			
+			return this.name;
+		}
+		
+		public long getRuns()
+		{
+			
+			return this.runs;
+		}
+		
+		/**
+		 * @return How late the last run started, in ns.
+		 */
+		public long getLastLateness()
+		{
+			
+			return this.lastLateness;
+		}
+		
+		public long getMaxLateness()
+		{
+			
+			return this.maxLateness;
+		}
+		
+		public long getMeanLateness()
+		{
+			
+			long count = runs;
+			return count == 0 ? 0 : totalLateness / count;
+		}
+		
+		public String toString()
+		{
+			
+			return String.format( "%-16s runs %8d  late ms: last %7.3f  mean %7.3f  max %7.3f", name,
+					runs, lastLateness / 1e6, getMeanLateness() / 1e6, maxLateness / 1e6 );
+		}
+		
+		private long runOnce()
+		{
+			
+			long lateness = System.nanoTime() - deadline;
+			lastLateness = lateness;
+			if ( lateness > maxLateness )
+				maxLateness = lateness;
+			totalLateness += lateness;
+			runs++;
+			
+			try
+			{
+				return job.run( deadline );
+			} catch ( RuntimeException e )
+			{
+				// one failing run does not stop the others; it is tried again in a second
+				System.out.println( "Error in " + name + ": " + e );
+				e.printStackTrace();
+				return next( deadline, TimeUnit.SECONDS.toNanos( 1 ) );
+			}
+		}
+	}
+}
@@ -0,0 +1,229 @@
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.GridBagLayout;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.List;
+
+import javax.swing.BoxLayout;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+/**
+ * Shows a grid of clocks, one per time zone, all driven by one tick through a
+ * shared {@link ZoneTickEngine}. Several panels (one per screen) can show the
+ * same engine, which then formats each tick only once.
+ */
+public class WallboardPanel extends JPanel
+{
+	private static final long serialVersionUID = 1L;
+	
+	// share of a cell's width the lines may take up
+	private final static float FILL = 0.85f;
+	private final static String TIME_SAMPLE = "00:00:00";
+	
+	private final ZoneTickEngine engine;
+	private final int columns;
+	private final int rows;
+	
+	private final JPanel[] cells;
+	private final JLabel[] names;
+	private final ClockFace[] faces;
+	private final JLabel[] dates;
+	private final String[] shownDates;
+	
+	private final FontSizer sizer = new FontSizer( new Font( "Arial", Font.BOLD, 12 ) );
+	private final String dateSample = ClockResizer.widestDate();
+	private final Timer debounce;
+	
+	/**
+	 * @param zones
+	 *            The time zone IDs to show.
+	 * @param columns
+	 *            The number of columns, or 0 to pick one.
+	 */
+	public WallboardPanel( List<String> zones, int columns )
+	{
+		this( new ZoneTickEngine( zones ), columns );
+	}
+	
+	/**
+	 * @param engine
+	 *            The engine whose zones to show. It is ticked by the caller;
+	 *            see {@link #update()}.
+	 * @param columns
+	 *            The number of columns, or 0 to pick one.
+	 */
+	public WallboardPanel( ZoneTickEngine engine, int columns )
+	{
+		this.engine = engine;
+		
+		int count = engine.getZoneCount();
+		this.columns = columns > 0 ? columns : (int) Math.ceil( Math.sqrt( count ) );
+		this.rows = ( count + this.columns - 1 ) / this.columns;
+		
+		setLayout( new GridLayout( rows, this.columns ) );
+		
+		cells = new JPanel[count];
+		names = new JLabel[count];
+		faces = new ClockFace[count];
+		dates = new JLabel[count];
+		shownDates = new String[count];
+		
+		for ( int i = 0; i < count; i++ )
+		{
+			names[i] = new JLabel( displayName( engine.getZoneId( i ) ) );
+			faces[i] = new ClockFace();
+			dates[i] = new JLabel( " " );
+			
+			names[i].setAlignmentX( Component.CENTER_ALIGNMENT );
+			faces[i].setAlignmentX( Component.CENTER_ALIGNMENT );
+			dates[i].setAlignmentX( Component.CENTER_ALIGNMENT );
+			
+			JPanel lines = new JPanel();
+			lines.setOpaque( false );
+			lines.setLayout( new BoxLayout( lines, BoxLayout.Y_AXIS ) );
+			lines.add( names[i] );
+			lines.add( faces[i] );
+			lines.add( dates[i] );
+			
+			// center the lines in the cell
+			cells[i] = new JPanel( new GridBagLayout() );
+			cells[i].add( lines );
+			add( cells[i] );
+		}
+		
+		debounce = new Timer( ClockResizer.DEBOUNCE_DELAY, new ActionListener()
+		{
+			
+			public void actionPerformed( ActionEvent e )
+			{
+				
+				fitFonts();
+			}
+		} );
+		debounce.setRepeats( false );
+		
+		addComponentListener( new ComponentAdapter()
+		{
+			
+			public void componentResized( ComponentEvent evt )
+			{
+				
+				debounce.restart();
+			}
+		} );
+	}
+	
+	/**
+	 * Shows the given instant in every zone. Call on the event dispatch
+	 * thread; the time lines only repaint the digits that changed and the
+	 * date lines are only touched when their date changes.
+	 */
+	public void tick( long epochMillis )
+	{
+		
+		engine.tick( epochMillis );
+		update();
+		return;
+	}
+	
+	/**
+	 * Shows what the engine last formatted, for panels sharing an engine that
+	 * is ticked elsewhere. Call on the event dispatch thread, which the engine
+	 * must also be ticked on.
+	 */
+	public void update()
+	{
+		
+		for ( int i = 0; i < faces.length; i++ )
+		{
+			faces[i].setTime( engine.getTimeChars( i ) );
+			
+			String date = engine.getDateText( i );
+			if ( date != shownDates[i] )
+			{
+				shownDates[i] = date;
+				dates[i].setText( date );
+			}
+		}
+		
+		return;
+	}
+	
+	public ZoneTickEngine getEngine()
+	{
+		
+		return this.engine;
+	}
+	
+	public void setColors( Color background, Color foreground )
+	{
+		
+		setBackground( background );
+		for ( int i = 0; i < cells.length; i++ )
+		{
+			cells[i].setBackground( background );
+			faces[i].setBackground( background );
+			faces[i].setForeground( foreground );
+			names[i].setForeground( foreground );
+			dates[i].setForeground( foreground );
+		}
+		
+		return;
+	}
+	
+	/**
+	 * Sizes every cell's fonts to the cell size. All cells are the same size,
+	 * so they share the same fonts.
+	 */
+	private void fitFonts()
+	{
+		
+		if ( faces.length == 0 || getWidth() <= 0 || getHeight() <= 0 )
+			return;
+		
+		int width = (int) ( getWidth() / columns * FILL );
+		int height = (int) ( getHeight() / rows * FILL );
+		
+		int timeSize = sizer.fit( faces[0], TIME_SAMPLE, width );
+		int dateSize = sizer.fit( dates[0], dateSample, width );
+		
+		// the zone name and the date share a size
+		int needed = sizer.lineHeight( faces[0], timeSize ) +
+				2 * sizer.lineHeight( dates[0], dateSize );
+		if ( needed > height )
+		{
+			timeSize = timeSize * height / needed;
+			dateSize = dateSize * height / needed;
+		}
+		
+		Font timeFont = sizer.getFont( timeSize );
+		Font dateFont = sizer.getFont( dateSize );
+		if ( timeFont == faces[0].getFont() && dateFont == dates[0].getFont() )
+			return;
+		
+		for ( int i = 0; i < faces.length; i++ )
+		{
+			faces[i].setFont( timeFont );
+			names[i].setFont( dateFont );
+			dates[i].setFont( dateFont );
+		}
+		
+		return;
+	}
+	
+	/**
+	 * Turns "America/New_York" into "New York".
+	 */
+	private static String displayName( String id )
+	{
+		
+		return id.substring( id.lastIndexOf( '/' ) + 1 ).replace( '_', ' ' );
+	}
+}
@@ -0,0 +1,169 @@
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Formats the time and date of many time zones from one shared tick.
+ * 
+ * Zones are grouped by identical rules when the engine is built, so each
+ * group's offset is looked up once per tick, from a {@link ZoneTimeSource}
+ * that only goes back to the rules when the group's offset changes. Zones that have the same UTC
+ * offset at a given instant show exactly the same time and date, so the
+ * formatting itself is done once per distinct offset and shared: a board of
+ * hundreds of zones only ever formats a few dozen lines per tick.
+ */
+public class ZoneTickEngine
+{
+	private final String[] ids;
+	private final int[] zoneGroup;
+	private final ZoneTimeSource[] groups;
+	private final int[] groupSlot;
+	
+	// formatted lines, one slot per distinct offset seen so far
+	private int[] slotOffsets = new int[8];
+	private TickFormatter[] slotFormatters = new TickFormatter[8];
+	private long[] slotTick = new long[8];
+	private int slots;
+	
+	private long tick;
+	private int formatsLastTick;
+	
+	public ZoneTickEngine( List<String> zoneIds )
+	{
+		int count = zoneIds.size();
+		
+		ids = zoneIds.toArray( new String[count] );
+		zoneGroup = new int[count];
+		
+		/*
+		 * Group zones with the same rules; an ID listed twice (or an alias)
+		 * costs nothing extra per tick.
+		 */
+		ZoneTimeSource[] found = new ZoneTimeSource[count];
+		int groupCount = 0;
+		
+		for ( int i = 0; i < count; i++ )
+		{
+			ZoneId zone = ZoneId.of( ids[i] );
+			int group = 0;
+			while ( group < groupCount &&
+					!found[group].getZone().getRules().equals( zone.getRules() ) )
+				group++;
+			
+			if ( group == groupCount )
+				found[groupCount++] = new ZoneTimeSource( zone );
+			zoneGroup[i] = group;
+		}
+		
+		groups = new ZoneTimeSource[groupCount];
+		System.arraycopy( found, 0, groups, 0, groupCount );
+		groupSlot = new int[groupCount];
+	}
+	
+	/**
+	 * Formats every zone for the given instant.
+	 */
+	public void tick( long epochMillis )
+	{
+		
+		tick++;
+		formatsLastTick = 0;
+		
+		for ( int group = 0; group < groups.length; group++ )
+		{
+			int slot = slotFor( groups[group].getOffset( epochMillis ) );
+			
+			if ( slotTick[slot] != tick )
+			{
+				slotTick[slot] = tick;
+				slotFormatters[slot].format( epochMillis );
+				formatsLastTick++;
+			}
+			groupSlot[group] = slot;
+		}
+		
+		return;
+	}
+	
+	public int getZoneCount()
+	{
+		
+		return ids.length;
+	}
+	
+	public String getZoneId( int zone )
+	{
+		
+		return ids[zone];
+	}
+	
+	/**
+	 * @return The time of a zone as of the last tick, in "kk:mm:ss" form. The
+	 *         buffer is shared with every zone at the same offset.
+	 */
+	public char[] getTimeChars( int zone )
+	{
+		
+		return slotFormatters[groupSlot[zoneGroup[zone]]].getTimeChars();
+	}
+	
+	/**
+	 * @return The date line of a zone as of the last tick. The same string is
+	 *         handed out until that zone's date changes.
+	 */
+	public String getDateText( int zone )
+	{
+		
+		return slotFormatters[groupSlot[zoneGroup[zone]]].getDateText();
+	}
+	
+	/**
+	 * @return The number of distinct time zone rules being followed.
+	 */
+	public int getGroupCount()
+	{
+		
+		return groups.length;
+	}
+	
+	/**
+	 * @return How many lines were actually formatted by the last tick.
+	 */
+	public int getFormatsLastTick()
+	{
+		
+		return this.formatsLastTick;
+	}
+	
+	/**
+	 * Finds (or makes) the slot formatting a fixed UTC offset. There are only
+	 * a few dozen offsets in use in the world, so a linear scan is fine.
+	 */
+	private int slotFor( int offset )
+	{
+		
+		for ( int slot = 0; slot < slots; slot++ )
+		{
+			if ( slotOffsets[slot] == offset )
+				return slot;
+		}
+		
+		if ( slots == slotOffsets.length )
+		{
+			int size = slots * 2;
+			int[] offsets = new int[size];
+			TickFormatter[] formatters = new TickFormatter[size];
+			long[] ticks = new long[size];
+			System.arraycopy( slotOffsets, 0, offsets, 0, slots );
+			System.arraycopy( slotFormatters, 0, formatters, 0, slots );
+			System.arraycopy( slotTick, 0, ticks, 0, slots );
+			slotOffsets = offsets;
+			slotFormatters = formatters;
+			slotTick = ticks;
+		}
+		
+		slotOffsets[slots] = offset;
+		slotFormatters[slots] = new TickFormatter( ZoneOffset.ofTotalSeconds( offset / 1000 ) );
+		return slots++;
+	}
+}
@@ -0,0 +1,130 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * The UTC offset and local day of one time zone, looked up in its
+ * {@link ZoneRules} once and then kept until they run out.
+ *
+ * The offset is kept with the span of time it holds for, from the zone's
+ * last transition to its next one. The local day is kept with the span in
+ * which both it and the offset hold: up to the next local midnight, or the
+ * next transition if that comes first, since a transition can move the
+ * clock back across midnight. In between, getting the offset or telling
+ * whether the day has changed is a comparison of two longs; the rules are
+ * only consulted again when a tick crosses a transition.
+ *
+ * A source follows one zone. Not thread safe: each thread that ticks keeps
+ * its own.
+ */
+public class ZoneTimeSource
+{
+	private final static long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	
+	private final ZoneId zone;
+	private final ZoneRules rules;
+	
+	// the offset, in ms, in effect from offsetFrom until offsetUntil
+	private int offset;
+	private long offsetFrom = Long.MAX_VALUE;
+	private long offsetUntil = Long.MIN_VALUE;
+	
+	// the local day (since the epoch) last moved to, with the same offset
+	// from dayFrom until dayUntil
+	private long localDay = Long.MIN_VALUE;
+	private long dayFrom = Long.MAX_VALUE;
+	private long dayUntil = Long.MIN_VALUE;
+	
+	private int lookups;
+	
+	public ZoneTimeSource( ZoneId zone )
+	{
+		this.zone = zone;
+		this.rules = zone.getRules();
+	}
+	
+	public ZoneId getZone()
+	{
+		
+		return this.zone;
+	}
+	
+	/**
+	 * @return The offset from UTC at the given instant, in ms.
+	 */
+	public int getOffset( long epochMillis )
+	{
+		
+		if ( epochMillis < offsetFrom || epochMillis >= offsetUntil )
+			findOffset( epochMillis );
+		return offset;
+	}
+	
+	/**
+	 * Moves to the local day holding the given instant.
+	 *
+	 * @return true if that is not the day the last call was in.
+	 */
+	public boolean updateDay( long epochMillis )
+	{
+		
+		if ( epochMillis >= dayFrom && epochMillis < dayUntil )
+			return false;
+		
+		int offset = getOffset( epochMillis );
+		long day = Math.floorDiv( epochMillis + offset, MILLIS_PER_DAY );
+		dayFrom = Math.max( offsetFrom, day * MILLIS_PER_DAY - offset );
+		dayUntil = Math.min( offsetUntil, ( day + 1 ) * MILLIS_PER_DAY - offset );
+		
+		// crossing a transition does not always change the day
+		boolean changed = day != localDay;
+		localDay = day;
+		return changed;
+	}
+	
+	/**
+	 * @return When the next local midnight or offset change after the last
+	 *         call to {@link #updateDay(long)} is, in epoch millis.
+	 */
+	public long getDayEnd()
+	{
+		
+		return this.dayUntil;
+	}
+	
+	/**
+	 * @return When the offset last looked up stops holding, in epoch millis,
+	 *         or Long.MAX_VALUE if the zone has no further changes.
+	 */
+	public long getNextTransition()
+	{
+		
+		return this.offsetUntil;
+	}
+	
+	/**
+	 * @return How many times the zone's rules have been consulted.
+	 */
+	public int getLookups()
+	{
+		
+		return this.lookups;
+	}
+	
+	private void findOffset( long epochMillis )
+	{
+		
+		Instant instant = Instant.ofEpochMilli( epochMillis );
+		offset = rules.getOffset( instant ).getTotalSeconds() * 1000;
+		
+		// a transition at this very instant is the one the offset came from
+		ZoneOffsetTransition previous = rules.previousTransition( instant.plusMillis( 1 ) );
+		ZoneOffsetTransition next = rules.nextTransition( instant );
+		offsetFrom = previous == null ? Long.MIN_VALUE : previous.toEpochSecond() * 1000;
+		offsetUntil = next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000;
+		
+		lookups++;
+		return;
+	}
+}